@@ -42,6 +42,28 @@ public class Codecs {
 		};
 	}
 
+	/**
+	 * String values decoded via cache, see {@link In#takeString(StringCache)},
+	 * anything other than string is decoded by the original codec.
+	 */
+	public static <I extends In, O extends Out>
+	Codec<String, I, O> dedup(Codec<String, I, O> original, StringCache strings) {
+		return new Codec<>() {
+			public void encode(O out, String instance) throws IOException {
+				original.encode(out, instance);
+			}
+
+			public @Null String decode(I in) throws IOException {
+				if (in.peek() == Token.String) return in.takeString(strings);
+				return original.decode(in);
+			}
+
+			public String toString() {
+				return "dedup(" + original + ")";
+			}
+		};
+	}
+
 	public final static class CaptureSimpleOut extends UnimplementedOut {
 		private @Null Object value;
 
@@ -0,0 +1,81 @@
+package io.immutables.codec;
+
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Converts between structurally compatible types, such as API DTO and domain record, by
+ * encoding with one codec and decoding with another, without going through a serialized
+ * format. Encoded tokens are recorded in memory and replayed to the target codec: values are
+ * passed as is, and record fields and enum constants are remapped from source to target
+ * {@link NameIndex} slots using mappings computed once per pair of name indexes, so no
+ * strings are created or compared for known names.
+ * <p>Converter is thread-safe and is intended to be created once and reused.
+ * @param <F> source type
+ * @param <T> target type
+ */
+public final class Converter<F, T> {
+	private final Codec<F, In, Out> from;
+	private final Codec<T, In, Out> to;
+	private final ConcurrentMap<Pair, int[]> slots = new ConcurrentHashMap<>();
+
+	private record Pair(NameIndex from, NameIndex to) {}
+
+	private Converter(Codec<F, In, Out> from, Codec<T, In, Out> to) {
+		this.from = from;
+		this.to = to;
+	}
+
+	public static <F, T> Converter<F, T> of(Codec<F, In, Out> from, Codec<T, In, Out> to) {
+		return new Converter<>(from, to);
+	}
+
+	/**
+	 * Resolves both codecs for the medium.
+	 * @throws java.util.NoSuchElementException if any codec cannot be resolved
+	 */
+	public static <F, T> Converter<F, T> of(
+		Codec.Resolver resolver, Type from, Type to, Medium<In, Out> medium) {
+		Codec<F, In, Out> fromCodec = resolver.<F, In, Out>resolve(from, medium).orElseThrow();
+		Codec<T, In, Out> toCodec = resolver.<T, In, Out>resolve(to, medium).orElseThrow();
+		return new Converter<>(fromCodec, toCodec);
+	}
+
+	/** Converts value, throwing {@link IOException} on the first problem */
+	public @Null T convert(F value) throws IOException {
+		return convert(value, Problem.ThrowingHandler);
+	}
+
+	/**
+	 * Converts value, reporting problems to the handler, which are then,
+	 * if not thrown, are available via {@link Problem.Handler#list()}.
+	 * @return converted value or {@code null} if conversion failed
+	 */
+	public @Null T convert(F value, Problem.Handler handler) throws IOException {
+		var tape = new Tape();
+		from.encode(tape, value);
+		return to.decode(tape.reader(handler, this::slots));
+	}
+
+	// concurrent computation of the same mapping is possible, and is harmless
+	private int[] slots(NameIndex from, NameIndex to) {
+		var pair = new Pair(from, to);
+		@Null var mapping = slots.get(pair);
+		if (mapping == null) {
+			var known = from.known();
+			mapping = new int[known.length];
+			for (int i = 0; i < known.length; i++) {
+				mapping[i] = to.index(known[i]);
+			}
+			slots.put(pair, mapping);
+		}
+		return mapping;
+	}
+
+	@Override public String toString() {
+		return Converter.class.getSimpleName() + "(" + from + " -> " + to + ")";
+	}
+}
@@ -1,6 +1,9 @@
 package io.immutables.codec;
 
+import io.immutables.meta.Null;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 
 public abstract class In {
@@ -26,6 +29,41 @@ public abstract class In {
 
 	public abstract int takeString(NameIndex names) throws IOException;
 
+	/**
+	 * Takes string deduplicated via cache. Implementations which have access to raw bytes or
+	 * chars can look up the cache without creating a string first, default implementation
+	 * just deduplicates after taking string.
+	 */
+	public String takeString(StringCache strings) throws IOException {
+		var s = takeString();
+		return s == NOT_A_STRING ? s : strings.dedup(s);
+	}
+
+	/**
+	 * Enables (or disables if {@code null}) deduplication of all string values
+	 * read from this input, see {@link #takeString(StringCache)}.
+	 */
+	public void stringCache(@Null StringCache strings) {
+		this.strings = strings;
+	}
+
+	/** String cache for all string values, if enabled for this input. */
+	public @Null StringCache stringCache() {
+		return strings;
+	}
+
+	private @Null StringCache strings;
+
+	/**
+	 * Takes string value as a stream of characters, so that large values, such as embedded
+	 * documents, can be parsed without materializing them as strings first. Default
+	 * implementation just reads {@link #takeString()}. Reader is valid until the next value
+	 * is read from this input.
+	 */
+	public Reader takeReader() throws IOException {
+		return new StringReader(takeString());
+	}
+
 	public abstract int takeField() throws IOException;
 
 	/**
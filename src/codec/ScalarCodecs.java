@@ -44,7 +44,8 @@ final class ScalarCodecs {
 		}
 
 		public String decode(In in) throws IOException {
-			return in.takeString();
+			@Null var strings = in.stringCache();
+			return strings != null ? in.takeString(strings) : in.takeString();
 		}
 
 		public boolean expects(Token first) {
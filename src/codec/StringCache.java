@@ -0,0 +1,133 @@
+package io.immutables.codec;
+
+import io.immutables.meta.Null;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bounded cache to deduplicate decoded string values, such as statuses, codes or identifiers
+ * which are repeated many times in a dataset. Lookups are done on UTF-8 byte or char ranges,
+ * so a hit returns cached instance without allocating. Only short strings are cached.
+ * <p>The cache is direct-mapped, each hash slot holds single entry which is replaced on
+ * collision. It is lock-free: slots are read and written without synchronization, which is
+ * safe as entries are immutable, races may only cause a miss.
+ * <p>Used by {@link In#takeString(StringCache)}, either enabled for all strings
+ * read by a particular {@link In} via {@link In#stringCache(StringCache)}, or for
+ * record components annotated with {@link io.immutables.codec.record.meta.Dedup}.
+ */
+public final class StringCache {
+	private final Entry[] entries;
+	private final int mask;
+	private final int maxLength;
+
+	/**
+	 * @param capacity number of slots, rounded up to power of two
+	 * @param maxLength maximum length (in bytes or chars) of string to be cached
+	 */
+	public StringCache(int capacity, int maxLength) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.entries = new Entry[size];
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	public StringCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/** Shared cache used for {@link io.immutables.codec.record.meta.Dedup} components. */
+	public static StringCache shared() {
+		return Shared;
+	}
+
+	/** String from UTF-8 bytes of the range, cached instance if found. */
+	public String get(byte[] utf8, int from, int to) {
+		int length = to - from;
+		if (length > maxLength) return new String(utf8, from, length, StandardCharsets.UTF_8);
+
+		int h = 0;
+		for (int i = from; i < to; i++) h = 31 * h + utf8[i];
+		int slot = spread(h) & mask;
+
+		@Null var e = entries[slot];
+		if (e != null && (e.bytes != null
+			? Arrays.equals(e.bytes, 0, e.bytes.length, utf8, from, to)
+			: matches(e.value, utf8, from, length))) {
+			return e.value;
+		}
+		var bytes = Arrays.copyOfRange(utf8, from, to);
+		var value = new String(bytes, StandardCharsets.UTF_8);
+		entries[slot] = new Entry(value, bytes);
+		return value;
+	}
+
+	/** String from chars of the range, cached instance if found. */
+	public String get(char[] chars, int from, int to) {
+		int length = to - from;
+		if (length > maxLength) return new String(chars, from, length);
+
+		int h = 0;
+		for (int i = from; i < to; i++) h = 31 * h + chars[i];
+		int slot = spread(h) & mask;
+
+		@Null var e = entries[slot];
+		if (e != null && matches(e.value, chars, from, length)) {
+			return e.value;
+		}
+		var value = new String(chars, from, length);
+		entries[slot] = new Entry(value, null);
+		return value;
+	}
+
+	/** Cached instance equal to a string or the string itself, which gets cached. */
+	public String dedup(String string) {
+		int length = string.length();
+		if (length > maxLength) return string;
+
+		// String.hashCode is the same as the hash of chars, and also of bytes for ASCII strings,
+		// so these go to the same slot, where entry cached by any kind of lookup is found
+		// by others. Non-ASCII strings looked up by bytes are cached in other slots
+		int slot = spread(string.hashCode()) & mask;
+
+		@Null var e = entries[slot];
+		if (e != null && e.value.equals(string)) {
+			return e.value;
+		}
+		entries[slot] = new Entry(string, null);
+		return string;
+	}
+
+	// for entries cached without bytes, only ASCII strings can match, as for them
+	// bytes are the same as chars, and negative (non-ASCII) bytes never equal to char
+	private static boolean matches(String value, byte[] utf8, int from, int length) {
+		if (value.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) != utf8[from + i]) return false;
+		}
+		return true;
+	}
+
+	private static boolean matches(String value, char[] chars, int from, int length) {
+		if (value.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) != chars[from + i]) return false;
+		}
+		return true;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	// bytes are null for entries cached by chars or strings
+	private record Entry(String value, @Null byte[] bytes) {}
+
+	@Override public String toString() {
+		return StringCache.class.getSimpleName()
+			+ "(capacity=" + entries.length + ", maxLength=" + maxLength + ")";
+	}
+
+	private static final int DEFAULT_CAPACITY = 4096;
+	private static final int DEFAULT_MAX_LENGTH = 64;
+	private static final StringCache Shared = new StringCache();
+}
@@ -0,0 +1,414 @@
+package io.immutables.codec;
+
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * In-memory sequence of tokens recorded from {@link Out} and replayed via {@link Tape.Reader},
+ * used to bridge one codec's encoding to another codec's decoding. Values are kept as is:
+ * strings are not copied, and names are recorded as a {@link NameIndex} and slot, rather
+ * than strings, so they can be remapped to the reader's name index slots.
+ */
+final class Tape extends Out {
+	/** Maps slots of one name index to the slots of another. */
+	interface Slots {
+		int[] map(NameIndex from, NameIndex to);
+	}
+
+	private Token[] tokens = new Token[32];
+	private long[] values = new long[32];
+	private @Null Object[] refs = new Object[32];
+	private int size;
+
+	private @Null NameIndex[] names = new NameIndex[8];
+	private int depth;
+
+	@Override public NameIndex index(String... known) {
+		return NameIndex.known(known);
+	}
+
+	@Override public void putNull() {
+		add(Token.Null, 0, null);
+	}
+
+	@Override public void putInt(int i) {
+		add(Token.Int, i, null);
+	}
+
+	@Override public void putLong(long l) {
+		add(Token.Long, l, null);
+	}
+
+	@Override public void putDouble(double d) {
+		add(Token.Float, Double.doubleToRawLongBits(d), null);
+	}
+
+	@Override public void putBoolean(boolean b) {
+		add(b ? Token.True : Token.False, 0, null);
+	}
+
+	@Override public void putString(String s) {
+		add(Token.String, NameIndex.UNKNOWN, s);
+	}
+
+	@Override public void putString(char[] chars, int offset, int length) {
+		add(Token.String, NameIndex.UNKNOWN, String.valueOf(chars, offset, length));
+	}
+
+	@Override public void putString(NameIndex names, int index) {
+		add(Token.String, index, names);
+	}
+
+	@Override public void beginArray() {
+		add(Token.Array, 0, null);
+	}
+
+	@Override public void endArray() {
+		add(Token.ArrayEnd, 0, null);
+	}
+
+	@Override public void beginStruct(NameIndex names) {
+		if (++depth == this.names.length) {
+			this.names = Arrays.copyOf(this.names, depth * 2);
+		}
+		this.names[depth] = names;
+		add(Token.Struct, 0, null);
+	}
+
+	@Override public void putField(int index) {
+		add(Token.Field, index, names[depth]);
+	}
+
+	@Override public void putField(String name) {
+		add(Token.Field, NameIndex.UNKNOWN, name);
+	}
+
+	@Override public void endStruct() {
+		names[depth--] = null;
+		add(Token.StructEnd, 0, null);
+	}
+
+	private void add(Token token, long value, @Null Object ref) {
+		if (size == tokens.length) {
+			int length = size * 2;
+			tokens = Arrays.copyOf(tokens, length);
+			values = Arrays.copyOf(values, length);
+			refs = Arrays.copyOf(refs, length);
+		}
+		tokens[size] = token;
+		values[size] = value;
+		refs[size] = ref;
+		size++;
+	}
+
+	Reader reader(Problem.Handler problems, Slots slots) {
+		return new Reader(problems, slots, 0, size);
+	}
+
+	/** Name as string at position of field or name string. */
+	private String nameAt(int position) {
+		@Null var ref = refs[position];
+		if (ref instanceof NameIndex index) return index.name((int) values[position]);
+		return String.valueOf(ref);
+	}
+
+	/**
+	 * Maps field or string at position to the slot of name index,
+	 * for names recorded as slots of other name index, uses precomputed mapping.
+	 */
+	private int indexAt(int position, NameIndex names, Slots slots) {
+		@Null var ref = refs[position];
+		if (ref instanceof NameIndex index) {
+			int slot = (int) values[position];
+			if (index == names) return slot;
+			return slots.map(index, names)[slot];
+		}
+		return names.index(String.valueOf(ref));
+	}
+
+	final class Reader extends In {
+		private final Slots slots;
+		private final int end;
+		private int position;
+		private @Null Token injectedEnd;
+
+		private int depth;
+		private boolean[] inStruct = new boolean[8];
+		// tape position where struct or array starts
+		private int[] starts = new int[8];
+		private NameIndex[] structNames = new NameIndex[8];
+		// position of the current field for each struct level
+		private int[] fields = new int[8];
+		// position of the last name or field read
+		private int lastName = -1;
+
+		private Reader(Problem.Handler problems, Slots slots, int from, int to) {
+			super(problems);
+			this.slots = slots;
+			this.position = from;
+			this.end = to;
+			structNames[0] = NameIndex.unknown();
+		}
+
+		@Override public NameIndex index(String... known) {
+			return NameIndex.known(known);
+		}
+
+		@Override public Token peek() {
+			if (injectedEnd != null) return injectedEnd;
+			return position < end ? tokens[position] : Token.End;
+		}
+
+		@Override public int takeInt() throws IOException {
+			switch (peek()) {
+			case Int -> {
+				return (int) values[position++];
+			}
+			case Long -> {
+				long l = values[position];
+				if ((int) l == l) {
+					position++;
+					return (int) l;
+				}
+			}
+			case Float -> {
+				double d = Double.longBitsToDouble(values[position]);
+				if ((int) d == d) {
+					position++;
+					return (int) d;
+				}
+			}
+			default -> {}
+			}
+			mismatch("int number");
+			return Integer.MIN_VALUE;
+		}
+
+		@Override public long takeLong() throws IOException {
+			switch (peek()) {
+			case Int, Long -> {
+				return values[position++];
+			}
+			case Float -> {
+				double d = Double.longBitsToDouble(values[position]);
+				if ((long) d == d) {
+					position++;
+					return (long) d;
+				}
+			}
+			default -> {}
+			}
+			mismatch("long number");
+			return Long.MIN_VALUE;
+		}
+
+		@Override public double takeDouble() throws IOException {
+			switch (peek()) {
+			case Int, Long -> {
+				return values[position++];
+			}
+			case Float -> {
+				return Double.longBitsToDouble(values[position++]);
+			}
+			default -> {}
+			}
+			mismatch("float number");
+			return Double.NaN;
+		}
+
+		@Override public boolean takeBoolean() throws IOException {
+			var t = peek();
+			if (t == Token.True || t == Token.False) {
+				position++;
+				return t == Token.True;
+			}
+			mismatch("boolean");
+			return false;
+		}
+
+		@Override public void takeNull() throws IOException {
+			if (peek() == Token.Null) {
+				position++;
+			} else {
+				mismatch("null");
+			}
+		}
+
+		@Override public String takeString() throws IOException {
+			if (peek() == Token.String) {
+				return nameAt(position++);
+			}
+			mismatch("string");
+			return NOT_A_STRING;
+		}
+
+		@Override public int takeString(NameIndex names) throws IOException {
+			if (peek() == Token.String) {
+				lastName = position;
+				return indexAt(position++, names, slots);
+			}
+			mismatch("name string");
+			return NameIndex.UNKNOWN;
+		}
+
+		@Override public int takeField() throws IOException {
+			if (peek() != Token.Field) {
+				problems.enque(new Problem.UnexpectedToken(
+					path(), "field name", peek().name(), peek()));
+				return NameIndex.UNKNOWN;
+			}
+			lastName = fields[depth] = position;
+			return indexAt(position++, structNames[depth], slots);
+		}
+
+		@Override public String name() {
+			if (lastName < 0) throw new IllegalStateException("No name was read");
+			return nameAt(lastName);
+		}
+
+		@Override public void skip() {
+			switch (peek()) {
+			case Field -> {
+				position++;
+				skip();
+			}
+			case Struct, Array -> {
+				int level = 0;
+				do {
+					switch (tokens[position++]) {
+					case Struct, Array -> level++;
+					case StructEnd, ArrayEnd -> level--;
+					default -> {}
+					}
+				} while (level > 0);
+			}
+			// ends are consumed by endStruct/endArray
+			case StructEnd, ArrayEnd, End -> {}
+			default -> position++;
+			}
+		}
+
+		@Override public boolean hasNext() {
+			var t = peek();
+			return t != Token.ArrayEnd && t != Token.StructEnd && t != Token.End;
+		}
+
+		@Override public void beginArray() throws IOException {
+			if (peek() == Token.Array) {
+				position++;
+				push(false, NameIndex.unknown());
+			} else {
+				mismatch("'[' array");
+				// injecting end so hasNext will return false
+				// and endArray will silently succeed
+				injectedEnd = Token.ArrayEnd;
+			}
+		}
+
+		@Override public void endArray() throws IOException {
+			end(Token.ArrayEnd, "']' array end");
+		}
+
+		@Override public void beginStruct(NameIndex names) throws IOException {
+			if (peek() == Token.Struct) {
+				position++;
+				push(true, names);
+			} else {
+				mismatch("'{' struct");
+				injectedEnd = Token.StructEnd;
+			}
+		}
+
+		@Override public void endStruct() throws IOException {
+			end(Token.StructEnd, "'}' struct end");
+		}
+
+		private void end(Token token, String expected) throws IOException {
+			if (injectedEnd == token) {
+				injectedEnd = null;
+				return;
+			}
+			if (peek() != token) {
+				problems.enque(new Problem.UnexpectedToken(path(), expected, peek().name(), peek()));
+				while (hasNext()) skip();
+			}
+			position++;
+			depth--;
+		}
+
+		private void push(boolean struct, NameIndex names) {
+			if (++depth == inStruct.length) {
+				int length = depth * 2;
+				inStruct = Arrays.copyOf(inStruct, length);
+				starts = Arrays.copyOf(starts, length);
+				structNames = Arrays.copyOf(structNames, length);
+				fields = Arrays.copyOf(fields, length);
+			}
+			inStruct[depth] = struct;
+			starts[depth] = position - 1;
+			structNames[depth] = names;
+			fields[depth] = -1;
+		}
+
+		private void mismatch(String expected) throws IOException {
+			var token = peek();
+			problems.enque(new Problem.UnexpectedToken(path(), expected, describe(token), token));
+			skip();
+		}
+
+		private String describe(Token token) {
+			if (token.isScalar() && position < end) {
+				return switch (token) {
+					case Int, Long -> String.valueOf(values[position]);
+					case Float -> String.valueOf(Double.longBitsToDouble(values[position]));
+					case String -> nameAt(position);
+					default -> token.name();
+				};
+			}
+			return token.name();
+		}
+
+		@Override public Buffer takeBuffer() {
+			int from = position;
+			skip();
+			int to = position;
+			var problems = this.problems;
+			return new Buffer() {
+				@Override public In in() {
+					return new Reader(problems, slots, from, to);
+				}
+			};
+		}
+
+		@Override public AtPath path() {
+			AtPath path = AtPath.Root.Root;
+			for (int d = 1; d <= depth; d++) {
+				if (inStruct[d]) {
+					if (fields[d] >= 0) path = new AtPath.FieldOf(path, nameAt(fields[d]));
+				} else {
+					path = new AtPath.ElementAt(path, elementIndex(d));
+				}
+			}
+			return path;
+		}
+
+		// elements are not counted when taken, we count on demand, it's only for diagnostics
+		private int elementIndex(int level) {
+			int upto = level < depth ? starts[level + 1] : position;
+			int index = 0;
+			int nesting = 0;
+			for (int p = starts[level] + 1; p < upto; p++) {
+				var t = tokens[p];
+				if (nesting == 0 && t != Token.ArrayEnd) index++;
+				if (t == Token.Struct || t == Token.Array) nesting++;
+				else if (t == Token.StructEnd || t == Token.ArrayEnd) nesting--;
+			}
+			return index;
+		}
+
+		@Override public String toString() {
+			return Tape.class.getSimpleName() + ".Reader(at " + path() + ")";
+		}
+	}
+}
@@ -45,7 +45,7 @@ public final class EmbeddedJson {
 		}
 
 		public Jsons<T> decode(In in) throws IOException {
-			try (var p = factory.createParser(in.takeString())) {
+			try (var p = factory.createParser(in.takeReader())) {
 				return new Jsons<>(codec.decode(new JsonParserIn(p)));
 			}
 		}
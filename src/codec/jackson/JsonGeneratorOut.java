@@ -42,7 +42,11 @@ public final class JsonGeneratorOut extends Out {
 	}
 
 	public void putString(NameIndex names, int index) throws IOException {
-		generator.writeString(((JsonNameIndex) names).serialized[index]);
+		if (names instanceof JsonNameIndex json) {
+			generator.writeString(json.serialized[index]);
+		} else {
+			generator.writeString(names.name(index));
+		}
 	}
 
 	public void beginArray() throws IOException {
@@ -54,17 +58,21 @@ public final class JsonGeneratorOut extends Out {
 	}
 
 	public void beginStruct(NameIndex names) throws IOException {
-		if (++framePointer > frames.length) {
+		if (++framePointer >= frames.length) {
 			frames = Arrays.copyOf(frames, frames.length * 2);
 		}
-		frames[framePointer] = (JsonNameIndex) names;
+		frames[framePointer] = names;
 
 		generator.writeStartObject();
 	}
 
 	public void putField(int index) throws IOException {
 		var f = frames[framePointer];
-		generator.writeFieldName(f.serialized[index]);
+		if (f instanceof JsonNameIndex json) {
+			generator.writeFieldName(json.serialized[index]);
+		} else {
+			generator.writeFieldName(f.name(index));
+		}
 	}
 
 	public void putField(String name) throws IOException {
@@ -82,5 +90,6 @@ public final class JsonGeneratorOut extends Out {
 	}
 
 	private int framePointer = -1;
-	private JsonNameIndex[] frames = new JsonNameIndex[10];
+	// any name index, codecs might hold on to one created by other Out
+	private NameIndex[] frames = new NameIndex[10];
 }
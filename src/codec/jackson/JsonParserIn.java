@@ -154,6 +154,16 @@ public final class JsonParserIn extends In {
 		return s;
 	}
 
+	@Override public String takeString(StringCache strings) throws IOException {
+		if (ensurePeeked() == ID_STRING) {
+			peeked = ID_NO_TOKEN;
+			// looking up by parser's own chars, no string is created when cached
+			int offset = parser.getTextOffset();
+			return strings.get(parser.getTextCharacters(), offset, offset + parser.getTextLength());
+		}
+		return takeString();
+	}
+
 	@Override public int takeString(NameIndex names) throws IOException {
 		int i;
 		if (ensurePeeked() == ID_STRING) {
@@ -226,12 +236,12 @@ public final class JsonParserIn extends In {
 		// even if token mismatch, due to how we handle below,
 		// we still need to move pointer and allocate array,
 		// so logic in endStruct will not fail
-		if (++framePointer > frames.length) {
+		if (++framePointer >= frames.length) {
 			frames = Arrays.copyOf(frames, frames.length * 2);
 		}
 
 		if (ensurePeeked() == ID_START_OBJECT) {
-			frames[framePointer] = (JsonNameIndex) names;
+			frames[framePointer] = names;
 			peeked = ID_NO_TOKEN;
 		} else {
 			expected("'{' struct");
@@ -266,23 +276,28 @@ public final class JsonParserIn extends In {
 		TokenBuffer buffer = new TokenBuffer(parser);
 		buffer.copyCurrentStructure(parser);
 		peeked = ID_NO_TOKEN;
-		return new JsonBuffer(buffer);
+		return new JsonBuffer(buffer, stringCache());
 	}
 
 	private static class JsonBuffer extends Buffer {
 		private final TokenBuffer buffer;
+		private final @Null StringCache strings;
 
-		public JsonBuffer(TokenBuffer buffer) {
+		public JsonBuffer(TokenBuffer buffer, @Null StringCache strings) {
 			this.buffer = buffer;
+			this.strings = strings;
 		}
 
 		@Override public In in() {
-			return new JsonParserIn(buffer.asParser());
+			var in = new JsonParserIn(buffer.asParser());
+			in.stringCache(strings);
+			return in;
 		}
 	}
 
 	private int framePointer = -1;
-	private JsonNameIndex[] frames = new JsonNameIndex[8];
+	// any name index, codecs might hold on to one created by other In
+	private NameIndex[] frames = new NameIndex[8];
 
 	@Override public AtPath path() {
 		// we can build/maintain path of our own,
@@ -0,0 +1,111 @@
+package io.immutables.codec.json;
+
+import io.immutables.codec.Codec;
+import io.immutables.codec.In;
+import io.immutables.codec.Out;
+import io.immutables.codec.Problem;
+import io.immutables.meta.Null;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes a value from JSON input which arrives as chunks, such as request body read from an
+ * asynchronous socket, without buffering the whole input first. Decoding runs as an ordinary
+ * blocking {@link JsonIn} on the supplied executor, and waits when fed chunks are exhausted,
+ * while feeding waits when the bounded queue of pending chunks is full.
+ * <p>Waiting for input occupies a thread of the executor for the duration of decoding, so
+ * executor should be able to afford it. On JDK 21+ a virtual thread per task executor is the
+ * natural choice.
+ * <pre>
+ * var feed = new JsonFeed<>(codec, executor, 4);
+ * // on each chunk received, the chunk should not be reused afterwards
+ * feed.feed(chunk);
+ * // when input ends
+ * feed.end();
+ * feed.result().thenAccept(...);
+ * </pre>
+ * @param <T> decoded type
+ */
+public final class JsonFeed<T> {
+	private final BlockingQueue<ByteBuffer> chunks;
+	private final CompletableFuture<T> result = new CompletableFuture<>();
+	private volatile boolean done;
+
+	public JsonFeed(Codec<T, In, Out> codec, Executor executor, int capacity) {
+		this(codec, executor, capacity, Problem.ThrowingHandler);
+	}
+
+	public JsonFeed(Codec<T, In, Out> codec, Executor executor, int capacity,
+		Problem.Handler handler) {
+		this.chunks = new ArrayBlockingQueue<>(capacity);
+		executor.execute(() -> decode(codec, handler));
+	}
+
+	private void decode(Codec<T, In, Out> codec, Problem.Handler handler) {
+		@Null T value;
+		try {
+			value = codec.decode(new JsonIn(this::take, handler));
+		} catch (Throwable e) {
+			finish();
+			result.completeExceptionally(e);
+			return;
+		}
+		finish();
+		result.complete(value);
+	}
+
+	// done before completing result, so any feeding afterwards is ignored
+	private void finish() {
+		done = true;
+		// unblocks feeding if it's waiting for the space in queue
+		chunks.clear();
+	}
+
+	private @Null ByteBuffer take() throws InterruptedIOException {
+		try {
+			var chunk = chunks.take();
+			return chunk == END ? null : chunk;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for input");
+		}
+	}
+
+	/**
+	 * Feeds next chunk of input, waiting if there are too many chunks pending.
+	 * Bytes between position and limit of the chunk will be read, the chunk should not be
+	 * changed after it was fed. If decoding is already done, the chunk is ignored.
+	 */
+	public void feed(ByteBuffer chunk) throws InterruptedException {
+		if (!done && chunk.hasRemaining()) chunks.put(chunk);
+	}
+
+	/**
+	 * Feeds next chunk of input only if it can be accepted without waiting.
+	 * @return {@code false} if there are too many chunks pending, so caller should stop reading
+	 * and retry later; {@code true} if accepted or ignored, as decoding is already done.
+	 */
+	public boolean offer(ByteBuffer chunk) {
+		return done || !chunk.hasRemaining() || chunks.offer(chunk);
+	}
+
+	/** Signals that there is no more input. */
+	public void end() throws InterruptedException {
+		if (!done) chunks.put(END);
+	}
+
+	/**
+	 * Decoded value, completes when the value is decoded, which can happen before all input
+	 * was fed, or completes exceptionally on any syntax or decoding problem.
+	 */
+	public CompletableFuture<T> result() {
+		return result;
+	}
+
+	// identity of this marker is used
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+}
@@ -0,0 +1,993 @@
+package io.immutables.codec.json;
+
+import io.immutables.codec.AtPath;
+import io.immutables.codec.In;
+import io.immutables.codec.NameIndex;
+import io.immutables.codec.Problem;
+import io.immutables.codec.StringCache;
+import io.immutables.codec.Token;
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 encoded JSON directly from bytes. Input is either a single buffer
+ * or a {@link Source} of consecutive chunks. Tokens can span chunk boundaries, but fast paths
+ * are taken when they are contained within a single chunk: field names and enum constants are
+ * matched against {@link Utf8NameIndex} on the raw bytes, strings are decoded straight from
+ * the buffer, and numbers are parsed without intermediate strings.
+ * <p>Any {@link NameIndex} is accepted, not just ones created by {@link #index(String...)},
+ * (codecs may hold on to an index created by some other {@link In}), in this case names are
+ * decoded to strings and matched via {@link NameIndex#index(String)}.
+ * <p>Syntax errors are thrown as {@link IOException}, data mismatches are reported to
+ * {@link Problem.Handler} as with any other {@link In}.
+ */
+public final class JsonIn extends In {
+	/**
+	 * Supplies consecutive chunks of UTF-8 encoded input. Bytes between buffer's position and
+	 * limit are read. Buffer passed previously may be reused when supplying next chunk,
+	 * its content will not be accessed after next chunk requested.
+	 */
+	public interface Source {
+		/** Next chunk of input or {@code null} if there is no more input. */
+		@Null ByteBuffer next() throws IOException;
+
+		static Source of(InputStream stream) {
+			return of(stream, DEFAULT_CHUNK);
+		}
+
+		static Source of(InputStream stream, int chunkSize) {
+			var chunk = new byte[chunkSize];
+			return () -> {
+				int read = stream.read(chunk);
+				return read >= 0 ? ByteBuffer.wrap(chunk, 0, read) : null;
+			};
+		}
+
+		/**
+		 * Reads channel into a reused direct buffer, avoiding an extra copy which JDK
+		 * makes when reading channels into heap buffers.
+		 */
+		static Source of(ReadableByteChannel channel) {
+			return of(channel, DEFAULT_CHUNK);
+		}
+
+		static Source of(ReadableByteChannel channel, int chunkSize) {
+			var chunk = ByteBuffer.allocateDirect(chunkSize);
+			return () -> {
+				chunk.clear();
+				int read = channel.read(chunk);
+				// non-blocking channel would spin here, it's meant for blocking ones
+				while (read == 0) read = channel.read(chunk);
+				return read > 0 ? chunk.flip() : null;
+			};
+		}
+
+		/**
+		 * Memory-maps file channel from its current position to the end, in regions of at most
+		 * {@link Integer#MAX_VALUE} bytes, mapping each region only when reached.
+		 * Channel is not closed, mapped regions stay valid regardless.
+		 */
+		static Source mapped(FileChannel channel) throws IOException {
+			return mapped(channel, channel.position(), channel.size(), Integer.MAX_VALUE);
+		}
+
+		// region size is a parameter to be able to test region boundaries
+		static Source mapped(FileChannel channel, long from, long to, int regionSize) {
+			return new Source() {
+				long position = from;
+
+				public @Null ByteBuffer next() throws IOException {
+					if (position >= to) return null;
+					long size = Math.min(regionSize, to - position);
+					var region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+					position += size;
+					return region;
+				}
+			};
+		}
+	}
+
+	private final @Null Source source;
+	private ByteBuffer buffer;
+	// backing array of the current chunk, if it has an accessible one
+	private @Null byte[] array;
+	private int arrayOffset;
+	private int position;
+	private int limit;
+	// offset of the current chunk within whole input, to report positions
+	private long chunkOffset;
+	private int chunkStart;
+
+	private @Null Token peeked;
+	private boolean injectedEnd;
+
+	// nesting of arrays and structs, 0 is the top level
+	private int depth;
+	private boolean[] inStruct = new boolean[16];
+	private int[] counts = new int[16];
+	private @Null NameIndex[] structNames = new NameIndex[16];
+	private int[] fields = new int[16];
+	private @Null String[] fieldNames = new String[16];
+	private boolean afterName;
+
+	// last name read via takeField or takeString(NameIndex)
+	private @Null NameIndex lastNames;
+	private int lastIndex = NameIndex.UNKNOWN;
+	private @Null String lastName;
+
+	// current number, parsed when peeked
+	private long mantissa;
+	private int exponent;
+	private boolean negative;
+	private boolean inexact;
+	private char[] numberChars = new char[32];
+	private int numberLength;
+
+	private char[] chars = new char[64];
+	private byte[] bytes = new byte[64];
+
+	// capturing consumed input for takeBuffer
+	private @Null Capture capture;
+
+	public JsonIn(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	public JsonIn(byte[] bytes, int offset, int length) {
+		this(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	public JsonIn(ByteBuffer buffer) {
+		this(buffer, Problem.ThrowingHandler);
+	}
+
+	public JsonIn(ByteBuffer buffer, Problem.Handler handler) {
+		super(handler);
+		this.source = null;
+		setChunk(buffer);
+	}
+
+	/**
+	 * Decodes memory-mapped file. Files below 2GB are mapped as a single buffer, so no input
+	 * is copied to the heap except decoded strings, and {@link #takeBuffer()} slices
+	 * the mapped buffer without copying. Larger files are mapped as consecutive regions.
+	 */
+	public static JsonIn mapped(Path file) throws IOException {
+		return mapped(file, Problem.ThrowingHandler);
+	}
+
+	public static JsonIn mapped(Path file, Problem.Handler handler) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size <= Integer.MAX_VALUE) {
+				return new JsonIn(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), handler);
+			}
+			// mapping all regions eagerly, mappings stay valid after channel is closed
+			var regions = new ArrayDeque<ByteBuffer>();
+			var source = Source.mapped(channel, 0, size, Integer.MAX_VALUE);
+			for (@Null ByteBuffer r; (r = source.next()) != null; ) regions.add(r);
+			return new JsonIn(regions::poll, handler);
+		}
+	}
+
+	public JsonIn(Source source) {
+		this(source, Problem.ThrowingHandler);
+	}
+
+	public JsonIn(Source source, Problem.Handler handler) {
+		super(handler);
+		this.source = source;
+		setChunk(EMPTY);
+	}
+
+	private void setChunk(ByteBuffer chunk) {
+		buffer = chunk;
+		if (chunk.hasArray()) {
+			array = chunk.array();
+			arrayOffset = chunk.arrayOffset();
+		} else {
+			array = null;
+		}
+		position = chunkStart = chunk.position();
+		limit = chunk.limit();
+	}
+
+	private boolean fill() throws IOException {
+		if (source == null) return false;
+		if (capture != null) capture.append(buffer, capture.from, limit);
+		for (; ; ) {
+			@Null var next = source.next();
+			if (next == null) return false;
+			chunkOffset += limit - chunkStart;
+			setChunk(next);
+			if (capture != null) capture.from = position;
+			if (position < limit) return true;
+		}
+	}
+
+	private byte byteAt(int p) {
+		@Null var a = array;
+		return a != null ? a[arrayOffset + p] : buffer.get(p);
+	}
+
+	/** Current byte (0..255) without consuming it, or -1 at the end of input. */
+	private int current() throws IOException {
+		if (position < limit || fill()) return byteAt(position) & 0xFF;
+		return -1;
+	}
+
+	/** Consumes and returns next byte (0..255), or -1 at the end of input. */
+	private int next() throws IOException {
+		if (position < limit || fill()) return byteAt(position++) & 0xFF;
+		return -1;
+	}
+
+	private int skipWhitespace() throws IOException {
+		for (; ; ) {
+			while (position < limit) {
+				int c = byteAt(position);
+				if (c == ' ' || c == '\n' || c == '\r' || c == '\t') position++;
+				else return c & 0xFF;
+			}
+			if (!fill()) return -1;
+		}
+	}
+
+	@Override public Token peek() throws IOException {
+		@Null var t = peeked;
+		if (t == null) peeked = t = nextToken();
+		return t;
+	}
+
+	private Token nextToken() throws IOException {
+		int c = skipWhitespace();
+		if (depth > 0 && !afterName) {
+			if (c == ']' || c == '}') {
+				if ((c == '}') != inStruct[depth]) throw syntax("Mismatched '" + (char) c + "'");
+				return c == '}' ? Token.StructEnd : Token.ArrayEnd;
+			}
+			if (counts[depth]++ > 0) {
+				if (c != ',') throw syntax(inStruct[depth]
+					? "Expected ',' or '}'"
+					: "Expected ',' or ']'");
+				position++;
+				c = skipWhitespace();
+			}
+			if (inStruct[depth]) {
+				if (c != '"') throw syntax("Expected field name");
+				return Token.Field;
+			}
+		}
+		return switch (c) {
+			case '{' -> Token.Struct;
+			case '[' -> Token.Array;
+			case '"' -> Token.String;
+			case 't' -> literal(TRUE, Token.True);
+			case 'f' -> literal(FALSE, Token.False);
+			case 'n' -> literal(NULL, Token.Null);
+			case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> number();
+			case -1 -> {
+				if (depth > 0 || afterName) throw syntax("Unexpected end of input");
+				yield Token.End;
+			}
+			default -> throw syntax("Unexpected character '" + (char) c + "'");
+		};
+	}
+
+	private Token literal(byte[] literal, Token token) throws IOException {
+		for (byte b : literal) {
+			if (next() != b) throw syntax("Expected literal " + new String(literal));
+		}
+		requireDelimiter();
+		return token;
+	}
+
+	private void requireDelimiter() throws IOException {
+		int c = current();
+		if (!(c == -1 || c == ',' || c == ']' || c == '}'
+			|| c == ' ' || c == '\n' || c == '\r' || c == '\t')) {
+			throw syntax("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	private Token number() throws IOException {
+		numberLength = 0;
+		mantissa = 0;
+		exponent = 0;
+		negative = false;
+		inexact = false;
+		boolean integral = true;
+		int significant = 0;
+
+		int c = current();
+		if (c == '-') {
+			negative = true;
+			appendNumber(c);
+			c = current();
+		}
+		if (c == '0') {
+			appendNumber(c);
+			c = current();
+		} else if (c >= '1' && c <= '9') {
+			do {
+				if (significant < MAX_DIGITS) {
+					mantissa = mantissa * 10 + (c - '0');
+					significant++;
+				} else {
+					exponent++;
+					inexact = true;
+				}
+				appendNumber(c);
+				c = current();
+			} while (c >= '0' && c <= '9');
+		} else throw syntax("Expected digit");
+
+		if (c == '.') {
+			integral = false;
+			appendNumber(c);
+			c = current();
+			if (c < '0' || c > '9') throw syntax("Expected digit after '.'");
+			do {
+				if (significant < MAX_DIGITS) {
+					mantissa = mantissa * 10 + (c - '0');
+					exponent--;
+					// leading zeros of fraction are not significant
+					if (mantissa != 0) significant++;
+				} else {
+					inexact = true;
+				}
+				appendNumber(c);
+				c = current();
+			} while (c >= '0' && c <= '9');
+		}
+
+		if (c == 'e' || c == 'E') {
+			integral = false;
+			appendNumber(c);
+			c = current();
+			boolean negativeExponent = false;
+			if (c == '-' || c == '+') {
+				negativeExponent = c == '-';
+				appendNumber(c);
+				c = current();
+			}
+			if (c < '0' || c > '9') throw syntax("Expected digit in exponent");
+			int e = 0;
+			do {
+				// capping exponent, large exponents will go via slow path anyway
+				if (e < 10_000) e = e * 10 + (c - '0');
+				appendNumber(c);
+				c = current();
+			} while (c >= '0' && c <= '9');
+			exponent += negativeExponent ? -e : e;
+		}
+		requireDelimiter();
+		return integral ? Token.Int : Token.Float;
+	}
+
+	private void appendNumber(int c) {
+		if (numberLength == numberChars.length) {
+			numberChars = Arrays.copyOf(numberChars, numberLength * 2);
+		}
+		numberChars[numberLength++] = (char) c;
+		position++;
+	}
+
+	private String numberText() {
+		return new String(numberChars, 0, numberLength);
+	}
+
+	private boolean fitsLong() {
+		return peeked == Token.Int && !inexact;
+	}
+
+	// only valid when fitsLong
+	private long longValue() {
+		return negative ? -mantissa : mantissa;
+	}
+
+	private double doubleValue() {
+		if (!inexact) {
+			double d = Numbers.toDouble(mantissa, exponent);
+			if (!Double.isNaN(d)) return negative ? -d : d;
+		}
+		return Double.parseDouble(numberText());
+	}
+
+	private void consumed() {
+		peeked = null;
+		afterName = false;
+	}
+
+	@Override public int takeInt() throws IOException {
+		var t = peek();
+		if (t == Token.Int && fitsLong()) {
+			long l = longValue();
+			if ((int) l == l) {
+				consumed();
+				return (int) l;
+			}
+		} else if (t == Token.Float || t == Token.Int) {
+			double d = doubleValue();
+			if (d % 1 == 0) {
+				int asInt = (int) d;
+				// round-trip to double
+				if ((double) asInt == d) {
+					consumed();
+					return asInt;
+				}
+			}
+		}
+		mismatch("int number");
+		return Integer.MIN_VALUE;
+	}
+
+	@Override public long takeLong() throws IOException {
+		var t = peek();
+		if (t == Token.Int) {
+			if (fitsLong()) {
+				consumed();
+				return longValue();
+			}
+			try {
+				// more than 18 digits, but might still fit
+				long l = Long.parseLong(numberText());
+				consumed();
+				return l;
+			} catch (NumberFormatException outOfRange) {
+				// fall through to mismatch
+			}
+		} else if (t == Token.Float) {
+			double d = doubleValue();
+			if (d % 1 == 0) {
+				long asLong = (long) d;
+				// roundtrip to double
+				if ((double) asLong == d) {
+					consumed();
+					return asLong;
+				}
+			}
+		}
+		mismatch("long number");
+		return Long.MIN_VALUE;
+	}
+
+	@Override public double takeDouble() throws IOException {
+		var t = peek();
+		if (t == Token.Int || t == Token.Float) {
+			double d = doubleValue();
+			consumed();
+			return d;
+		}
+		if (t == Token.String) {
+			// symmetrical to JsonOut which writes these as strings
+			var s = readString();
+			consumed();
+			return switch (s) {
+				case "NaN" -> Double.NaN;
+				case "Infinity" -> Double.POSITIVE_INFINITY;
+				case "-Infinity" -> Double.NEGATIVE_INFINITY;
+				default -> {
+					problems.enque(new Problem.UnexpectedToken(
+						path(), "float number", s, Token.String));
+					yield Double.NaN;
+				}
+			};
+		}
+		mismatch("float number");
+		return Double.NaN;
+	}
+
+	@Override public boolean takeBoolean() throws IOException {
+		var t = peek();
+		if (t == Token.True || t == Token.False) {
+			consumed();
+			return t == Token.True;
+		}
+		mismatch("boolean");
+		return false;
+	}
+
+	@Override public void takeNull() throws IOException {
+		if (peek() == Token.Null) {
+			consumed();
+		} else {
+			mismatch("null");
+		}
+	}
+
+	@Override public String takeString() throws IOException {
+		if (peek() == Token.String) {
+			var s = readString();
+			consumed();
+			return s;
+		}
+		// every scalar can be a string? lax mode?
+		mismatch("string");
+		return NOT_A_STRING;
+	}
+
+	@Override public String takeString(StringCache strings) throws IOException {
+		if (peek() == Token.String) {
+			position++; // opening quote
+			var s = readStringContent(strings);
+			consumed();
+			return s;
+		}
+		mismatch("string");
+		return NOT_A_STRING;
+	}
+
+	@Override public int takeString(NameIndex names) throws IOException {
+		if (peek() == Token.String) {
+			int i = readName(names);
+			consumed();
+			return i;
+		}
+		mismatch("name string");
+		return NameIndex.UNKNOWN;
+	}
+
+	@Override public int takeField() throws IOException {
+		if (peek() != Token.Field) {
+			// not skipping anything here, would be out of sync anyway
+			problems.enque(new Problem.UnexpectedToken(
+				path(), "field name", describe(peeked), peek()));
+			return NameIndex.UNKNOWN;
+		}
+		@Null var names = structNames[depth];
+		int i = readName(names != null ? names : NameIndex.unknown());
+		fields[depth] = i;
+		fieldNames[depth] = lastName;
+
+		if (skipWhitespace() != ':') throw syntax("Expected ':' after field name");
+		position++;
+
+		peeked = null;
+		afterName = true;
+		return i;
+	}
+
+	@Override public String name() throws IOException {
+		if (lastName != null) return lastName;
+		if (lastNames != null && lastIndex >= 0) return lastNames.name(lastIndex);
+		throw new IllegalStateException("No name was read");
+	}
+
+	/**
+	 * Reads quoted string at the current position (on the opening quote) and matches it.
+	 * Sets last name or index, eagerly creating string only if the name was not matched.
+	 */
+	private int readName(NameIndex names) throws IOException {
+		lastNames = names;
+		lastName = null;
+		position++; // opening quote
+
+		if (names instanceof Utf8NameIndex utf8) {
+			int start = position;
+			int end = closingQuote(start);
+			if (end >= 0) {
+				position = end + 1;
+				int i = array != null
+					? utf8.index(array, arrayOffset + start, arrayOffset + end)
+					: utf8.index(buffer, start, end);
+				if (i == NameIndex.UNKNOWN) {
+					lastName = decodeUtf8(start, end);
+				}
+				return lastIndex = i;
+			}
+			// escaped or spans chunks
+		}
+		var s = readStringContent(null);
+		int i = names.index(s);
+		if (i == NameIndex.UNKNOWN) lastName = s;
+		return lastIndex = i;
+	}
+
+	private String readString() throws IOException {
+		position++; // opening quote
+		return readStringContent(null);
+	}
+
+	private String readStringContent(@Null StringCache strings) throws IOException {
+		int start = position;
+		int end = closingQuote(start);
+		if (end >= 0) {
+			position = end + 1;
+			if (strings != null) {
+				return array != null
+					? strings.get(array, arrayOffset + start, arrayOffset + end)
+					: strings.dedup(decodeUtf8(start, end));
+			}
+			return decodeUtf8(start, end);
+		}
+		return readStringSlow(strings);
+	}
+
+	/**
+	 * Finds closing quote within current chunk if string has no escapes or control
+	 * characters, so it can be decoded in one go.
+	 * @return position of closing quote or {@code -1} if slow path is required
+	 */
+	private int closingQuote(int from) {
+		if (array != null) {
+			var a = array;
+			int offset = arrayOffset;
+			for (int i = offset + from, end = offset + limit; i < end; i++) {
+				byte b = a[i];
+				if (b == '"') return i - offset;
+				if (b == '\\' || (b >= 0 && b < 0x20)) return -1;
+			}
+			return -1;
+		}
+		for (int p = from; p < limit; p++) {
+			byte b = buffer.get(p);
+			if (b == '"') return p;
+			if (b == '\\' || (b >= 0 && b < 0x20)) return -1;
+		}
+		return -1;
+	}
+
+	private String decodeUtf8(int from, int to) {
+		int length = to - from;
+		if (array != null) {
+			return new String(array, arrayOffset + from, length, StandardCharsets.UTF_8);
+		}
+		if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+		buffer.get(from, bytes, 0, length);
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes string handling escapes and chunk boundaries, continues from the current position
+	 * after opening quote.
+	 */
+	private String readStringSlow(@Null StringCache strings) throws IOException {
+		int length = 0;
+		for (; ; ) {
+			int c = next();
+			if (c == '"') break;
+			if (length + 2 > chars.length) chars = Arrays.copyOf(chars, chars.length * 2);
+
+			if (c == '\\') {
+				c = next();
+				chars[length++] = switch (c) {
+					case '"' -> '"';
+					case '\\' -> '\\';
+					case '/' -> '/';
+					case 'b' -> '\b';
+					case 'f' -> '\f';
+					case 'n' -> '\n';
+					case 'r' -> '\r';
+					case 't' -> '\t';
+					case 'u' -> readHexChar();
+					case -1 -> throw syntax("Unterminated string");
+					default -> throw syntax("Illegal escape '\\" + (char) c + "'");
+				};
+			} else if (c < 0x80) {
+				if (c < 0x20) throw syntax(c < 0
+					? "Unterminated string"
+					: "Illegal control character in string");
+				chars[length++] = (char) c;
+			} else {
+				int codePoint = readUtf8Sequence(c);
+				if (codePoint > 0xFFFF) {
+					chars[length++] = Character.highSurrogate(codePoint);
+					chars[length++] = Character.lowSurrogate(codePoint);
+				} else {
+					chars[length++] = (char) codePoint;
+				}
+			}
+		}
+		return strings != null
+			? strings.get(chars, 0, length)
+			: new String(chars, 0, length);
+	}
+
+	private char readHexChar() throws IOException {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			int c = next();
+			int digit = Character.digit(c, 16);
+			if (c < 0 || digit < 0) throw syntax("Illegal unicode escape");
+			value = value << 4 | digit;
+		}
+		return (char) value;
+	}
+
+	/** Decodes rest of multibyte sequence, malformed sequences turn into replacement char. */
+	private int readUtf8Sequence(int lead) throws IOException {
+		int continuation;
+		int codePoint;
+		if ((lead & 0xE0) == 0xC0) {
+			continuation = 1;
+			codePoint = lead & 0x1F;
+		} else if ((lead & 0xF0) == 0xE0) {
+			continuation = 2;
+			codePoint = lead & 0x0F;
+		} else if ((lead & 0xF8) == 0xF0) {
+			continuation = 3;
+			codePoint = lead & 0x07;
+		} else return REPLACEMENT;
+
+		for (int i = 0; i < continuation; i++) {
+			int c = current();
+			if ((c & 0xC0) != 0x80) return REPLACEMENT;
+			position++;
+			codePoint = codePoint << 6 | c & 0x3F;
+		}
+		return codePoint <= Character.MAX_CODE_POINT ? codePoint : REPLACEMENT;
+	}
+
+	@Override public void skip() throws IOException {
+		switch (peek()) {
+		case Struct, Array, String -> {
+			skipRaw();
+			consumed();
+		}
+		case Field -> {
+			position++;
+			skipStringRaw();
+			if (skipWhitespace() != ':') throw syntax("Expected ':' after field name");
+			position++;
+			peeked = null;
+			afterName = true;
+			skip();
+		}
+		// nothing to skip, ends are consumed by endStruct/endArray
+		case StructEnd, ArrayEnd, End -> {}
+		// scalars were already read while peeking
+		default -> consumed();
+		}
+	}
+
+	/**
+	 * Skips string, struct or array on the byte level, only tracking nesting, so not validating
+	 * syntax inside.
+	 */
+	private void skipRaw() throws IOException {
+		int level = 0;
+		do {
+			switch (next()) {
+			case '"' -> skipStringRaw();
+			case '{', '[' -> level++;
+			case '}', ']' -> level--;
+			case -1 -> throw syntax("Unexpected end of input");
+			default -> {}
+			}
+		} while (level > 0);
+	}
+
+	// skips to the end of string after opening quote was consumed
+	private void skipStringRaw() throws IOException {
+		for (; ; ) {
+			while (position < limit) {
+				byte b = byteAt(position++);
+				if (b == '"') return;
+				if (b == '\\') {
+					if (position == limit && !fill()) break;
+					position++;
+				}
+			}
+			if (!fill()) throw syntax("Unterminated string");
+		}
+	}
+
+	@Override public boolean hasNext() throws IOException {
+		var t = peek();
+		return t != Token.ArrayEnd && t != Token.StructEnd && t != Token.End;
+	}
+
+	@Override public void beginArray() throws IOException {
+		if (peek() == Token.Array) {
+			position++;
+			push(false, null);
+		} else {
+			mismatch("'[' array");
+			// artificially injecting end array after skipping
+			// anything which is not array
+			// this will force hasNext to return false,
+			// and endArray to work
+			peeked = Token.ArrayEnd;
+			injectedEnd = true;
+		}
+	}
+
+	@Override public void endArray() throws IOException {
+		end(Token.ArrayEnd, "']' array end");
+	}
+
+	@Override public void beginStruct(NameIndex names) throws IOException {
+		if (peek() == Token.Struct) {
+			position++;
+			push(true, names);
+		} else {
+			mismatch("'{' struct");
+			// injecting end so hasNext will return false
+			// and endStruct will silently succeed
+			peeked = Token.StructEnd;
+			injectedEnd = true;
+		}
+	}
+
+	@Override public void endStruct() throws IOException {
+		end(Token.StructEnd, "'}' struct end");
+	}
+
+	private void end(Token end, String expected) throws IOException {
+		if (injectedEnd && peeked == end) {
+			injectedEnd = false;
+			peeked = null;
+			return;
+		}
+		if (peek() != end) {
+			problems.enque(new Problem.UnexpectedToken(path(), expected, describe(peeked), peek()));
+			// skipping the rest of array or struct to recover
+			while (hasNext()) skip();
+		}
+		position++;
+		pop();
+		consumed();
+	}
+
+	private void push(boolean struct, @Null NameIndex names) {
+		if (++depth == inStruct.length) {
+			int length = depth * 2;
+			inStruct = Arrays.copyOf(inStruct, length);
+			counts = Arrays.copyOf(counts, length);
+			structNames = Arrays.copyOf(structNames, length);
+			fields = Arrays.copyOf(fields, length);
+			fieldNames = Arrays.copyOf(fieldNames, length);
+		}
+		inStruct[depth] = struct;
+		counts[depth] = 0;
+		structNames[depth] = names;
+		fields[depth] = NameIndex.UNKNOWN;
+		fieldNames[depth] = null;
+		peeked = null;
+		afterName = false;
+	}
+
+	private void pop() {
+		structNames[depth] = null;
+		fieldNames[depth] = null;
+		depth--;
+	}
+
+	/** Reports unexpected token and skips it. */
+	private void mismatch(String expected) throws IOException {
+		var token = peek();
+		problems.enque(new Problem.UnexpectedToken(path(), expected, describe(token), token));
+		skip();
+	}
+
+	private String describe(@Null Token token) {
+		if (token == null) return "";
+		return switch (token) {
+			case Int, Float -> numberText();
+			case True -> "true";
+			case False -> "false";
+			case Null -> "null";
+			case String -> "string";
+			case Struct -> "{";
+			case StructEnd -> "}";
+			case Array -> "[";
+			case ArrayEnd -> "]";
+			case Field -> "field";
+			case End -> "end of input";
+			default -> token.name();
+		};
+	}
+
+	@Override public NameIndex index(String... known) {
+		return new Utf8NameIndex(known);
+	}
+
+	@Override public Buffer takeBuffer() throws IOException {
+		var t = peek();
+		ByteBuffer content;
+		switch (t) {
+		case Struct, Array, String -> {
+			var c = new Capture();
+			c.from = position;
+			capture = c;
+			try {
+				skipRaw();
+			} finally {
+				capture = null;
+			}
+			if (c.length == 0 && source == null) {
+				// no copying when we read from a single buffer which we don't reuse
+				content = buffer.duplicate().position(c.from).limit(position).slice();
+			} else {
+				c.append(buffer, c.from, position);
+				content = ByteBuffer.wrap(c.bytes, 0, c.length);
+			}
+		}
+		case Int, Float -> content = ByteBuffer.wrap(
+			numberText().getBytes(StandardCharsets.US_ASCII));
+		case True -> content = ByteBuffer.wrap(TRUE);
+		case False -> content = ByteBuffer.wrap(FALSE);
+		case Null -> content = ByteBuffer.wrap(NULL);
+		default -> throw syntax("Cannot buffer " + describe(t));
+		}
+		consumed();
+		return new JsonBuffer(content, problems, stringCache());
+	}
+
+	private static final class JsonBuffer extends Buffer {
+		private final ByteBuffer content;
+		private final Problem.Handler problems;
+		private final @Null StringCache strings;
+
+		JsonBuffer(ByteBuffer content, Problem.Handler problems, @Null StringCache strings) {
+			this.content = content;
+			this.problems = problems;
+			this.strings = strings;
+		}
+
+		@Override public In in() {
+			var in = new JsonIn(content.duplicate(), problems);
+			in.stringCache(strings);
+			return in;
+		}
+	}
+
+	private static final class Capture {
+		byte[] bytes = new byte[256];
+		int length;
+		int from;
+
+		void append(ByteBuffer buffer, int from, int to) {
+			int add = to - from;
+			if (length + add > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + add));
+			}
+			buffer.get(from, bytes, length, add);
+			length += add;
+		}
+	}
+
+	@Override public AtPath path() {
+		AtPath path = AtPath.Root.Root;
+		for (int d = 1; d <= depth; d++) {
+			if (inStruct[d]) {
+				@Null var name = fieldNames[d];
+				@Null var names = structNames[d];
+				if (name == null && names != null && fields[d] >= 0) name = names.name(fields[d]);
+				if (name != null) path = new AtPath.FieldOf(path, name);
+			} else if (counts[d] > 0) {
+				path = new AtPath.ElementAt(path, counts[d] - 1);
+			}
+		}
+		return path;
+	}
+
+	private IOException syntax(String message) {
+		long offset = chunkOffset + position - chunkStart;
+		return new IOException("JSON syntax: %s, at offset %d, path %s"
+			.formatted(message, offset, path()));
+	}
+
+	@Override public String toString() {
+		return JsonIn.class.getSimpleName() + "(at " + path() + ")";
+	}
+
+	// JSON numbers having more significant digits than that are parsed via slow path
+	private static final int MAX_DIGITS = 18;
+	private static final int DEFAULT_CHUNK = 8192;
+	private static final int REPLACEMENT = 0xFFFD;
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+}
@@ -0,0 +1,376 @@
+package io.immutables.codec.json;
+
+import io.immutables.codec.NameIndex;
+import io.immutables.codec.Out;
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes UTF-8 encoded JSON directly to a byte buffer, which is either accumulated in memory
+ * or flushed to an {@link OutputStream} or {@link WritableByteChannel} when full. Field names
+ * and enum constants are written as precomputed byte sequences when {@link Utf8NameIndex}
+ * is used (see {@link #index(String...)}), other {@link NameIndex} implementations are also
+ * supported, but names will be encoded each time.
+ * <p>When writing to a stream or channel, {@link #flush()} have to be called after
+ * the last value. Multiple top-level values are separated by newlines.
+ */
+public final class JsonOut extends Out {
+	private final @Null OutputStream stream;
+	private final @Null WritableByteChannel channel;
+	private @Null ByteBuffer direct;
+	private byte[] bytes;
+	private int count;
+
+	private int depth;
+	private boolean[] first = new boolean[16];
+	private @Null NameIndex[] names = new NameIndex[16];
+	private boolean afterField;
+
+	/** Accumulates output in memory, see {@link #toByteArray()} */
+	public JsonOut() {
+		this(null, null, 512);
+	}
+
+	/** Writes to stream in chunks, call {@link #flush()} after the last value. */
+	public JsonOut(OutputStream stream) {
+		this(stream, null, 8192);
+	}
+
+	/**
+	 * Writes to channel in chunks via reused direct buffer, call {@link #flush()}
+	 * after the last value. Channel is expected to be blocking.
+	 */
+	public JsonOut(WritableByteChannel channel) {
+		this(null, channel, 8192);
+	}
+
+	private JsonOut(@Null OutputStream stream, @Null WritableByteChannel channel, int capacity) {
+		this.stream = stream;
+		this.channel = channel;
+		this.bytes = new byte[capacity];
+		first[0] = true;
+	}
+
+	@Override public NameIndex index(String... known) {
+		return new Utf8NameIndex(known);
+	}
+
+	@Override public void putNull() throws IOException {
+		beforeValue();
+		ensure(4);
+		count = writeAscii(NULL, count);
+	}
+
+	@Override public void putInt(int i) throws IOException {
+		putLong(i);
+	}
+
+	@Override public void putLong(long l) throws IOException {
+		beforeValue();
+		ensure(20);
+		count = Numbers.writeLong(bytes, count, l);
+	}
+
+	@Override public void putDouble(double d) throws IOException {
+		if (Double.isNaN(d) || Double.isInfinite(d)) {
+			// the same as Jackson does by default, writing non-numbers as strings
+			putString(Double.toString(d));
+			return;
+		}
+		beforeValue();
+		ensure(26);
+		int at = Numbers.writeDouble(bytes, count, d);
+		if (at >= 0) {
+			count = at;
+		} else {
+			var s = Double.toString(d);
+			ensure(s.length());
+			for (int i = 0; i < s.length(); i++) {
+				bytes[count++] = (byte) s.charAt(i);
+			}
+		}
+	}
+
+	@Override public void putBoolean(boolean b) throws IOException {
+		beforeValue();
+		ensure(5);
+		count = writeAscii(b ? TRUE : FALSE, count);
+	}
+
+	@Override public void putString(String s) throws IOException {
+		beforeValue();
+		writeQuoted(s);
+	}
+
+	@Override public void putString(char[] chars, int offset, int length) throws IOException {
+		beforeValue();
+		writeQuoted(String.valueOf(chars, offset, length));
+	}
+
+	@Override public void putString(NameIndex names, int index) throws IOException {
+		beforeValue();
+		if (names instanceof Utf8NameIndex utf8) {
+			writeRaw(utf8.quoted[index]);
+		} else {
+			writeQuoted(names.name(index));
+		}
+	}
+
+	@Override public void beginArray() throws IOException {
+		beforeValue();
+		push(null);
+		ensure(1);
+		bytes[count++] = '[';
+	}
+
+	@Override public void endArray() throws IOException {
+		pop();
+		ensure(1);
+		bytes[count++] = ']';
+	}
+
+	@Override public void beginStruct(NameIndex names) throws IOException {
+		beforeValue();
+		push(names);
+		ensure(1);
+		bytes[count++] = '{';
+	}
+
+	@Override public void putField(int index) throws IOException {
+		beforeField();
+		@Null var n = names[depth];
+		if (n instanceof Utf8NameIndex utf8) {
+			writeRaw(utf8.fields[index]);
+		} else {
+			assert n != null : "putField(int) requires struct with name index";
+			writeQuoted(n.name(index));
+			ensure(1);
+			bytes[count++] = ':';
+		}
+		afterField = true;
+	}
+
+	@Override public void putField(String name) throws IOException {
+		beforeField();
+		writeQuoted(name);
+		ensure(1);
+		bytes[count++] = ':';
+		afterField = true;
+	}
+
+	@Override public void endStruct() throws IOException {
+		pop();
+		ensure(1);
+		bytes[count++] = '}';
+	}
+
+	/** Number of bytes written, but not yet flushed. */
+	public int size() {
+		return count;
+	}
+
+	/** Copy of the accumulated (not yet flushed) output. */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, count);
+	}
+
+	/**
+	 * Copy of the accumulated (not yet flushed) output in a newly allocated direct buffer,
+	 * ready to be written to a channel, including asynchronous ones, which would otherwise
+	 * copy heap buffer to a temporary direct one on each write.
+	 */
+	public ByteBuffer toDirectByteBuffer() {
+		return ByteBuffer.allocateDirect(count).put(bytes, 0, count).flip();
+	}
+
+	/** Accumulated (not yet flushed) output as a string. */
+	public String asString() {
+		return new String(bytes, 0, count, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes any accumulated output to the stream or channel, and flushes stream itself.
+	 * Does nothing when output is accumulated in memory.
+	 */
+	public void flush() throws IOException {
+		drain();
+		if (stream != null) stream.flush();
+	}
+
+	private void drain() throws IOException {
+		if (count == 0) return;
+		if (stream != null) {
+			stream.write(bytes, 0, count);
+			count = 0;
+		} else if (channel != null) {
+			@Null var d = direct;
+			if (d == null) direct = d = ByteBuffer.allocateDirect(bytes.length);
+			for (int at = 0; at < count; ) {
+				int length = Math.min(d.capacity(), count - at);
+				d.clear().put(bytes, at, length).flip();
+				while (d.hasRemaining()) channel.write(d);
+				at += length;
+			}
+			count = 0;
+		}
+	}
+
+	private void beforeValue() {
+		if (afterField) {
+			afterField = false;
+		} else if (first[depth]) {
+			first[depth] = false;
+		} else {
+			// top level values are separated by newline
+			ensureUnchecked(1);
+			bytes[count++] = depth == 0 ? (byte) '\n' : (byte) ',';
+		}
+	}
+
+	private void beforeField() {
+		if (first[depth]) {
+			first[depth] = false;
+		} else {
+			ensureUnchecked(1);
+			bytes[count++] = ',';
+		}
+	}
+
+	private void push(@Null NameIndex index) {
+		if (++depth == first.length) {
+			first = Arrays.copyOf(first, depth * 2);
+			names = Arrays.copyOf(names, depth * 2);
+		}
+		first[depth] = true;
+		names[depth] = index;
+	}
+
+	private void pop() {
+		assert depth > 0 : "unbalanced end of array or struct";
+		names[depth--] = null;
+		afterField = false;
+	}
+
+	private void writeRaw(byte[] raw) throws IOException {
+		ensure(raw.length);
+		System.arraycopy(raw, 0, bytes, count, raw.length);
+		count += raw.length;
+	}
+
+	private int writeAscii(byte[] ascii, int at) {
+		System.arraycopy(ascii, 0, bytes, at, ascii.length);
+		return at + ascii.length;
+	}
+
+	private void writeQuoted(String s) throws IOException {
+		int length = s.length();
+		// reserve for the worst case (6 bytes for an escaped char) when it's cheap,
+		// otherwise check capacity per character
+		ensure(Math.min(length, 1024) * 6 + 2);
+		bytes[count++] = '"';
+		for (int i = 0; i < length; i++) {
+			if (count + 8 > bytes.length) ensure(8);
+
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				byte escape = ESCAPES[c];
+				if (escape == 0) {
+					bytes[count++] = (byte) c;
+				} else if (escape > 0) {
+					bytes[count++] = '\\';
+					bytes[count++] = escape;
+				} else {
+					count = writeUnicodeEscape(c, count);
+				}
+			} else if (c < 0x800) {
+				bytes[count++] = (byte) (0xC0 | c >> 6);
+				bytes[count++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c)
+					&& i + 1 < length
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, s.charAt(++i));
+					bytes[count++] = (byte) (0xF0 | codePoint >> 18);
+					bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+					bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+					bytes[count++] = (byte) (0x80 | codePoint & 0x3F);
+				} else {
+					// unpaired surrogate cannot be encoded in UTF-8,
+					// but can be preserved as an escape
+					count = writeUnicodeEscape(c, count);
+				}
+			} else {
+				bytes[count++] = (byte) (0xE0 | c >> 12);
+				bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+				bytes[count++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		ensure(1);
+		bytes[count++] = '"';
+	}
+
+	private int writeUnicodeEscape(char c, int at) {
+		bytes[at++] = '\\';
+		bytes[at++] = 'u';
+		bytes[at++] = HEX[c >> 12 & 0xF];
+		bytes[at++] = HEX[c >> 8 & 0xF];
+		bytes[at++] = HEX[c >> 4 & 0xF];
+		bytes[at++] = HEX[c & 0xF];
+		return at;
+	}
+
+	private void ensure(int required) throws IOException {
+		if (count + required > bytes.length) {
+			drain();
+			ensureUnchecked(required);
+		}
+	}
+
+	// grows buffer, never flushes, used where IOException is not expected
+	private void ensureUnchecked(int required) {
+		if (count + required > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + required));
+		}
+	}
+
+	/**
+	 * Quoted and escaped UTF-8 bytes of a string, optionally followed by colon,
+	 * used to precompute names.
+	 */
+	static byte[] quote(String s, boolean asField) {
+		var out = new JsonOut(null, null, s.length() + 8);
+		try {
+			out.writeQuoted(s);
+		} catch (IOException cannotHappenInMemory) {
+			throw new AssertionError(cannotHappenInMemory);
+		}
+		if (asField) {
+			out.ensureUnchecked(1);
+			out.bytes[out.count++] = ':';
+		}
+		return out.toByteArray();
+	}
+
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	// 0 - no escape, positive - escape char, negative - unicode escape
+	private static final byte[] ESCAPES = new byte[0x80];
+	static {
+		for (int c = 0; c < 0x20; c++) ESCAPES[c] = -1;
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\r'] = 'r';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\f'] = 'f';
+	}
+}
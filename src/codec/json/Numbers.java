@@ -0,0 +1,118 @@
+package io.immutables.codec.json;
+
+/**
+ * Number conversions which avoid intermediate strings for the most common cases.
+ * Both parsing and formatting have exact fast paths, based on the fact that integers
+ * below 2<sup>53</sup> and powers of ten up to 10<sup>22</sup> are exactly
+ * representable as {@code double}, so a single correctly rounded multiplication or division
+ * gives correctly rounded result. Everything else falls back to JDK conversions.
+ */
+final class Numbers {
+	private Numbers() {}
+
+	static final long MAX_EXACT = 1L << 53;
+
+	static final int MAX_POW10 = 22;
+
+	private static final double[] POW10 = new double[MAX_POW10 + 1];
+	private static final long[] LONG_POW10 = new long[19];
+	static {
+		double d = 1;
+		for (int i = 0; i < POW10.length; i++, d *= 10) POW10[i] = d;
+		long l = 1;
+		for (int i = 0; i < LONG_POW10.length; i++, l *= 10) LONG_POW10[i] = l;
+	}
+
+	/**
+	 * Exact conversion for a decimal {@code mantissa * 10^exponent}.
+	 * @return converted value or {@code NaN} if fast path is not applicable
+	 */
+	static double toDouble(long mantissa, int exponent) {
+		if (mantissa < MAX_EXACT) {
+			if (exponent == 0) return mantissa;
+			if (exponent > 0 && exponent <= MAX_POW10) return mantissa * POW10[exponent];
+			if (exponent < 0 && exponent >= -MAX_POW10) return mantissa / POW10[-exponent];
+		}
+		return Double.NaN;
+	}
+
+	/** Number of decimal digits in non-negative long. */
+	static int digits(long value) {
+		for (int i = 1; i < LONG_POW10.length; i++) {
+			if (value < LONG_POW10[i]) return i;
+		}
+		return LONG_POW10.length;
+	}
+
+	/**
+	 * Writes decimal digits of non-negative long, padding with leading zeros
+	 * to the specified number of digits.
+	 * @return position after written digits
+	 */
+	static int writeDigits(byte[] bytes, int at, long value, int digits) {
+		int end = at + digits;
+		for (int p = end - 1; p >= at; p--) {
+			bytes[p] = (byte) ('0' + (int) (value % 10));
+			value /= 10;
+		}
+		return end;
+	}
+
+	/**
+	 * Writes long value as decimal ASCII digits. Need at most 20 bytes available.
+	 * @return position after written number
+	 */
+	static int writeLong(byte[] bytes, int at, long value) {
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+				for (int i = 0; i < LONG_MIN.length; i++) bytes[at++] = LONG_MIN[i];
+				return at;
+			}
+			bytes[at++] = '-';
+			value = -value;
+		}
+		return writeDigits(bytes, at, value, digits(value));
+	}
+
+	/**
+	 * Writes shortest plain decimal form of a double if fast path is applicable.
+	 * Values in range where {@link Double#toString(double)} would use plain
+	 * (not computerized scientific) notation are tried with increasing number of
+	 * fraction digits until scaled value converts back exactly, so the output has the minimal
+	 * number of fraction digits which still round-trips. Need at most 26 bytes available.
+	 * @return position after written number or {@code -1} if fast path is not applicable
+	 * and nothing was written
+	 */
+	static int writeDouble(byte[] bytes, int at, double value) {
+		double magnitude = Math.abs(value);
+		if (magnitude == 0) {
+			if (Double.doubleToRawLongBits(value) != 0) bytes[at++] = '-';
+			bytes[at++] = '0';
+			bytes[at++] = '.';
+			bytes[at++] = '0';
+			return at;
+		}
+		if (!(magnitude >= 1e-3 && magnitude < 1e7)) return -1;
+
+		for (int scale = 0; scale <= 17; scale++) {
+			double scaled = Math.rint(magnitude * POW10[scale]);
+			if (scaled >= MAX_EXACT) return -1;
+			if (scaled / POW10[scale] == magnitude) {
+				long digits = (long) scaled;
+				if (value < 0) bytes[at++] = '-';
+				long integral = digits / LONG_POW10[scale];
+				at = writeDigits(bytes, at, integral, digits(integral));
+				bytes[at++] = '.';
+				if (scale == 0) {
+					bytes[at++] = '0';
+				} else {
+					at = writeDigits(bytes, at, digits % LONG_POW10[scale], scale);
+				}
+				return at;
+			}
+		}
+		return -1;
+	}
+
+	private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes();
+}
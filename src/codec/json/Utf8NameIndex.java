@@ -0,0 +1,134 @@
+package io.immutables.codec.json;
+
+import io.immutables.codec.NameIndex;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Name index which keeps names as UTF-8 bytes, so that field names and enum constants
+ * can be matched directly against the input bytes, without creating {@link String}s.
+ * For output, it also keeps precomputed quoted names and field prefixes ({@code "name":}),
+ * which are copied to the output verbatim.
+ */
+public final class Utf8NameIndex extends NameIndex {
+	private final String[] known;
+	private final byte[][] utf8;
+	final byte[][] quoted;
+	final byte[][] fields;
+	// open addressing hash table, slots contain index + 1, 0 marks empty slot
+	private final int[] slots;
+	private final int mask;
+
+	public Utf8NameIndex(String... known) {
+		this.known = known.clone();
+		int length = known.length;
+		utf8 = new byte[length][];
+		quoted = new byte[length][];
+		fields = new byte[length][];
+
+		int capacity = Integer.highestOneBit(length * 2 + 1) << 1;
+		slots = new int[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < length; i++) {
+			var name = known[i];
+			utf8[i] = name.getBytes(StandardCharsets.UTF_8);
+			quoted[i] = JsonOut.quote(name, false);
+			fields[i] = JsonOut.quote(name, true);
+
+			int s = hash(utf8[i], 0, utf8[i].length) & mask;
+			while (slots[s] != 0) {
+				// on duplicates, first one wins, as it would with linear search
+				if (Arrays.equals(utf8[slots[s] - 1], utf8[i])) break;
+				s = (s + 1) & mask;
+			}
+			if (slots[s] == 0) slots[s] = i + 1;
+		}
+	}
+
+	public String[] known() {
+		return known.clone();
+	}
+
+	public int index(String name) {
+		var bytes = name.getBytes(StandardCharsets.UTF_8);
+		return index(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Matches name encoded as UTF-8 bytes (without quotes or escapes) in a buffer
+	 * range without changing buffer position.
+	 * @param buffer input buffer
+	 * @param from absolute start position, inclusive
+	 * @param to absolute end position, exclusive
+	 * @return index of the name or {@link #UNKNOWN}
+	 */
+	public int index(ByteBuffer buffer, int from, int to) {
+		if (buffer.hasArray()) {
+			int offset = buffer.arrayOffset();
+			return index(buffer.array(), offset + from, offset + to);
+		}
+		// direct buffers, matching via absolute gets, no copying
+		int h = 0;
+		for (int p = from; p < to; p++) {
+			h = 31 * h + buffer.get(p);
+		}
+		int length = to - from;
+		for (int s = spread(h) & mask; ; s = (s + 1) & mask) {
+			int slot = slots[s];
+			if (slot == 0) return UNKNOWN;
+			var candidate = utf8[slot - 1];
+			if (candidate.length == length && matches(candidate, buffer, from)) {
+				return slot - 1;
+			}
+		}
+	}
+
+	/**
+	 * Matches name encoded as UTF-8 bytes (without quotes or escapes) in an array range.
+	 * @param bytes input bytes
+	 * @param from start index, inclusive
+	 * @param to end index, exclusive
+	 * @return index of the name or {@link #UNKNOWN}
+	 */
+	public int index(byte[] bytes, int from, int to) {
+		int length = to - from;
+		for (int s = hash(bytes, from, to) & mask; ; s = (s + 1) & mask) {
+			int slot = slots[s];
+			if (slot == 0) return UNKNOWN;
+			var candidate = utf8[slot - 1];
+			if (candidate.length == length
+				&& Arrays.equals(candidate, 0, length, bytes, from, to)) {
+				return slot - 1;
+			}
+		}
+	}
+
+	public String name(int index) {
+		return known[index];
+	}
+
+	private static boolean matches(byte[] candidate, ByteBuffer buffer, int from) {
+		for (int i = 0; i < candidate.length; i++) {
+			if (candidate[i] != buffer.get(from + i)) return false;
+		}
+		return true;
+	}
+
+	private static int hash(byte[] bytes, int from, int to) {
+		int h = 0;
+		for (int p = from; p < to; p++) {
+			h = 31 * h + bytes[p];
+		}
+		return spread(h);
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	public String toString() {
+		return Utf8NameIndex.class.getSimpleName() + "(" + String.join(", ", known) + ")";
+	}
+}
@@ -6,6 +6,7 @@ module io.immutables.codec {
 	requires static javax.annotation.jsr305;
 
 	exports io.immutables.codec;
+	exports io.immutables.codec.json;
 	exports io.immutables.codec.record;
 	exports io.immutables.codec.record.meta;
 
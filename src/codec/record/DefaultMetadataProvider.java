@@ -1,5 +1,6 @@
 package io.immutables.codec.record;
 
+import io.immutables.codec.record.meta.Dedup;
 import io.immutables.codec.record.meta.Default;
 import io.immutables.codec.record.meta.Inline;
 import io.immutables.codec.record.meta.Opt;
@@ -31,6 +32,11 @@ public class DefaultMetadataProvider implements MetadataProvider {
 			|| component.isAnnotationPresent(Opt.class);
 	}
 
+	@Override
+	public boolean isDedupComponent(RecordComponent component) {
+		return component.isAnnotationPresent(Dedup.class);
+	}
+
 	@Override
 	public @Null CaseTag findCaseTag(Class<?> record, @Null Class<?> sealed) {
 		if (record.isRecord() && (sealed == null || sealed.isSealed())) {
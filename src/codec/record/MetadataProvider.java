@@ -14,6 +14,14 @@ public interface MetadataProvider {
 
 	boolean isNullableComponent(RecordComponent component);
 
+	/**
+	 * String values of component to be deduplicated via {@link io.immutables.codec.StringCache}.
+	 * None are by default, so that existing providers need not implement it.
+	 */
+	default boolean isDedupComponent(RecordComponent component) {
+		return false;
+	}
+
 	/**
 	 * Record case tag can be given explicitly
 	 * @param record record class
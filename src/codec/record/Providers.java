@@ -55,6 +55,13 @@ final class Providers {
 			return false;
 		}
 
+		@Override public boolean isDedupComponent(RecordComponent component) {
+			for (var p : providers) {
+				if (p.isDedupComponent(component)) return true;
+			}
+			return false;
+		}
+
 		@Override public @Null CaseTag findCaseTag(Class<?> record, @Null Class<?> sealed) {
 			for (var p : providers) {
 				@Null var tag = p.findCaseTag(record, sealed);
@@ -49,6 +49,11 @@ final class RecordCodec<T> extends CaseCodec<T, In, Out> implements Expecting {
 			componentAccessors[i] = accessor;
 
 			var codec = lookup.get(componentType);
+			if (componentType == String.class && Providers.metadata().isDedupComponent(c)) {
+				Codec<String, In, Out> strings = lookup.get(String.class);
+				var dedup = Codecs.dedup(strings, StringCache.shared());
+				codec = (Codec<Object, In, Out>) (Codec<?, In, Out>) dedup;
+			}
 			if (Providers.metadata().isNullableComponent(c)) {
 				codec = Codecs.nullSafe(codec);
 			}
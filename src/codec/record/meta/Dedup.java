@@ -0,0 +1,15 @@
+package io.immutables.codec.record.meta;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * String component values are deduplicated via shared
+ * {@link io.immutables.codec.StringCache#shared()}, useful for
+ * statuses, codes and other repetitive values.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface Dedup {}
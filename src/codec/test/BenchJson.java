@@ -0,0 +1,73 @@
+package io.immutables.codec.test;
+
+import io.immutables.codec.*;
+import io.immutables.codec.jackson.JsonGeneratorOut;
+import io.immutables.codec.jackson.JsonParserIn;
+import io.immutables.codec.json.JsonIn;
+import io.immutables.codec.json.JsonOut;
+import io.immutables.codec.record.RecordsFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.fasterxml.jackson.core.JsonFactory;
+
+/**
+ * Rough comparison of Jackson-backed and native JSON In/Out on the same codecs.
+ * Not a proper harness, just warmup and timing loop, run with {@code main}.
+ */
+public class BenchJson {
+	public record Item(int id, String name, double price, boolean available, List<String> tags) {}
+	public record Order(long number, String customer, List<Item> items) {}
+
+	static final JsonFactory factory = new JsonFactory();
+
+	public static void main(String[] args) throws IOException {
+		var registry = new Registry.Builder()
+			.add(new RecordsFactory())
+			.build();
+
+		Codec<Order, In, Out> codec = registry.resolve(Order.class, Medium.Json).orElseThrow();
+
+		var items = new ArrayList<Item>();
+		for (int i = 0; i < 100; i++) {
+			items.add(new Item(i, "Item Название " + i, i * 1.25, i % 3 == 0, List.of("a", "b" + i)));
+		}
+		var order = new Order(1234567890123L, "Customer", items);
+		var json = encodeJackson(codec, order);
+
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		for (int pass = 0; pass < 3; pass++) {
+			time("jackson encode", rounds, () -> encodeJackson(codec, order));
+			time("native  encode", rounds, () -> encodeNative(codec, order));
+			time("jackson decode", rounds, () -> codec.decode(new JsonParserIn(factory.createParser(json))));
+			time("native  decode", rounds, () -> codec.decode(new JsonIn(json)));
+		}
+	}
+
+	interface Run {
+		Object run() throws IOException;
+	}
+
+	static void time(String label, int rounds, Run run) throws IOException {
+		Object sink = null;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) sink = run.run();
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%s: %,d ns/op %s%n", label, elapsed / rounds, sink != null ? "" : "?");
+	}
+
+	static byte[] encodeJackson(Codec<Order, In, Out> codec, Order order) throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		try (var g = factory.createGenerator(bytes)) {
+			codec.encode(new JsonGeneratorOut(g), order);
+		}
+		return bytes.toByteArray();
+	}
+
+	static byte[] encodeNative(Codec<Order, In, Out> codec, Order order) throws IOException {
+		var out = new JsonOut();
+		codec.encode(out, order);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,91 @@
+package io.immutables.codec.test;
+
+import io.immutables.codec.*;
+import io.immutables.codec.record.RecordsFactory;
+import io.immutables.codec.record.meta.Tagged;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestConverter {
+	private final Registry registry = new Registry.Builder()
+		.add(new RecordsFactory())
+		.build();
+
+	public enum StatusDto { ACTIVE, BLOCKED, REMOVED }
+	public enum Status { BLOCKED, ACTIVE }
+
+	public record LineDto(String sku, int quantity, double price) {}
+	public record OrderDto(
+		long id, String customer, StatusDto status, List<LineDto> lines,
+		Optional<String> note, Map<String, Integer> tags, String internal) {}
+
+	// different order of components, some are missing, some are wider types
+	public record Line(double price, long quantity, String sku) {}
+	public record Order(
+		Status status, long id, String customer, List<Line> lines,
+		Optional<String> note, Map<String, Long> tags) {}
+
+	@Tagged
+	public sealed interface Shape {
+		record Circle(double r) implements Shape {}
+		record Square(double side) implements Shape {}
+	}
+
+	public record Drawing(List<Shape> shapes) {}
+
+	private <F, T> Converter<F, T> converter(Class<F> from, Class<T> to) {
+		return Converter.of(registry, from, to, Medium.Json);
+	}
+
+	@Test public void records() throws IOException {
+		var converter = converter(OrderDto.class, Order.class);
+		var dto = new OrderDto(1, "Customer", StatusDto.ACTIVE,
+			List.of(new LineDto("a", 2, 1.5), new LineDto("b", 1, 10)),
+			Optional.of("note"), Map.of("x", 1), "internal");
+
+		var order = converter.convert(dto);
+		that(order).equalTo(new Order(Status.ACTIVE, 1, "Customer",
+			List.of(new Line(1.5, 2, "a"), new Line(10, 1, "b")),
+			Optional.of("note"), Map.of("x", 1L)));
+
+		// reusing converter with cached slot mappings
+		var other = converter.convert(new OrderDto(2, "Other", StatusDto.BLOCKED, List.of(),
+			Optional.empty(), Map.of(), ""));
+		that(other).equalTo(new Order(Status.BLOCKED, 2, "Other", List.of(),
+			Optional.empty(), Map.of()));
+	}
+
+	@Test public void sameStrings() throws IOException {
+		var converter = converter(LineDto.class, Line.class);
+		var sku = new String("sku");
+		var line = converter.convert(new LineDto(sku, 1, 0));
+		that(line).notNull();
+		that((Object) line.sku()).same(sku);
+	}
+
+	@Test public void sealed() throws IOException {
+		var converter = converter(Drawing.class, Drawing.class);
+		var drawing = new Drawing(List.of(new Shape.Circle(1), new Shape.Square(2)));
+		that(converter.convert(drawing)).equalTo(drawing);
+	}
+
+	@Test public void problems() throws IOException {
+		var converter = converter(OrderDto.class, Order.class);
+		var dto = new OrderDto(1, "Customer", StatusDto.REMOVED,
+			List.of(new LineDto("a", 2, 1.5)), Optional.empty(), Map.of(), "");
+
+		var handler = Problem.collectingHandler(5);
+		that(converter.convert(dto, handler)).isNull();
+		that(handler.list()).hasSize(1);
+		that(handler.list().get(0).at()).hasToString("$.status");
+	}
+
+	@Test(expected = IOException.class)
+	public void throwingOnMismatch() throws IOException {
+		converter(LineDto.class, Order.class).convert(new LineDto("a", 1, 1));
+	}
+}
@@ -0,0 +1,349 @@
+package io.immutables.codec.test;
+
+import io.immutables.codec.*;
+import io.immutables.codec.json.JsonFeed;
+import io.immutables.codec.json.JsonIn;
+import io.immutables.codec.json.JsonOut;
+import io.immutables.codec.record.RecordsFactory;
+import io.immutables.codec.record.meta.Dedup;
+import io.immutables.codec.record.meta.Tagged;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestJson extends CodecFixture {
+	public record U(int a, boolean b, String c) {}
+	public record N(long l, double d, float f, List<Double> ds) {}
+	public record E(List<String> l, Optional<Integer> opt, Map<String, Integer> m) {}
+	public enum Abc { A, B, C }
+	public record V(Abc v, List<Abc> vs) {}
+	public record Nest(U u, List<U> us) {}
+
+	@Tagged(field = "x")
+	public sealed interface Tag {
+		@Tagged("a")
+		record A(int a) implements Tag {}
+		@Tagged("b")
+		record B(String b) implements Tag {}
+	}
+
+	public sealed interface Alt {
+		record A(int a) implements Alt {}
+		record B(String b, String c) implements Alt {}
+	}
+
+	private final Registry registry = new Registry.Builder()
+		.add(new RecordsFactory())
+		.build();
+
+	private <T> Codec<T, In, Out> codec(Class<T> type) {
+		return registry.resolve(type, Medium.Json).orElseThrow();
+	}
+
+	private static <T> String write(Codec<T, In, Out> codec, T instance) throws IOException {
+		var out = new JsonOut();
+		codec.encode(out, instance);
+		return out.asString();
+	}
+
+	private static <T> T read(Codec<T, In, Out> codec, String json) throws IOException {
+		return codec.decode(new JsonIn(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	// feeds input byte by byte so every token spans chunks
+	private static <T> T readChunked(Codec<T, In, Out> codec, String json) throws IOException {
+		var stream = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+		return codec.decode(new JsonIn(JsonIn.Source.of(stream, 1)));
+	}
+
+	@Test public void plainRecord() throws IOException {
+		var codec = codec(U.class);
+		var json = write(codec, new U(42, true, "string"));
+		that(json).is("{\"a\":42,\"b\":true,\"c\":\"string\"}");
+		that(read(codec, json)).equalTo(new U(42, true, "string"));
+		that(readChunked(codec, json)).equalTo(new U(42, true, "string"));
+		that(read(codec, " {\n \"c\" : \"s\" ,\t\"b\":false, \"a\":-1 } ")).equalTo(new U(-1, false, "s"));
+	}
+
+	@Test public void nested() throws IOException {
+		var codec = codec(Nest.class);
+		var n = new Nest(new U(1, false, ""), List.of(new U(2, true, "x"), new U(3, false, "y")));
+		var json = write(codec, n);
+		that(json).is("{\"u\":{\"a\":1,\"b\":false,\"c\":\"\"},"
+			+ "\"us\":[{\"a\":2,\"b\":true,\"c\":\"x\"},{\"a\":3,\"b\":false,\"c\":\"y\"}]}");
+		that(read(codec, json)).equalTo(n);
+		that(readChunked(codec, json)).equalTo(n);
+	}
+
+	@Test public void numbers() throws IOException {
+		var codec = codec(N.class);
+		var n = new N(Long.MIN_VALUE, 0.1, 1.5f,
+			List.of(0.0, -0.0, 1.0, -2.5, 123456.789, 1e300, 4.9e-324, 1e-7, 9007199254740993.0,
+				Double.MAX_VALUE, 0.30000000000000004, 100.0, 1e7));
+		var json = write(codec, n);
+		that(json).is("{\"l\":-9223372036854775808,\"d\":0.1,\"f\":1.5,\"ds\":"
+			+ "[0.0,-0.0,1.0,-2.5,123456.789,1.0E300,4.9E-324,1.0E-7,9.007199254740992E15,"
+			+ "1.7976931348623157E308,0.30000000000000004,100.0,1.0E7]}");
+		that(read(codec, json)).equalTo(n);
+		that(readChunked(codec, json)).equalTo(n);
+
+		var parsed = read(codec,
+			"{\"l\":9223372036854775807,\"d\":12345678901234567890.5,\"f\":2e0,"
+				+ "\"ds\":[1E2,-0.000125,3.14159265358979323846,7,1e-400]}");
+		that(parsed).equalTo(new N(Long.MAX_VALUE, 12345678901234567890.5, 2f,
+			List.of(100.0, -0.000125, Math.PI, 7.0, 0.0)));
+	}
+
+	@Test public void nonFiniteDoubles() throws IOException {
+		var codec = codec(N.class);
+		var n = new N(0, Double.NaN, Float.POSITIVE_INFINITY, List.of(Double.NEGATIVE_INFINITY));
+		var json = write(codec, n);
+		that(json).is("{\"l\":0,\"d\":\"NaN\",\"f\":\"Infinity\",\"ds\":[\"-Infinity\"]}");
+		that(read(codec, json)).equalTo(n);
+	}
+
+	@Test public void stringEscapesAndUnicode() throws IOException {
+		var codec = codec(U.class);
+		var s = "q\"b\\s/\n\r\t\b\f\u0001 привет € \uD83D\uDE00 end";
+		var json = write(codec, new U(0, false, s));
+		that(json).is("{\"a\":0,\"b\":false,\"c\":"
+			+ "\"q\\\"b\\\\s/\\n\\r\\t\\b\\f\\u0001 привет € \uD83D\uDE00 end\"}");
+		that(read(codec, json).c()).is(s);
+		that(readChunked(codec, json).c()).is(s);
+
+		var escaped = "{\"a\":0,\"b\":false,\"c\":\"\\u0041\\/\\uD83D\\uDE00\\uD800\"}";
+		that(read(codec, escaped).c()).is("A/\uD83D\uDE00\uD800");
+		// lone surrogate survives roundtrip as escape
+		that(read(codec, write(codec, new U(0, false, "\uDC00x"))).c()).is("\uDC00x");
+	}
+
+	@Test public void escapedFieldNames() throws IOException {
+		var codec = codec(U.class);
+		that(read(codec, "{\"\\u0061\":1,\"b\":true,\"\\u0063\":\"\"}")).equalTo(new U(1, true, ""));
+	}
+
+	@Test public void enums() throws IOException {
+		var codec = codec(V.class);
+		var v = new V(Abc.B, List.of(Abc.C, Abc.A));
+		var json = write(codec, v);
+		that(json).is("{\"v\":\"B\",\"vs\":[\"C\",\"A\"]}");
+		that(read(codec, json)).equalTo(v);
+		that(readChunked(codec, json)).equalTo(v);
+	}
+
+	@Test public void containers() throws IOException {
+		var codec = codec(E.class);
+		var e = new E(List.of("a", "b"), Optional.of(1), Map.of("k", 2));
+		var json = write(codec, e);
+		that(json).is("{\"l\":[\"a\",\"b\"],\"opt\":1,\"m\":{\"k\":2}}");
+		that(read(codec, json)).equalTo(e);
+		that(read(codec, "{\"l\":[],\"m\":{}}"))
+			.equalTo(new E(List.of(), Optional.empty(), Map.of()));
+	}
+
+	@Test public void unknownFieldsSkipped() throws IOException {
+		var codec = codec(U.class);
+		var json = "{\"z\":{\"a\":[1,{\"}\":\"]\"}],\"b\":\"\\\"\"},\"a\":1,"
+			+ "\"y\":[],\"b\":true,\"x\":null,\"c\":\"c\",\"w\":-1.5e3}";
+		that(read(codec, json)).equalTo(new U(1, true, "c"));
+		that(readChunked(codec, json)).equalTo(new U(1, true, "c"));
+	}
+
+	@Test public void sealedAndTagged() throws IOException {
+		var alt = registry.<Alt, In, Out>resolve(Alt.class, Medium.Json).orElseThrow();
+		var b = new Alt.B("x", "y");
+		that(read(alt, write(alt, b))).equalTo(b);
+		that(readChunked(alt, write(alt, b))).equalTo(b);
+		that(read(alt, "{\"a\":5}")).equalTo(new Alt.A(5));
+
+		var tag = registry.<Tag, In, Out>resolve(Tag.class, Medium.Json).orElseThrow();
+		var a = new Tag.A(1);
+		var json = write(tag, a);
+		that(json).is("{\"x\":\"a\",\"a\":1}");
+		that(read(tag, json)).equalTo(a);
+		that(readChunked(tag, "{\"b\":\"q\",\"x\":\"b\"}")).equalTo(new Tag.B("q"));
+	}
+
+	@Test public void interopWithJackson() throws IOException {
+		// codec caches name index created by whichever In/Out used it first
+		var codec = codec(Nest.class);
+		var n = new Nest(new U(1, true, "a"), List.of());
+		var jackson = toJson(codec, n);
+		that(read(codec, write(codec, n))).equalTo(n);
+		that(fromJson(codec, jackson)).equalTo(n);
+		that(fromJson(codec, write(codec, n))).equalTo(n);
+	}
+
+	@Test public void problems() throws IOException {
+		var codec = codec(U.class);
+		var in = new JsonIn(ByteBuffer.wrap("{\"a\":\"x\",\"b\":1,\"c\":\"c\"}"
+			.getBytes(StandardCharsets.UTF_8)), Problem.collectingHandler(5));
+		that(codec.decode(in)).isNull();
+		that(in.problems.list()).hasSize(2);
+		var problem = (Problem.UnexpectedToken) in.problems.list().get(0);
+		that(problem.at()).hasToString("$.a");
+
+		var missing = new JsonIn(ByteBuffer.wrap("[1]".getBytes(StandardCharsets.UTF_8)),
+			Problem.collectingHandler(5));
+		that(codec.decode(missing)).isNull();
+		that(missing.problems.list()).hasSize(1);
+	}
+
+	@Test(expected = IOException.class)
+	public void syntaxError() throws IOException {
+		read(codec(U.class), "{\"a\":1 \"b\":true}");
+	}
+
+	@Test(expected = IOException.class)
+	public void unterminated() throws IOException {
+		readChunked(codec(U.class), "{\"a\":1,\"b\":true,\"c\":\"abc");
+	}
+
+	@Test public void streamOutput() throws IOException {
+		var codec = codec(U.class);
+		var bytes = new ByteArrayOutputStream();
+		var out = new JsonOut(bytes);
+		var big = "x".repeat(20_000);
+		codec.encode(out, new U(1, true, big));
+		codec.encode(out, new U(2, false, "ы"));
+		out.flush();
+		var json = bytes.toString(StandardCharsets.UTF_8);
+		that(json).is("{\"a\":1,\"b\":true,\"c\":\"" + big + "\"}\n{\"a\":2,\"b\":false,\"c\":\"ы\"}");
+
+		var in = new JsonIn(JsonIn.Source.of(new ByteArrayInputStream(bytes.toByteArray()), 100));
+		that(codec.decode(in)).equalTo(new U(1, true, big));
+		that(codec.decode(in)).equalTo(new U(2, false, "ы"));
+		that(in.peek()).same(Token.End);
+	}
+
+	@Test public void mappedFileAndChannels() throws IOException {
+		var codec = codec(Nest.class);
+		var n = new Nest(new U(1, true, "Ѣ".repeat(50)),
+			List.of(new U(2, false, "x"), new U(3, true, "y")));
+		var file = Files.createTempFile("test", ".json");
+		try {
+			try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				var out = new JsonOut(channel);
+				codec.encode(out, n);
+				codec.encode(out, n);
+				out.flush();
+			}
+			var in = JsonIn.mapped(file);
+			that(codec.decode(in)).equalTo(n);
+			that(codec.decode(in)).equalTo(n);
+			that(in.peek()).same(Token.End);
+
+			try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				// small regions, so tokens will span region boundaries
+				var regions = new JsonIn(JsonIn.Source.mapped(channel, 0, channel.size(), 7));
+				that(codec.decode(regions)).equalTo(n);
+				that(codec.decode(regions)).equalTo(n);
+
+				channel.position(0);
+				var chunked = new JsonIn(JsonIn.Source.of(channel, 16));
+				that(codec.decode(chunked)).equalTo(n);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test public void directBuffers() throws IOException {
+		var codec = codec(V.class);
+		var v = new V(Abc.C, List.of(Abc.A, Abc.B));
+		var out = new JsonOut();
+		codec.encode(out, v);
+		var direct = out.toDirectByteBuffer();
+		that(direct.isDirect()).is(true);
+		that(direct.remaining()).is(out.size());
+		that(codec.decode(new JsonIn(direct))).equalTo(v);
+	}
+
+	@Test public void incrementallyFed() throws Exception {
+		var codec = codec(Nest.class);
+		var n = new Nest(new U(1, true, "ъ".repeat(10)), List.of(new U(2, false, "x")));
+		var out = new JsonOut();
+		codec.encode(out, n);
+		var bytes = out.toByteArray();
+
+		var executor = Executors.newSingleThreadExecutor();
+		try {
+			var feed = new JsonFeed<>(codec, executor, 2);
+			for (int i = 0; i < bytes.length; i += 3) {
+				feed.feed(ByteBuffer.wrap(bytes, i, Math.min(3, bytes.length - i)));
+			}
+			feed.end();
+			that(feed.result().get(10, TimeUnit.SECONDS)).equalTo(n);
+
+			var failing = new JsonFeed<>(codec, executor, 2);
+			failing.feed(ByteBuffer.wrap("{\"u\":[".getBytes(StandardCharsets.UTF_8)));
+			failing.end();
+			try {
+				failing.result().get(10, TimeUnit.SECONDS);
+				that().unreachable();
+			} catch (ExecutionException expected) {
+				that(expected.getCause()).instanceOf(IOException.class);
+			}
+			// ignored after done
+			failing.feed(ByteBuffer.wrap(bytes));
+			that(failing.offer(ByteBuffer.wrap(bytes))).is(true);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public record Dd(@Dedup String status, String other) {}
+
+	@Test public void stringCacheAcrossLookups() {
+		var strings = new StringCache();
+		var status = strings.dedup(new String("status"));
+		var bytes = "status".getBytes(StandardCharsets.UTF_8);
+		that((Object) strings.get(bytes, 0, bytes.length)).same(status);
+		var chars = "status".toCharArray();
+		that((Object) strings.get(chars, 0, chars.length)).same(status);
+		that((Object) strings.dedup(new String("status"))).same(status);
+
+		var utf8 = "stätus".getBytes(StandardCharsets.UTF_8);
+		var nonAscii = strings.get(utf8, 0, utf8.length);
+		that(nonAscii).is("stätus");
+		that((Object) strings.get(utf8, 0, utf8.length)).same(nonAscii);
+	}
+
+	@Test public void dedupStrings() throws IOException {
+		var codec = registry.<List<U>, In, Out>resolve(
+			Types.newParameterized(List.class, U.class), Medium.Json).orElseThrow();
+		var json = "[{\"a\":1,\"b\":true,\"c\":\"status\"},{\"a\":2,\"b\":true,\"c\":\"status\"},"
+			+ "{\"a\":3,\"b\":true,\"c\":\"st\\u0061tus\"}]";
+
+		var plain = codec.decode(new JsonIn(json.getBytes(StandardCharsets.UTF_8)));
+		that((Object) plain.get(0).c()).notSame(plain.get(1).c());
+
+		var in = new JsonIn(json.getBytes(StandardCharsets.UTF_8));
+		in.stringCache(new StringCache());
+		var deduped = codec.decode(in);
+		that(deduped.get(0).c()).is("status");
+		that((Object) deduped.get(0).c()).same(deduped.get(1).c());
+		that((Object) deduped.get(0).c()).same(deduped.get(2).c());
+
+		var dd = codec(Dd.class);
+		var d1 = read(dd, "{\"status\":\"ok\",\"other\":\"x\"}");
+		var d2 = readChunked(dd, "{\"status\":\"ok\",\"other\":\"x\"}");
+		var d3 = fromJson(dd, "{status:\"ok\",other:\"x\"}");
+		that((Object) d1.status()).same(d2.status());
+		that((Object) d1.status()).same(d3.status());
+		that((Object) d1.other()).notSame(d2.other());
+	}
+}
@@ -0,0 +1,393 @@
+package io.immutables.regres;
+
+import io.immutables.codec.Codec;
+import io.immutables.meta.Null;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Invokes methods of an accessor by their index. Used by the reflection proxy, which looks up
+ * index by method name, and by accessor implementations generated at compile time
+ * (see {@link SqlAccessor.Precompile}), which call methods by constant index and can bind
+ * parameters directly. Methods are resolved, i.e. validated against SQL source and profiled,
+ * when dispatch is created, or, if lazy, on the first invocation of each method.
+ * Not intended to be used otherwise.
+ */
+public final class AccessorDispatch {
+	private final Class<?> accessor;
+	private final Codec.Resolver codecs;
+	private final ConnectionProvider provider;
+	private final @Null ReplicatedProvider replicated;
+	private final @Null ShardedProvider sharded;
+	private final @Null StatementCache statementCache;
+	private final @Null SqlExecutor executor;
+	private final @Null SqlListener listener;
+	private final Set<String> accessMethods;
+	private final List<String> names;
+	private final Map<String, Integer> indexes = new HashMap<>();
+	private final Method[] methods;
+	// all resolved when created, or each on first invocation, if lazy
+	private final @Null Resolved[] resolved;
+	// guarded by this, SQL source is loaded once, for the first method resolved
+	private @Null Prepared prepared;
+	private volatile @Null Map<String, ResultCache> caches;
+
+	private record Prepared(@Null SqlSource source, Map<String, MethodSnippet> snippets) {}
+
+	private record Resolved(
+		@Null SqlSource source,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		ResultCache[] invalidations,
+		@Null WriteCoalescer coalescer) {}
+
+	AccessorDispatch(
+		Class<?> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider provider,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener,
+		Set<String> accessMethods,
+		List<String> names,
+		boolean lazy) {
+		this.accessor = accessor;
+		this.codecs = codecs;
+		this.provider = provider;
+		this.replicated = provider.unwrap(ReplicatedProvider.class);
+		this.sharded = provider.unwrap(ShardedProvider.class);
+		this.statementCache = provider.unwrap(StatementCache.class);
+		this.executor = executor;
+		this.listener = listener;
+		this.accessMethods = Set.copyOf(accessMethods);
+		this.names = List.copyOf(names);
+
+		var byName = new HashMap<String, Method>();
+		for (var m : accessor.getMethods()) {
+			var name = Regresql.methodName(m);
+			if (accessMethods.contains(name)) byName.put(name, m);
+		}
+		int count = names.size();
+		this.methods = new Method[count];
+		this.resolved = new Resolved[count];
+		for (int i = 0; i < count; i++) {
+			var name = names.get(i);
+			@Null var method = byName.get(name);
+			if (method == null) throw new WrongDeclaration(
+				"Generated accessor is out of date, recompile. No method " + name);
+			indexes.put(name, i);
+			this.methods[i] = method;
+		}
+		if (!lazy) {
+			// also loads and validates SQL source for accessor without methods
+			prepare();
+			for (int i = 0; i < count; i++) resolved(i);
+		}
+	}
+
+	/** Resolved method at index, resolving it, if not yet. */
+	private Resolved resolved(int index) {
+		// has only final fields, so safely published even if read without synchronization
+		@Null var r = resolved[index];
+		return r != null ? r : resolve(index);
+	}
+
+	private synchronized Resolved resolve(int index) {
+		@Null var r = resolved[index];
+		if (r != null) return r;
+
+		var name = names.get(index);
+		var method = methods[index];
+		var prepared = prepare();
+		var snippet = prepared.snippets.get(name);
+		assert snippet != null : "snippets are validated against methods";
+
+		var profile = Regresql.profileMethod(method, codecs);
+		// eagerly builds binding plans, failing early if snippet cannot be rewritten
+		if (profile.valuesRows() > 1) profile.bindingPlans().plan(profile, snippet);
+		if (profile.async() && executor == null) throw new WrongDeclaration(
+			"Method " + name + " returns CompletableFuture, so accessor requires "
+				+ SqlExecutor.class.getSimpleName() + " to be created with");
+
+		var invalidations = NO_CACHES;
+		if (!profile.invalidates().isEmpty()) {
+			// cached methods cannot invalidate, so these don't recurse here
+			var profiles = new HashMap<String, MethodProfile>();
+			profiles.put(name, profile);
+			for (int i = 0; i < methods.length; i++) {
+				if (i != index && methods[i].isAnnotationPresent(SqlAccessor.Cached.class)) {
+					profiles.put(names.get(i), resolved(i).profile);
+				}
+			}
+			invalidations = Regresql.resolveInvalidations(profiles)
+				.getOrDefault(name, List.of())
+				.toArray(ResultCache[]::new);
+		}
+
+		@Null WriteCoalescer coalescer = null;
+		if (profile.coalesceRows() > 0) {
+			var source = prepared.source;
+			coalescer = new WriteCoalescer(
+				profile.coalesceRows(), profile.coalesceWindowNanos(), executor,
+				writes -> Regresql.executeCoalesced(
+					provider, method, source, snippet, profile, writes, listener));
+		}
+
+		r = new Resolved(prepared.source, snippet, profile, invalidations, coalescer);
+		resolved[index] = r;
+		return r;
+	}
+
+	private synchronized Prepared prepare() {
+		@Null var p = prepared;
+		if (p != null) return p;
+		// We allow "empty" interfaces as a way to access SQL (via ConnectionProvider etc)
+		// and don't load/require SQL sources in this case
+		if (accessMethods.isEmpty()) {
+			p = new Prepared(null, Map.of());
+		} else {
+			var source = Regresql.loadSqlSource(accessor);
+			p = new Prepared(source, Regresql.parseSnippets(source, accessMethods));
+		}
+		return prepared = p;
+	}
+
+	/** Caches of {@link SqlAccessor.Cached} methods by name, resolving these, if not yet. */
+	Map<String, ResultCache> caches() {
+		@Null var c = caches;
+		if (c != null) return c;
+		var map = new TreeMap<String, ResultCache>();
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i].isAnnotationPresent(SqlAccessor.Cached.class)) {
+				@Null var cache = resolved(i).profile.resultCache();
+				assert cache != null;
+				map.put(names.get(i), cache);
+			}
+		}
+		return caches = unmodifiableMap(map);
+	}
+
+	/** Binds parameters directly to the statement. */
+	@FunctionalInterface
+	public interface Binder {
+		void bind(PreparedStatement statement) throws SQLException;
+	}
+
+	/** Implemented by generated accessors to expose dispatch. */
+	public interface Generated {
+		AccessorDispatch accessorDispatch();
+	}
+
+	/** Index of the method by name, or -1 if there's no such method. */
+	int indexOf(String name) {
+		@Null Integer index = indexes.get(name);
+		return index != null ? index : -1;
+	}
+
+	public ConnectionProvider.Handle handle() throws SQLException {
+		return provider.handle();
+	}
+
+	/** Invokes method at index, encoding arguments using codecs. */
+	public @Null Object invoke(int index, Object... arguments) throws Exception {
+		var method = methods[index];
+		var resolved = resolved(index);
+		var profile = resolved.profile;
+
+		@Null var cache = profile.resultCache();
+		@Null ResultCache.Key key = null;
+		if (cache != null) {
+			key = Regresql.cacheKey(resolved.source, method, resolved.snippet, profile, arguments);
+			@Null Object cached = cache.get(key);
+			if (cached != ResultCache.ABSENT) {
+				return profile.async() ? CompletableFuture.completedFuture(cached) : cached;
+			}
+		}
+		var cacheKey = key;
+		var invalidated = resolved.invalidations;
+
+		// within transaction, writes are to be executed on the held connection
+		@Null var coalescer = resolved.coalescer;
+		if (coalescer != null && !ConnectionHandle.isOpened()) {
+			if (profile.async()) {
+				return coalescer.submit(arguments).whenComplete((result, failure) -> {
+					invalidate(invalidated);
+				});
+			}
+			try {
+				return coalescer.write(arguments);
+			} finally {
+				invalidate(invalidated);
+			}
+		}
+
+		Callable<Object> invocation = () -> {
+			if (cache != null) {
+				assert cacheKey != null;
+				// results read on the held connection might be uncommitted
+				boolean store = !ConnectionHandle.isOpened();
+				long generation = cache.generation();
+				var result = execute(index, arguments);
+				if (store) cache.put(cacheKey, generation, result);
+				return result;
+			}
+			try {
+				return execute(index, arguments);
+			} finally {
+				invalidate(invalidated);
+			}
+		};
+
+		if (profile.async()) {
+			assert executor != null;
+			return executor.submit(invocation);
+		}
+		return invocation.call();
+	}
+
+	/**
+	 * Invalidates caches right away and, if transaction is in progress, once again after it
+	 * completes, as results read on other connections in the meantime are still of data
+	 * before commit.
+	 */
+	private static void invalidate(ResultCache[] caches) {
+		if (caches.length == 0) return;
+		for (var c : caches) c.invalidate();
+		if (ConnectionHandle.isOpened()) ConnectionHandle.afterClose(() -> {
+			for (var c : caches) c.invalidate();
+		});
+	}
+
+	/**
+	 * Executes method on the shard selected by key, or on all shards, if provider is sharded,
+	 * or on read replica, if method only reads.
+	 */
+	private @Null Object execute(int index, Object[] arguments) throws Exception {
+		var profile = resolved(index).profile;
+		if (profile.read() && replicated != null) {
+			return executeOn(routed(replicated.forRead()), index, arguments);
+		}
+		if (sharded != null) {
+			// held connection would be used instead of the shard(s) the method is routed to
+			if (profile.scatter() != null) {
+				if (ConnectionHandle.isOpened()) throw new SqlException(
+					"@Scatter method " + names.get(index) + " runs on all shards, so it cannot be"
+						+ " called within transaction, i.e. while connection handle is held");
+				return scatter(index, sharded, arguments);
+			}
+			if (profile.shardKeyParameter().isPresent()) {
+				var key = arguments[profile.shardKeyParameter().getAsInt()];
+				var shard = sharded.forKey(key);
+				if (ConnectionHandle.isOpened() && !ConnectionHandle.isOpenedBy(shard)) {
+					throw new SqlException("Method " + names.get(index) + " is routed by key " + key
+						+ " to another shard than one of the held connection (transaction)");
+				}
+				return executeOn(routed(shard), index, arguments);
+			}
+		}
+		return executeOn(provider, index, arguments);
+	}
+
+	/** Routed provider, using statement cache of the accessor, if it has none of its own. */
+	private ConnectionProvider routed(ConnectionProvider routed) {
+		if (statementCache == null || routed.unwrap(StatementCache.class) != null) return routed;
+		return statementCache.over(routed);
+	}
+
+	private @Null Object executeOn(ConnectionProvider provider, int index, Object[] arguments)
+		throws Exception {
+		var resolved = resolved(index);
+		return Regresql.invokeSqlSnippet(provider, methods[index],
+			resolved.source, resolved.snippet, resolved.profile, arguments, listener);
+	}
+
+	/**
+	 * Executes method on all shards in parallel, waiting for all of them to complete.
+	 * First failure is rethrown, others are added as suppressed.
+	 */
+	private @Null Object scatter(int index, ShardedProvider sharded, Object[] arguments)
+		throws Exception {
+		var scatter = resolved(index).profile.scatter();
+		assert scatter != null;
+
+		var futures = new ArrayList<CompletableFuture<Object>>(sharded.size());
+		for (int s = 0; s < sharded.size(); s++) {
+			var shard = routed(sharded.shard(s));
+			var future = new CompletableFuture<Object>();
+			try {
+				sharded.executor().execute(() -> {
+					try {
+						future.complete(executeOn(shard, index, arguments));
+					} catch (Throwable e) {
+						future.completeExceptionally(e);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				future.completeExceptionally(e);
+			}
+			futures.add(future);
+		}
+
+		var results = new ArrayList<Object>(futures.size());
+		@Null Throwable failure = null;
+		for (var f : futures) {
+			try {
+				results.add(f.get());
+			} catch (ExecutionException e) {
+				if (failure == null) failure = e.getCause();
+				else failure.addSuppressed(e.getCause());
+			}
+		}
+		if (failure instanceof Exception exception) throw exception;
+		if (failure instanceof Error error) throw error;
+		return scatter.merge(results);
+	}
+
+	/**
+	 * Invokes method at index using binder to set statement parameters. Only for synchronous
+	 * methods without batching, coalescing, caching or invalidation, these are to use
+	 * {@link #invoke}.
+	 */
+	public @Null Object invokeBound(int index, Binder binder) throws Exception {
+		var resolved = resolved(index);
+		var profile = resolved.profile;
+		assert !profile.async() && profile.resultCache() == null && resolved.coalescer == null
+			&& profile.scatter() == null && profile.shardKeyParameter().isEmpty() && !profile.read()
+			&& resolved.invalidations.length == 0 && profile.batchParameter().isEmpty();
+
+		return Regresql.invokeSqlSnippet(provider, methods[index],
+			resolved.source, resolved.snippet, profile, NO_ARGUMENTS, listener, binder);
+	}
+
+	/**
+	 * Rethrows exception as is if it's unchecked or declared by method at index,
+	 * otherwise wrapped in {@link UndeclaredThrowableException}, same as reflection proxy does.
+	 */
+	public RuntimeException rethrow(int index, Exception exception) {
+		if (exception instanceof RuntimeException unchecked) throw unchecked;
+		for (var declared : methods[index].getExceptionTypes()) {
+			if (declared.isInstance(exception)) throw AccessorDispatch.<RuntimeException>sneaky(exception);
+		}
+		throw new UndeclaredThrowableException(exception);
+	}
+
+	@SuppressWarnings("unchecked") // rethrows checked exception declared by the method
+	private static <E extends Exception> E sneaky(Exception exception) throws E {
+		throw (E) exception;
+	}
+
+	private static final Object[] NO_ARGUMENTS = {};
+	private static final ResultCache[] NO_CACHES = {};
+}
@@ -0,0 +1,118 @@
+package io.immutables.regres;
+
+import io.immutables.codec.NameIndex;
+import io.immutables.meta.Null;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parameter binding plan for a method snippet: maps parameters and fields of spread
+ * parameters directly to the positions of placeholders in the statement. Mappings for
+ * spread fields are computed once per name index (and prefix), so binding values does
+ * not require string concatenation or lookups by name. Plan is shared between threads.
+ */
+final class BindingPlan {
+	final MethodSnippet snippet;
+	final NameIndex parameterIndex;
+	/** Rewrite of the snippet for multi-row VALUES inserts, if configured. */
+	final @Null MultiRowValues multiRow;
+	private final String[] parameterNames;
+	private final int placeholderCount;
+	// placeholder name to its (possibly many) zero-based positions
+	private final Map<String, int[]> positions;
+	private final int[][] parameterPositions;
+	private final Map<Spread, int[][]> spreads = new ConcurrentHashMap<>();
+
+	private record Spread(NameIndex names, String prefix) {}
+
+	private BindingPlan(MethodProfile profile, MethodSnippet snippet) {
+		this.snippet = snippet;
+		this.parameterNames = profile.parameters().stream()
+			.map(ParameterProfile::name)
+			.toArray(String[]::new);
+		this.parameterIndex = NameIndex.known(parameterNames);
+
+		var placeholders = snippet.placeholders();
+		this.placeholderCount = placeholders.size();
+
+		var collected = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < placeholders.size(); i++) {
+			collected.computeIfAbsent(placeholders.get(i).name(), k -> new ArrayList<>(1)).add(i);
+		}
+		var positions = new HashMap<String, int[]>();
+		collected.forEach((name, list) ->
+			positions.put(name, list.stream().mapToInt(i -> i).toArray()));
+		this.positions = Map.copyOf(positions);
+
+		this.multiRow = profile.valuesRows() > 1
+			? MultiRowValues.of(snippet, profile.valuesRows())
+			: null;
+
+		this.parameterPositions = new int[parameterNames.length][];
+		for (int i = 0; i < parameterNames.length; i++) {
+			parameterPositions[i] = positions(parameterNames[i]);
+		}
+	}
+
+	int placeholderCount() {
+		return placeholderCount;
+	}
+
+	/** Positions of placeholders with such name, empty if none. */
+	int[] positions(String name) {
+		return positions.getOrDefault(name, NONE);
+	}
+
+	/** Positions for the method parameter at index. */
+	int[] parameterPositions(int index) {
+		return parameterPositions[index];
+	}
+
+	/** Positions for each field slot of a spread parameter's name index. */
+	int[][] spreadPositions(NameIndex names, String prefix) {
+		var spread = new Spread(names, prefix);
+		@Null int[][] mapped = spreads.get(spread);
+		if (mapped == null) {
+			var known = names.known();
+			mapped = new int[known.length][];
+			for (int i = 0; i < known.length; i++) {
+				mapped[i] = positions(prefix + known[i]);
+			}
+			// name indexes are normally long-lived and owned by codecs,
+			// but we guard against ones created on the fly
+			if (spreads.size() < MAX_SPREADS) spreads.putIfAbsent(spread, mapped);
+		}
+		return mapped;
+	}
+
+	/** Names of parameters and of the fields of spread parameters seen so far. */
+	List<String> availableNames() {
+		var names = new ArrayList<>(List.of(parameterNames));
+		for (var spread : spreads.keySet()) {
+			for (var name : spread.names.known()) {
+				names.add(spread.prefix + name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Keeps the plan for the last snippet, as the same profile is normally
+	 * used with the same snippet.
+	 */
+	static final class Cache {
+		private volatile @Null BindingPlan last;
+
+		BindingPlan plan(MethodProfile profile, MethodSnippet snippet) {
+			@Null var plan = last;
+			if (plan != null && plan.snippet == snippet) return plan;
+			return last = new BindingPlan(profile, snippet);
+		}
+	}
+
+	static final int[] NONE = new int[0];
+	private static final int MAX_SPREADS = 16;
+}
@@ -4,13 +4,17 @@ import io.immutables.meta.Null;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 final class ConnectionHandle implements ConnectionProvider.Handle {
-	private static final ThreadLocal<Connection> openedConnection = new ThreadLocal<>();
+	private static final ThreadLocal<ConnectionHandle> openedHandle = new ThreadLocal<>();
 	private final ConnectionProvider provider;
 	private final boolean recycleOnClose;
 
 	private final Connection connection;
+	// only on the opened handle, which recycles connection
+	private @Null List<Runnable> afterClose;
 
 	private ConnectionHandle(
 			ConnectionProvider provider, Connection connection, boolean recycleOnClose) {
@@ -27,18 +31,63 @@ final class ConnectionHandle implements ConnectionProvider.Handle {
 	@Override
 	public void close() throws SQLException {
 		if (recycleOnClose) {
-			openedConnection.remove();
-			provider.recycle(connection);
+			if (openedHandle.get() == this) openedHandle.remove();
+			try {
+				provider.recycle(connection);
+			} finally {
+				if (afterClose != null) {
+					for (var action : afterClose) action.run();
+				}
+			}
 		}
 	}
 
+	/** If connection handle is opened by current thread. */
+	static boolean isOpened() {
+		return openedHandle.get() != null;
+	}
+
+	/**
+	 * If connection handle is opened by current thread on the provider, or on a provider which
+	 * this one wraps.
+	 */
+	static boolean isOpenedBy(ConnectionProvider provider) {
+		@Null var opened = openedHandle.get();
+		return opened != null && (opened.provider == provider
+			|| provider.unwrap(opened.provider.getClass()) == opened.provider);
+	}
+
+	/**
+	 * Runs action once connection handle opened by current thread is closed, i.e. after
+	 * transaction is committed or rolled back, or runs it right away if no handle is opened.
+	 */
+	static void afterClose(Runnable action) {
+		@Null var opened = openedHandle.get();
+		if (opened == null) {
+			action.run();
+			return;
+		}
+		if (opened.afterClose == null) opened.afterClose = new ArrayList<>();
+		opened.afterClose.add(action);
+	}
+
+	/**
+	 * Handle on a connection of its own, recycled on close, but not opened as the handle of
+	 * current thread, so it does not affect other calls on the thread and can be closed on
+	 * any thread.
+	 */
+	static ConnectionHandle detached(ConnectionProvider provider) throws SQLException {
+		return new ConnectionHandle(provider, provider.get(), true);
+	}
+
 	static ConnectionHandle get(ConnectionProvider provider) throws SQLException {
-		@Null Connection existing = openedConnection.get();
+		@Null ConnectionHandle existing = openedHandle.get();
 		if (existing != null) {
-			return new ConnectionHandle(provider, existing, false);
+			return new ConnectionHandle(provider, existing.connection, false);
 		}
 		Connection newOne = provider.get();
-		openedConnection.set(newOne);
-		return new ConnectionHandle(provider, newOne, true);
+		var handle = new ConnectionHandle(provider, newOne, true);
+		openedHandle.set(handle);
+		return handle;
 	}
 }
@@ -0,0 +1,322 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded connection pool on top of another provider, which creates physical connections,
+ * usually {@code () -> DriverManager.getConnection(uriString)}. Idle connections are kept
+ * in a lock-free deque, most recently used are borrowed first, so that excess connections
+ * stay idle and are evicted after idle timeout. Callers wait for available connection
+ * using fair semaphore, which blocks without pinning (virtual) threads, up to borrow timeout.
+ * <p>Idle connections are validated when borrowed, ones exceeding max lifetime or idle
+ * timeout are closed instead. Eviction is done as part of borrowing and recycling, there are
+ * no background threads, call {@link #evictIdle()} periodically if the pool can stay unused
+ * for long. Recycled connections are restored to the session state they had when created:
+ * auto-commit and read-only flags, which are changed by transactions, pending
+ * transaction (if any) is rolled back. Connection which fails to restore is discarded.
+ * <p>Use {@link #builder(ConnectionProvider)} to create.
+ */
+public final class ConnectionPool implements ConnectionProvider, AutoCloseable {
+	private final ConnectionProvider connections;
+	private final int maxSize;
+	private final long borrowTimeoutNanos;
+	private final long maxLifetimeNanos;
+	private final long idleTimeoutNanos;
+	private final int validationTimeoutSeconds;
+
+	private final Semaphore permits;
+	private final Deque<Pooled> idle = new ConcurrentLinkedDeque<>();
+	private final Map<Connection, Pooled> borrowed = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+
+	private ConnectionPool(Builder builder) {
+		this.connections = builder.connections;
+		this.maxSize = builder.maxSize;
+		this.borrowTimeoutNanos = builder.borrowTimeout.toNanos();
+		this.maxLifetimeNanos = builder.maxLifetime.toNanos();
+		this.idleTimeoutNanos = builder.idleTimeout.toNanos();
+		this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Borrows idle connection or creates new one if pool is not at max size,
+	 * otherwise waits for a connection to be recycled.
+	 * @throws SQLTransientConnectionException if timed out waiting for connection
+	 */
+	@Override public Connection get() throws SQLException {
+		if (closed) throw new SQLException("Connection pool is closed");
+		long started = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+				timeouts.increment();
+				throw new SQLTransientConnectionException(
+					"Timed out waiting for connection after "
+						+ TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + "ms, " + this);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting for connection", e);
+		} finally {
+			waitNanos.add(System.nanoTime() - started);
+		}
+		// having permit, we're taking or creating connection
+		try {
+			var pooled = borrowIdleOrCreate();
+			borrowed.put(pooled.connection, pooled);
+			borrows.increment();
+			return pooled.connection;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private Pooled borrowIdleOrCreate() throws SQLException {
+		@Null Pooled pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			long now = System.nanoTime();
+			if (isExpired(pooled, now) || isIdleTooLong(pooled, now) || !isValid(pooled)) {
+				discard(pooled);
+			} else {
+				return pooled;
+			}
+		}
+		var connection = connections.get();
+		created.increment();
+		try {
+			return new Pooled(
+				connection, System.nanoTime(), connection.getAutoCommit(), connection.isReadOnly());
+		} catch (SQLException e) {
+			closeQuietly(connection);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns connection to the pool, restoring its session state. Connections not
+	 * borrowed from this pool are just closed.
+	 */
+	@Override public void recycle(Connection c) throws SQLException {
+		@Null var pooled = borrowed.remove(c);
+		if (pooled == null) {
+			c.close();
+			return;
+		}
+		try {
+			if (closed || isExpired(pooled, System.nanoTime()) || !restore(pooled)) {
+				discard(pooled);
+			} else {
+				pooled.lastUsed = System.nanoTime();
+				idle.offerFirst(pooled);
+			}
+		} finally {
+			permits.release();
+		}
+		evictIdle();
+	}
+
+	private boolean restore(Pooled pooled) {
+		var c = pooled.connection;
+		try {
+			if (c.isClosed()) return false;
+			if (c.getAutoCommit() != pooled.autoCommit) {
+				if (!c.getAutoCommit()) c.rollback();
+				c.setAutoCommit(pooled.autoCommit);
+			}
+			if (c.isReadOnly() != pooled.readOnly) c.setReadOnly(pooled.readOnly);
+			c.clearWarnings();
+			return true;
+		} catch (SQLException e) {
+			// broken connection is not worth returning to the pool
+			return false;
+		}
+	}
+
+	/** Closes idle connections which exceeded idle timeout or max lifetime. */
+	public void evictIdle() {
+		long now = System.nanoTime();
+		// least recently used are at the tail
+		for (var i = idle.descendingIterator(); i.hasNext(); ) {
+			var pooled = i.next();
+			if ((isIdleTooLong(pooled, now) || isExpired(pooled, now)) && idle.remove(pooled)) {
+				discard(pooled);
+			}
+		}
+	}
+
+	private boolean isExpired(Pooled pooled, long now) {
+		return maxLifetimeNanos > 0 && now - pooled.createdAt >= maxLifetimeNanos;
+	}
+
+	private boolean isIdleTooLong(Pooled pooled, long now) {
+		return idleTimeoutNanos > 0 && now - pooled.lastUsed >= idleTimeoutNanos;
+	}
+
+	private boolean isValid(Pooled pooled) {
+		try {
+			return pooled.connection.isValid(validationTimeoutSeconds);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void discard(Pooled pooled) {
+		discarded.increment();
+		closeQuietly(pooled.connection);
+	}
+
+	/**
+	 * Closes idle connections, borrowed ones will be closed when recycled.
+	 * Pool cannot be used after that.
+	 */
+	@Override public void close() {
+		closed = true;
+		@Null Pooled pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+	/** Number of connections currently borrowed. */
+	public int active() {
+		return borrowed.size();
+	}
+
+	/** Number of idle connections in the pool. */
+	public int idle() {
+		return idle.size();
+	}
+
+	/** Ratio of borrowed connections to max size of the pool, from 0 to 1. */
+	public double utilization() {
+		return (double) borrowed.size() / maxSize;
+	}
+
+	/** Total number of successful borrows. */
+	public long borrows() {
+		return borrows.sum();
+	}
+
+	/** Number of times timed out waiting for connection. */
+	public long timeouts() {
+		return timeouts.sum();
+	}
+
+	/** Total time spent waiting for connections, including timed out waits. */
+	public Duration waitTime() {
+		return Duration.ofNanos(waitNanos.sum());
+	}
+
+	/** Number of physical connections created. */
+	public long created() {
+		return created.sum();
+	}
+
+	/** Number of physical connections closed: expired, idle, invalid or failed to restore. */
+	public long discarded() {
+		return discarded.sum();
+	}
+
+	@Override public String toString() {
+		return ConnectionPool.class.getSimpleName()
+			+ "(maxSize=" + maxSize
+			+ ", active=" + active()
+			+ ", idle=" + idle()
+			+ ", waiting=" + permits.getQueueLength()
+			+ (closed ? ", closed" : "") + ")";
+	}
+
+	public static Builder builder(ConnectionProvider connections) {
+		return new Builder(connections);
+	}
+
+	public static final class Builder {
+		private final ConnectionProvider connections;
+		private int maxSize = 10;
+		private Duration borrowTimeout = Duration.ofSeconds(30);
+		private Duration maxLifetime = Duration.ofMinutes(30);
+		private Duration idleTimeout = Duration.ofMinutes(10);
+		private int validationTimeoutSeconds = 5;
+
+		private Builder(ConnectionProvider connections) {
+			this.connections = connections;
+		}
+
+		/** Maximum number of connections, both borrowed and idle, defaults to 10. */
+		public Builder maxSize(int maxSize) {
+			if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/** How long to wait for connection when all are borrowed, defaults to 30 seconds. */
+		public Builder borrowTimeout(Duration borrowTimeout) {
+			this.borrowTimeout = borrowTimeout;
+			return this;
+		}
+
+		/** Connections older than that are closed instead of reused, zero to disable. */
+		public Builder maxLifetime(Duration maxLifetime) {
+			this.maxLifetime = maxLifetime;
+			return this;
+		}
+
+		/** Connections idle longer than that are closed, zero to disable. */
+		public Builder idleTimeout(Duration idleTimeout) {
+			this.idleTimeout = idleTimeout;
+			return this;
+		}
+
+		/** Timeout for {@link Connection#isValid(int)} when borrowing idle connection. */
+		public Builder validationTimeoutSeconds(int validationTimeoutSeconds) {
+			this.validationTimeoutSeconds = validationTimeoutSeconds;
+			return this;
+		}
+
+		public ConnectionPool build() {
+			return new ConnectionPool(this);
+		}
+	}
+
+	private static final class Pooled {
+		final Connection connection;
+		final long createdAt;
+		final boolean autoCommit;
+		final boolean readOnly;
+		volatile long lastUsed;
+
+		Pooled(Connection connection, long createdAt, boolean autoCommit, boolean readOnly) {
+			this.connection = connection;
+			this.createdAt = createdAt;
+			this.autoCommit = autoCommit;
+			this.readOnly = readOnly;
+			this.lastUsed = createdAt;
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException ignored) {
+			// nothing to do with connection we've given up on
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package io.immutables.regres;
 
+import io.immutables.meta.Null;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -9,7 +10,8 @@ import java.sql.SQLException;
  * other session level setup. It's a breeze to implement using lambda calling
  * {@code () -> DriverManager.getConnection(uriString)}
  * with connection string or {@code DataSource::getConnection}, so
- * we don't even provide factories for these.
+ * we don't even provide factories for these. Use {@link ConnectionPool} to pool
+ * connections created by such provider.
  */
 public interface ConnectionProvider {
 	/**
@@ -34,6 +36,27 @@ public interface ConnectionProvider {
 		return ConnectionHandle.get(this);
 	}
 
+	/**
+	 * Wraps this provider to keep prepared statements open and reuse them for the lifetime
+	 * of connection, statements are closed when connection is closed.
+	 * @param maxSize maximum number of cached statements per connection
+	 * @see StatementCache
+	 */
+	default StatementCache withStatementCache(int maxSize) {
+		return new StatementCache(this, maxSize);
+	}
+
+	/**
+	 * Finds provider of the given type: this one, or one wrapped by this provider. Wrapping
+	 * providers delegate to the wrapped ones, so that {@link StatementCache},
+	 * {@link ReplicatedProvider} and {@link ShardedProvider} are found regardless of which
+	 * one wraps which.
+	 * @return provider of the type, or {@code null} if there's none
+	 */
+	default <P extends ConnectionProvider> @Null P unwrap(Class<P> type) {
+		return type.isInstance(this) ? type.cast(this) : null;
+	}
+
 	interface Handle extends AutoCloseable {
 		/** Current open connection. */
 		Connection connection();
@@ -236,8 +236,10 @@ final class Exceptions {
 	}
 
 	static StackTraceElement[] trimStackTrace(StackTraceElement[] originalStack, Method method) {
-		return Vect.of(originalStack)
-			.dropWhile(s -> !s.getClassName().contains(".$Proxy"))
+		var stack = Vect.of(originalStack).dropWhile(s -> !s.getClassName().contains(".$Proxy"));
+		// no proxy frame when run asynchronously on executor thread
+		if (stack.isEmpty()) return originalStack;
+		return stack
 			.rangeFrom(1)
 			.prepend(new StackTraceElement(
 				method.getDeclaringClass().getName(),
@@ -5,7 +5,8 @@ enum ExpectedResult {
 	List,
 	Optional,
 	Single,
-	First;
+	First,
+	Stream;
 
 	boolean isOne() {
 		return switch (this) {
@@ -0,0 +1,213 @@
+package io.immutables.regres;
+
+import io.immutables.codec.Codec;
+import io.immutables.codec.In;
+import io.immutables.codec.NameIndex;
+import io.immutables.codec.Out;
+import io.immutables.codec.Token;
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+
+/**
+ * Folds consecutive rows having the same key into a single record with nested lists of child
+ * records, see {@link SqlAccessor.Grouped}. Each decode consumes rows of one group, leaving
+ * input at the first row of the next group, so it is used as a row codec of lists, streams
+ * and iterators, and only the current group is held in memory.
+ */
+final class GroupedRowDecoder extends Codec<Object, In, Out> {
+	private final Class<?> type;
+	private final Constructor<?> constructor;
+	private final NameIndex names;
+	// codecs of components read from parent columns, null for children components
+	private final @Null Codec<Object, In, Out>[] codecs;
+	private final NameIndex keyNames;
+	private final Codec<Object, In, Out>[] keyCodecs;
+	private final int[] keys;
+	private final Child[] children;
+	// result shape is normally the same for each execution
+	private volatile @Null Shape last;
+
+	record Child(int component, String prefix, Codec<Object, In, Out> codec) {}
+
+	private record Shape(
+		ResultPlan plan,
+		ResultPlan parentPlan,
+		int[] parentColumns,
+		ResultPlan keyPlan,
+		int[] keyColumns,
+		ResultPlan[] childPlans,
+		int[][] childColumns) {}
+
+	@SuppressWarnings("unchecked") // for private generic arrays
+	GroupedRowDecoder(
+		Class<?> type,
+		Constructor<?> constructor,
+		String[] components,
+		List<Codec<Object, In, Out>> codecs,
+		int[] keys,
+		List<Child> children) {
+		this.type = type;
+		this.constructor = constructor;
+		this.names = NameIndex.known(components);
+		this.codecs = codecs.toArray((Codec<Object, In, Out>[]) new Codec<?, ?, ?>[0]);
+		this.keys = keys;
+		this.children = children.toArray(new Child[0]);
+
+		var keyComponents = new String[keys.length];
+		this.keyCodecs = (Codec<Object, In, Out>[]) new Codec<?, ?, ?>[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			keyComponents[i] = components[keys[i]];
+			keyCodecs[i] = this.codecs[keys[i]];
+		}
+		this.keyNames = NameIndex.known(keyComponents);
+	}
+
+	@Override
+	public Object decode(In in) throws IOException {
+		if (!(in instanceof ResultIn rows)) throw new IOException(
+			"Grouped rows of " + type.getSimpleName() + " can only be decoded from the result set");
+		if (rows.peek() != Token.Struct) throw new IOException("not at the row");
+
+		var shape = shapeOf(rows.plan());
+		var parent = rows.rowView(shape.parentPlan, shape.parentColumns);
+		var key = rows.rowView(shape.keyPlan, shape.keyColumns);
+		var childRows = new ResultIn[children.length];
+		var collected = new ArrayList<Collection<Object>>(children.length);
+		for (int i = 0; i < children.length; i++) {
+			childRows[i] = rows.rowView(shape.childPlans[i], shape.childColumns[i]);
+			// joining more than one list of children multiplies rows
+			collected.add(children.length > 1 ? new LinkedHashSet<>() : new ArrayList<>());
+		}
+
+		var values = new Object[codecs.length];
+		readStruct(parent.atCurrentRow(), names, codecs, values);
+		var groupKey = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			groupKey[i] = values[keys[i]];
+		}
+
+		var nextKey = new Object[keys.length];
+		do {
+			for (int i = 0; i < children.length; i++) {
+				var child = childRows[i].atCurrentRow();
+				if (!child.isNullRow()) {
+					collected.get(i).add(children[i].codec.decode(child));
+				}
+			}
+			rows.skip();
+			if (rows.peek() != Token.Struct) break;
+			readStruct(key.atCurrentRow(), keyNames, keyCodecs, nextKey);
+		} while (Arrays.deepEquals(groupKey, nextKey));
+
+		for (int i = 0; i < children.length; i++) {
+			values[children[i].component] = List.copyOf(collected.get(i));
+		}
+		try {
+			return constructor.newInstance(values);
+		} catch (InvocationTargetException e) {
+			throw new IOException("Cannot construct " + type + ": " + e.getCause(), e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Canonical constructor must be accessible " + constructor, e);
+		}
+	}
+
+	private static void readStruct(
+		ResultIn in, NameIndex names, @Null Codec<Object, In, Out>[] codecs, Object[] values)
+		throws IOException {
+		in.beginStruct(names);
+		while (in.hasNext()) {
+			int field = in.takeField();
+			@Null var codec = field >= 0 ? codecs[field] : null;
+			if (codec != null) {
+				values[field] = codec.decode(in);
+			} else in.skip();
+		}
+		in.endStruct();
+	}
+
+	private Shape shapeOf(ResultPlan plan) throws IOException {
+		@Null var shape = last;
+		if (shape != null && shape.plan == plan) return shape;
+		return last = shape(plan);
+	}
+
+	private Shape shape(ResultPlan plan) throws IOException {
+		var childColumns = new ArrayList<List<Integer>>();
+		for (int i = 0; i < children.length; i++) {
+			childColumns.add(new ArrayList<>());
+		}
+		var parentColumns = new ArrayList<Integer>();
+
+		for (int c = 0; c < plan.names.length; c++) {
+			// longest matching prefix wins, parent columns are without prefix
+			int matched = -1;
+			for (int i = 0; i < children.length; i++) {
+				var prefix = children[i].prefix;
+				if (plan.names[c].startsWith(prefix)
+					&& (matched < 0 || prefix.length() > children[matched].prefix.length())) {
+					matched = i;
+				}
+			}
+			if (matched >= 0) {
+				childColumns.get(matched).add(c);
+			} else parentColumns.add(c);
+		}
+
+		var parentIndexes = toArray(parentColumns);
+		var parentPlan = plan.window(parentIndexes, "");
+
+		// same mapping of columns to components as when reading parent struct
+		var mapped = parentPlan.indexes(names);
+		var componentColumns = new int[codecs.length];
+		Arrays.fill(componentColumns, -1);
+		for (int c = 0; c < mapped.length; c++) {
+			if (mapped[c] >= 0) componentColumns[mapped[c]] = parentIndexes[c];
+		}
+		for (int i = 0; i < codecs.length; i++) {
+			if (codecs[i] != null && componentColumns[i] < 0) throw new IOException(
+				"No column for " + type.getSimpleName() + "." + names.name(i)
+					+ " in " + Arrays.toString(plan.names));
+		}
+		var keyIndexes = new int[keys.length];
+		for (int k = 0; k < keys.length; k++) {
+			keyIndexes[k] = componentColumns[keys[k]];
+		}
+
+		var childPlans = new ResultPlan[children.length];
+		var childIndexes = new int[children.length][];
+		for (int i = 0; i < children.length; i++) {
+			var indexes = toArray(childColumns.get(i));
+			if (indexes.length == 0) throw new IOException(
+				"No columns with prefix '" + children[i].prefix + "' for " + type.getSimpleName() + "."
+					+ names.name(children[i].component) + " in " + Arrays.toString(plan.names));
+			childPlans[i] = plan.window(indexes, children[i].prefix);
+			childIndexes[i] = columnNumbers(indexes);
+		}
+
+		return new Shape(plan,
+			parentPlan, columnNumbers(parentIndexes),
+			plan.window(keyIndexes, ""), columnNumbers(keyIndexes),
+			childPlans, childIndexes);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		return list.stream().mapToInt(i -> i).toArray();
+	}
+
+	private static int[] columnNumbers(int[] indexes) {
+		var numbers = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			numbers[i] = indexes[i] + 1;
+		}
+		return numbers;
+	}
+
+	@Override
+	public void encode(Out out, Object instance) {
+		throw new WrongDeclaration("@Grouped rows of " + type.getName()
+			+ " are only decoded from results, cannot be encoded, such as for parameters");
+	}
+}
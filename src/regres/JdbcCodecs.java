@@ -4,8 +4,14 @@ import io.immutables.codec.Codec;
 import io.immutables.codec.Medium;
 import io.immutables.meta.Null;
 
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -15,7 +21,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.BiConsumer;
-import java.util.function.Function;
 
 public final class JdbcCodecs
 		implements Codec.Factory<ResultIn, StatementOut>, Codec.SupportedTypes {
@@ -46,9 +51,43 @@ public final class JdbcCodecs
 						in -> ((Time) in.takeSpecial()).toLocalTime())),
 				Map.entry(Instant.class, new SpecialCodec<Instant>(
 						(out, v) -> out.putSpecial(new Timestamp(v.toEpochMilli())),
-						in -> ((Timestamp) in.takeSpecial()).toInstant()))
+						in -> ((Timestamp) in.takeSpecial()).toInstant())),
+				// LOB columns are read as streams, but result set is closed after decoding,
+				// so content is read out once, without intermediate strings or objects
+				Map.entry(InputStream.class, new SpecialCodec<InputStream>(
+						StatementOut::putSpecial,
+						in -> {
+							@Null var bytes = readBytes(in);
+							return bytes != null ? new ByteArrayInputStream(bytes) : null;
+						})),
+				Map.entry(ByteBuffer.class, new SpecialCodec<ByteBuffer>(
+						(out, v) -> {
+							var bytes = new byte[v.remaining()];
+							v.duplicate().get(bytes);
+							out.putSpecial(bytes);
+						},
+						in -> {
+							@Null var bytes = readBytes(in);
+							return bytes != null ? ByteBuffer.wrap(bytes) : null;
+						})),
+				Map.entry(Reader.class, new SpecialCodec<Reader>(
+						StatementOut::putSpecial,
+						in -> {
+							try (@Null var reader = in.takeCharacterStream()) {
+								if (reader == null) return null;
+								var content = new CharArrayWriter();
+								reader.transferTo(content);
+								return new CharArrayReader(content.toCharArray());
+							}
+						}))
 		);
 
+	private static @Null byte[] readBytes(ResultIn in) throws IOException {
+		try (@Null var stream = in.takeBinaryStream()) {
+			return stream != null ? stream.readAllBytes() : null;
+		}
+	}
+
 	private static final Set<Class<?>> supports = codecs.keySet();
 
 	@Override
@@ -68,11 +107,11 @@ public final class JdbcCodecs
 
 	private static final class SpecialCodec<T> extends Codec<T, ResultIn, StatementOut> {
 		private final BiConsumer<StatementOut, T> encode;
-		private final Function<ResultIn, T> decode;
+		private final Decode<T> decode;
 
 		SpecialCodec(
 				BiConsumer<StatementOut, T> encode,
-				Function<ResultIn, T> decode) {
+				Decode<T> decode) {
 			this.encode = encode;
 			this.decode = decode;
 		}
@@ -88,4 +127,9 @@ public final class JdbcCodecs
 			//(T) in.takeSpecial()
 		}
 	}
+
+	@FunctionalInterface
+	private interface Decode<T> {
+		@Null T apply(ResultIn in) throws IOException;
+	}
 }
@@ -2,7 +2,6 @@ package io.immutables.regres;
 
 import io.immutables.codec.Codec;
 import io.immutables.codec.In;
-import io.immutables.codec.NameIndex;
 import io.immutables.codec.Out;
 import io.immutables.meta.Null;
 import java.lang.reflect.Method;
@@ -14,30 +13,64 @@ record MethodProfile(
 	@Null Method method,
 	String name,
 	OptionalInt batchParameter,
+	int batchChunk,
+	boolean chunkTransactions,
+	int valuesRows,
+	int coalesceRows,
+	long coalesceWindowNanos,
 	boolean returnsUpdateCount,
+	OptionalInt shardKeyParameter,
+	@Null ShardScatter scatter,
+	boolean read,
 	boolean extractColumn,
+	boolean streamsRows,
+	boolean async,
+	int fetchSize,
+	@Null ResultCache resultCache,
+	List<String> invalidates,
 	List<ParameterProfile> parameters,
 	Map<String, ParameterProfile> parametersByName,
 	Optional<Codec<Object, In, Out>> returnTypeCodec,
-	Type returnType
+	@Null ResultComponents resultComponents,
+	Type returnType,
+	ResultPlan.Cache resultPlans,
+	BindingPlan.Cache bindingPlans
 ) {
-	NameIndex parameterIndex() {
-		return NameIndex.known(parameters().stream()
-			.map(ParameterProfile::name)
-			.toArray(String[]::new));
-	}
-
 	static class Builder {
 		@Null Method method;
 		@Null String name;
 		int batchParameter = ABSENT;
+		// 0 means no chunking, whole batch is executed at once
+		int batchChunk;
+		boolean chunkTransactions;
+		// rows per multi-row VALUES statement, 0 or 1 means no rewriting
+		int valuesRows;
+		// maximum rows of coalesced writes, 0 means no coalescing
+		int coalesceRows;
+		long coalesceWindowNanos;
 		boolean returnUpdateCount;
+		int shardKeyParameter = ABSENT;
+		// executed on all shards, merging results
+		@Null ShardScatter scatter;
+		// can be executed on read replica
+		boolean read;
 		boolean extractColumn;
+		// returns Stream or Iterator of rows, codec is for the row
+		boolean streamsRows;
+		// returns CompletableFuture, profile is about the future's result type
+		boolean async;
+		// 0 means driver default
+		int fetchSize;
+		@Null ResultCache resultCache;
+		// names of cached methods or tags
+		List<String> invalidates = List.of();
 		// this keeps parameter in order
 		List<ParameterProfile> parameters = new ArrayList<>();
 		Map<String, ParameterProfile> parametersByName = new HashMap<>();
 		@Null Type returnType;
 		@Null Codec<Object, In, Out> returnTypeCodec;
+		// decodes return type from multiple result sets, instead of return type codec
+		@Null ResultComponents resultComponents;
 
 		MethodProfile build() {
 			return new MethodProfile(
@@ -46,12 +79,30 @@ record MethodProfile(
 				batchParameter == ABSENT
 					? OptionalInt.empty()
 					: OptionalInt.of(batchParameter),
+				batchChunk,
+				chunkTransactions,
+				valuesRows,
+				coalesceRows,
+				coalesceWindowNanos,
 				returnUpdateCount,
+				shardKeyParameter == ABSENT
+					? OptionalInt.empty()
+					: OptionalInt.of(shardKeyParameter),
+				scatter,
+				read,
 				extractColumn,
+				streamsRows,
+				async,
+				fetchSize,
+				resultCache,
+				List.copyOf(invalidates),
 				List.copyOf(parameters),
 				Map.copyOf(parametersByName),
 				Optional.ofNullable(returnTypeCodec),
-				requireNonNull(returnType));
+				resultComponents,
+				requireNonNull(returnType),
+				new ResultPlan.Cache(),
+				new BindingPlan.Cache());
 		}
 	}
 
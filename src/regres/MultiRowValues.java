@@ -0,0 +1,158 @@
+package io.immutables.regres;
+
+import java.util.Locale;
+
+/**
+ * Rewrites single row {@code INSERT ... VALUES (...)} snippet into statements inserting
+ * many rows at once: {@code VALUES (...), (...), ...}. Placeholders within the values group
+ * are repeated for each row, while placeholders before and after the group (such as in
+ * {@code ON CONFLICT} clause) are shared by all rows. The rewritten statements are bound
+ * with the same placeholder values of the original snippet, only placed at different
+ * positions: see {@link #parameterIndex(int, int, int)}.
+ */
+final class MultiRowValues {
+	private final String prefix;
+	private final String group;
+	private final String suffix;
+	// range of placeholders within group [groupFrom, groupTo)
+	private final int groupFrom;
+	private final int groupTo;
+	private final int rows;
+	private final String statements;
+
+	private MultiRowValues(
+		String prefix, String group, String suffix, int groupFrom, int groupTo, int rows) {
+		this.prefix = prefix;
+		this.group = group;
+		this.suffix = suffix;
+		this.groupFrom = groupFrom;
+		this.groupTo = groupTo;
+		this.rows = rows;
+		this.statements = statements(rows);
+	}
+
+	/** Number of rows in full statement. */
+	int rows() {
+		return rows;
+	}
+
+	/** Statements for the full number of rows. */
+	String statements() {
+		return statements;
+	}
+
+	/** Statements for given number of rows, used for the remainder. */
+	String statements(int rows) {
+		var builder = new StringBuilder(
+			prefix.length() + (group.length() + 2) * rows + suffix.length());
+		builder.append(prefix).append(group);
+		for (int r = 1; r < rows; r++) {
+			builder.append(", ").append(group);
+		}
+		return builder.append(suffix).toString();
+	}
+
+	/**
+	 * JDBC (1-based) parameter index in statement having number of rows,
+	 * for placeholder (0-based) of the original snippet bound for a row.
+	 */
+	int parameterIndex(int placeholder, int row, int rows) {
+		int groupSize = groupTo - groupFrom;
+		if (placeholder < groupFrom) return placeholder + 1;
+		if (placeholder < groupTo) return groupFrom + row * groupSize + (placeholder - groupFrom) + 1;
+		return placeholder + (rows - 1) * groupSize + 1;
+	}
+
+	/**
+	 * Finds single {@code VALUES (...)} group in the snippet.
+	 * @throws WrongDeclaration if snippet cannot be rewritten
+	 */
+	static MultiRowValues of(MethodSnippet snippet, int rows) {
+		var sql = snippet.statements();
+		int valuesAt = -1;
+		int groupBegin = -1;
+		int groupEnd = -1;
+
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i, c);
+			} else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+				int eol = sql.indexOf('\n', i);
+				i = eol < 0 ? sql.length() : eol;
+			} else if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+				int close = sql.indexOf("*/", i + 2);
+				i = close < 0 ? sql.length() : close + 1;
+			} else if (c == ';') {
+				if (!sql.substring(i + 1).isBlank()) throw cannotRewrite(snippet,
+					"there should be a single statement");
+			} else if (isKeywordAt(sql, i, "values")) {
+				if (valuesAt >= 0) throw cannotRewrite(snippet, "more than one VALUES");
+				valuesAt = i;
+				int open = i + "values".length();
+				while (open < sql.length() && Character.isWhitespace(sql.charAt(open))) open++;
+				if (open == sql.length() || sql.charAt(open) != '(') throw cannotRewrite(snippet,
+					"VALUES should be followed by parenthesized row");
+				groupBegin = open;
+				groupEnd = closingParen(sql, open);
+				if (groupEnd < 0) throw cannotRewrite(snippet, "unbalanced parentheses");
+				i = groupEnd;
+			}
+		}
+
+		if (valuesAt < 0) throw cannotRewrite(snippet, "no VALUES found");
+
+		int begin = snippet.statementsRange().begin.position;
+		int groupFrom = 0;
+		int groupTo = 0;
+		var placeholders = snippet.placeholders();
+		for (var p : placeholders) {
+			int at = p.range().begin.position - begin;
+			if (at < groupBegin) groupFrom++;
+			if (at < groupEnd) groupTo++;
+		}
+
+		return new MultiRowValues(
+			sql.substring(0, groupBegin),
+			sql.substring(groupBegin, groupEnd + 1),
+			sql.substring(groupEnd + 1),
+			groupFrom,
+			groupTo,
+			rows);
+	}
+
+	private static boolean isKeywordAt(String sql, int i, String keyword) {
+		int end = i + keyword.length();
+		return end <= sql.length()
+			&& (i == 0 || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))
+			&& (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)))
+			&& sql.substring(i, end).toLowerCase(Locale.ROOT).equals(keyword);
+	}
+
+	private static int skipQuoted(String sql, int at, char quote) {
+		int close = sql.indexOf(quote, at + 1);
+		return close < 0 ? sql.length() : close;
+	}
+
+	private static int closingParen(String sql, int open) {
+		int depth = 0;
+		for (int i = open; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i, c);
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static WrongDeclaration cannotRewrite(MethodSnippet snippet, String reason) {
+		return new WrongDeclaration("\n" + snippet.source().problemAt(
+			snippet.statementsRange(),
+			"Cannot rewrite to multi-row VALUES: " + reason,
+			"Use single INSERT ... VALUES (...) statement with @Batch(valuesRows)"));
+	}
+}
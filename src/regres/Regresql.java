@@ -1,6 +1,9 @@
 package io.immutables.regres;
 
 import io.immutables.codec.Codec;
+import io.immutables.codec.In;
+import io.immutables.codec.Out;
+import io.immutables.codec.Reflect;
 import io.immutables.codec.RemapContainerCodec;
 import io.immutables.codec.Types;
 import io.immutables.common.ProxyHandler;
@@ -9,13 +12,24 @@ import io.immutables.meta.Null;
 import io.immutables.regres.SqlAccessor.*;
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static java.util.stream.Collectors.joining;
 
 /**
@@ -24,17 +38,142 @@ import static java.util.stream.Collectors.joining;
  * and underlying SQL code snippets (Dao.java + Dao.sql in classpath). In the SQL file
  * {@code --.<methodName>} comments
  * are used to lead sections of SQL which corresponds to specific methods in Java interface.
+ * <p>Methods returning {@link Stream} or {@link Iterator} of rows decode rows lazily, while
+ * holding the statement and connection open: the stream must be closed (use
+ * try-with-resources), and the iterator releases them once exhausted.
+ * See also {@link FetchSize}.
  */
 // TODO Transactions/Control handle/with lambda
 // TODO GetGeneratedKeys (maybe someday)
 public final class Regresql {
 	private Regresql() {}
 
-	@SuppressWarnings("unchecked") // cast guaranteed by Proxy contract, runtime verified
 	public static <T> T create(
 		Class<T> accessor,
 		Codec.Resolver codecs,
 		ConnectionProvider connections) {
+		return create(accessor, codecs, connections, null);
+	}
+
+	/**
+	 * Creates accessor which can have methods returning {@link CompletableFuture},
+	 * these are run using the executor.
+	 * @see SqlExecutor
+	 */
+	public static <T> T create(
+		Class<T> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor) {
+		return create(accessor, codecs, connections, executor, null);
+	}
+
+	/**
+	 * Creates accessor reporting all invocations to the listener.
+	 * @see SqlMetrics
+	 */
+	public static <T> T create(
+		Class<T> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener) {
+		return create(accessor, codecs, connections, executor, listener, false);
+	}
+
+	/**
+	 * Creates accessor which validates and profiles each method on its first invocation,
+	 * rather than all methods upfront, and loads SQL source along with the first one.
+	 * This makes startup faster when there are many accessors, but
+	 * {@link WrongDeclaration} is thrown from the invocation of the method declared wrong.
+	 * Use it when declarations are validated otherwise, e.g. by tests or annotation processor.
+	 */
+	public static <T> T createLazy(
+		Class<T> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener) {
+		return create(accessor, codecs, connections, executor, listener, true);
+	}
+
+	/**
+	 * Creates all the accessors in parallel, validating them all, rather than failing
+	 * on the first wrong one. Accessors are created using the executor, if given, otherwise
+	 * by threads started only for that, as loading SQL sources is blocking I/O.
+	 * @return accessors by their interfaces
+	 * @throws WrongDeclaration describing problems of all the accessors declared wrong
+	 */
+	public static Map<Class<?>, SqlAccessor> createAll(
+		List<Class<? extends SqlAccessor>> accessors,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener) {
+		record Created(Class<?> accessor, @Null SqlAccessor instance, @Null String problem) {}
+
+		var distinct = accessors.stream().distinct().toList();
+		var futures = new ArrayList<CompletableFuture<Created>>(distinct.size());
+		@Null ExecutorService threads = executor == null
+			? Executors.newFixedThreadPool(
+				Math.max(1, Math.min(distinct.size(), Runtime.getRuntime().availableProcessors())),
+				task -> {
+					var thread = new Thread(task, "regres-create");
+					thread.setDaemon(true);
+					return thread;
+				})
+			: null;
+		try {
+			for (var a : distinct) {
+				Supplier<Created> creation = () -> {
+					try {
+						var instance = create(a, codecs, connections, executor, listener);
+						return new Created(a, instance, null);
+					} catch (WrongDeclaration | MissingResourceException e) {
+						return new Created(a, null, e.getMessage());
+					}
+				};
+				futures.add(executor != null
+					? executor.submit(creation::get)
+					: CompletableFuture.supplyAsync(creation, threads));
+			}
+		} finally {
+			// already submitted are still run
+			if (threads != null) threads.shutdown();
+		}
+
+		var instances = new LinkedHashMap<Class<?>, SqlAccessor>();
+		var problems = new StringBuilder();
+		for (var f : futures) {
+			Created c;
+			try {
+				c = f.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException unexpected) throw unexpected;
+				if (e.getCause() instanceof Error error) throw error;
+				throw e;
+			}
+			if (c.problem != null) {
+				problems.append("\n").append(c.accessor.getCanonicalName())
+					.append(": ").append(c.problem);
+			} else {
+				assert c.instance != null;
+				instances.put(c.accessor, c.instance);
+			}
+		}
+		if (problems.length() > 0) throw new WrongDeclaration(
+			"Cannot create accessors:" + problems);
+		return Collections.unmodifiableMap(instances);
+	}
+
+	@SuppressWarnings("unchecked") // cast guaranteed by Proxy contract, runtime verified
+	private static <T> T create(
+		Class<T> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener,
+		boolean lazy) {
 		if (!accessor.isInterface()
 			|| accessor.getCanonicalName() == null
 			|| !SqlAccessor.class.isAssignableFrom(accessor)) {
@@ -44,10 +183,15 @@ public final class Regresql {
 		}
 
 		try {
+			@Null Class<?> generated = generatedFor(accessor);
+			if (generated != null) {
+				return (T) instantiateGenerated(
+					generated, accessor, codecs, connections, executor, listener, lazy);
+			}
 			return (T) Proxy.newProxyInstance(
 				accessor.getClassLoader(),
 				new Class<?>[]{accessor},
-				handlerFor(accessor, codecs, connections));
+				handlerFor(accessor, codecs, connections, executor, listener, lazy));
 		} catch (WrongDeclaration wrongDeclaration) {
 			// effectively removing irrelevant deeper stack trace,
 			// relying on that diagnostics in WrongDeclaration message is good enough
@@ -55,10 +199,88 @@ public final class Regresql {
 		}
 	}
 
+	/** Implementation generated by annotation processor, if any. */
+	private static @Null Class<?> generatedFor(Class<?> accessor) {
+		if (!accessor.isAnnotationPresent(Precompile.class)) return null;
+		try {
+			return Class.forName(
+				accessor.getName() + GENERATED_SUFFIX, true, accessor.getClassLoader());
+		} catch (ClassNotFoundException notGenerated) {
+			// annotation processor was not used, using reflection proxy
+			return null;
+		}
+	}
+
+	private static Object instantiateGenerated(
+		Class<?> generated,
+		Class<?> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener,
+		boolean lazy) {
+		try {
+			var methods = (String[]) generated.getField(GENERATED_METHODS).get(null);
+			var dispatch = dispatchFor(
+				accessor, codecs, connections, executor, listener, List.of(methods), lazy);
+			return generated.getConstructor(AccessorDispatch.class).newInstance(dispatch);
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new WrongDeclaration(
+				"Cannot instantiate generated " + generated.getName() + ": " + e, e);
+		}
+	}
+
+	/**
+	 * Parses SQL source of accessor and returns placeholder names for each method, in order
+	 * of their appearance. Used by annotation processor to validate accessors at compile time.
+	 * @throws WrongDeclaration describing all mismatches between methods and SQL source
+	 */
+	public static Map<String, List<String>> placeholders(
+		String filename, CharSequence content, Set<String> methods) {
+		var buffer = new Source.Buffer();
+		buffer.append(content);
+		var source = new SqlSource(filename, buffer, Source.Lines.from(buffer));
+		var placeholders = new HashMap<String, List<String>>();
+		parseSnippets(source, methods).forEach((name, snippet) ->
+			placeholders.put(name, snippet.placeholders().stream()
+				.map(MethodSnippet.Placeholder::name)
+				.toList()));
+		return Map.copyOf(placeholders);
+	}
+
 	public static SqlFactory factory(Codec.Resolver codecs, ConnectionProvider connections) {
+		return factory(codecs, connections, null);
+	}
+
+	/**
+	 * Creates factory which runs {@link SqlFactory#concurrently(List)} queries using
+	 * the executor.
+	 */
+	public static SqlFactory factory(
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor) {
+		return factory(codecs, connections, executor, null);
+	}
+
+	/**
+	 * Creates factory reporting all statement executions to the listener. When connections
+	 * are {@link ReplicatedProvider}, {@link SqlFactory#readonly} transactions use read replicas.
+	 * @see SqlMetrics
+	 */
+	public static SqlFactory factory(
+		Codec.Resolver codecs,
+		ConnectionProvider connections,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener) {
 		return new SqlFactory() {
+			@Override public <T> List<T> concurrently(List<? extends Supplier<? extends T>> queries) {
+				if (executor == null) return SqlFactory.super.concurrently(queries);
+				return executor.all(queries);
+			}
+
 			@Override public SqlStatement statement() {
-				return new SqlStatement(codecs, connections);
+				return new SqlStatement(codecs, connections, listener);
 			}
 
 			@Override public ConnectionProvider.Handle handle() throws SQLException {
@@ -70,6 +292,11 @@ public final class Regresql {
 			}
 
 			@Override public <T> T readonly(Supplier<T> inTransaction) {
+				@Null var replicated = connections.unwrap(ReplicatedProvider.class);
+				if (replicated != null) {
+					var reads = replicated.forRead();
+					return inTransaction(() -> ConnectionHandle.get(reads), true, inTransaction);
+				}
 				return inTransaction(this::handle, true, inTransaction);
 			}
 		};
@@ -123,36 +350,43 @@ public final class Regresql {
 		}
 	}
 
-	private static Map<String, MethodProfile> compileProfiles(
-		Class<?> accessor,
-		Set<String> methods,
-		Codec.Resolver codecs) {
-
-		var map = new HashMap<String, MethodProfile>();
-
-		for (Method m : accessor.getMethods()) {
-			var name = methodName(m);
-			if (methods.contains(name)) {
-				map.put(name, profileMethod(m, codecs));
-			}
-			// ignore here everything else, either assume these kind of mismatches handled
-			// elsewhere or just wish it will be ok.
-		}
-		return map;
-	}
-
-	private static MethodProfile profileMethod(Method method, Codec.Resolver codecs) {
+	static MethodProfile profileMethod(Method method, Codec.Resolver codecs) {
 		@Null UpdateCount updateCount = method.getAnnotation(UpdateCount.class);
 		@Null Column column = method.getAnnotation(Column.class);
 		@Null Single single = method.getAnnotation(Single.class);
+		@Null FetchSize fetchSize = method.getAnnotation(FetchSize.class);
+		@Null ResultSets resultSets = method.getAnnotation(ResultSets.class);
+		@Null Grouped grouped = method.getAnnotation(Grouped.class);
 
 		var builder = new MethodProfile.Builder();
 		builder.method = method;
 		builder.name = methodName(method);
 		builder.extractColumn = column != null;
 		Type returnType = method.getGenericReturnType();
+
+		if (Types.toRawType(returnType) == CompletableFuture.class) {
+			// the rest of the profile is about the type of future's result
+			builder.async = true;
+			returnType = unboxAsyncResult(Types.getFirstArgument(returnType));
+		}
 		builder.returnType = returnType;
 
+		Class<?> rawReturnType = Types.toRawType(returnType);
+		boolean streamsRows = rawReturnType == Stream.class || rawReturnType == Iterator.class;
+		builder.streamsRows = streamsRows;
+
+		if (fetchSize != null) {
+			if (fetchSize.value() < 0) throw new WrongDeclaration(
+				"@FetchSize cannot be negative on " + method);
+			builder.fetchSize = fetchSize.value();
+		}
+
+		if (streamsRows && builder.async) throw new WrongDeclaration(
+			"CompletableFuture of Stream or Iterator is not supported on " + method);
+
+		if (streamsRows && (updateCount != null || single != null)) throw new WrongDeclaration(
+			"Stream or Iterator of rows cannot be used with @UpdateCount or @Single on " + method);
+
 		if (updateCount != null && (column != null || single != null))
 			throw new WrongDeclaration(
 				"@UpdateCount and (@Column extraction or @Single result)" +
@@ -174,41 +408,276 @@ public final class Regresql {
 
 		boolean useBatch = determineBatchParameter(builder);
 
+		if (useBatch && streamsRows) throw new WrongDeclaration(
+			"@Batch cannot be used with Stream or Iterator return type on " + method);
+
 		if (useBatch && !returnUpdateCount) throw new WrongDeclaration(
 			"@Batch requires returning @UpdateCount or void return type" + method);
 
-		if (!returnUpdateCount) {
-			var maybeCodec = codecs.resolve(returnType, JdbcMedium.Internal);
-			if (maybeCodec.isEmpty()) throw new WrongDeclaration(
-				"No JDBC codec registered for return type %s in method %s"
-					.formatted(returnType, method));
-
-			var codec = maybeCodec.get();
-
-			if (column != null) {
-				var columnName = column.value();
-				var columnIndex = column.index();
-				if (single != null) {
-					codec = new ColumnExtractor(codec, columnName, columnIndex);
-				} else if (codec instanceof RemapContainerCodec remapping) {
-					codec = remapping.remap(element ->
-						new ColumnExtractor(element, columnName, columnIndex));
-				} else throw new WrongDeclaration(
-					"@Column can only be used with @Single for " + method + ". "
-						+ "The codec for " + returnType + " is not known to support such "
-						+ "extraction (a List, Set, Optional, can, for example)");
-			}
+		if (builder.valuesRows > 1
+			&& returnType != int.class && returnType != long.class && returnType != void.class) {
+			throw new WrongDeclaration(
+				"@Batch(valuesRows) requires int, long @UpdateCount or void return type on " + method);
+		}
 
-			if (single != null) {
-				codec = new SingleRowDecoder(codec, single.optional(), single.ignoreMore());
+		if (resultSets != null) {
+			if (returnUpdateCount || streamsRows || column != null || single != null || grouped != null) {
+				throw new WrongDeclaration(
+					"@ResultSets cannot be used with @UpdateCount, @Column, @Single, @Grouped, void,"
+						+ " Stream or Iterator return type on " + method);
 			}
+			builder.resultComponents = resultComponents(returnType, codecs, method);
+		} else if (!returnUpdateCount) {
+			// for streams, codec decodes a single row
+			Type decodedType = streamsRows ? Types.getFirstArgument(returnType) : returnType;
+			builder.returnTypeCodec = decodingCodec(
+				decodedType, codecs, column, single, grouped, streamsRows, method);
+		}
 
-			builder.returnTypeCodec = codec;
+		profileCaching(method, builder, useBatch);
+		profileCoalescing(method, builder, useBatch);
+		profileSharding(method, builder);
+
+		if (method.isAnnotationPresent(Read.class)) {
+			if (returnUpdateCount) throw new WrongDeclaration(
+				"@Read cannot be used with @UpdateCount or void method " + method);
+			builder.read = true;
 		}
 
 		return builder.build();
 	}
 
+	private static Codec<Object, In, Out> decodingCodec(
+		Type type,
+		Codec.Resolver codecs,
+		@Null Column column,
+		@Null Single single,
+		@Null Grouped grouped,
+		boolean streamsRows,
+		Object declaration) {
+		var maybeCodec = codecs.resolve(type, JdbcMedium.Internal);
+		if (maybeCodec.isEmpty()) throw new WrongDeclaration(
+			"No JDBC codec registered for return type %s in method %s"
+				.formatted(type, declaration));
+
+		var codec = maybeCodec.get();
+
+		if (grouped != null) {
+			if (column != null) throw new WrongDeclaration(
+				"@Grouped and @Column cannot be used together on " + declaration);
+			if (single != null || streamsRows) {
+				codec = groupedDecoder(type, codecs, grouped, declaration);
+			} else if (codec instanceof RemapContainerCodec remapping) {
+				var rows = groupedDecoder(Types.getFirstArgument(type), codecs, grouped, declaration);
+				codec = remapping.remap(element -> rows);
+			} else throw new WrongDeclaration(
+				"@Grouped can only be used with List, Stream, Iterator or @Single on " + declaration);
+		} else if (column != null) {
+			var columnName = column.value();
+			var columnIndex = column.index();
+			if (single != null || streamsRows) {
+				codec = new ColumnExtractor(codec, columnName, columnIndex);
+			} else if (codec instanceof RemapContainerCodec remapping) {
+				codec = remapping.remap(element ->
+					new ColumnExtractor(element, columnName, columnIndex));
+			} else throw new WrongDeclaration(
+				"@Column can only be used with @Single for " + declaration + ". "
+					+ "The codec for " + type + " is not known to support such "
+					+ "extraction (a List, Set, Optional, can, for example)");
+		}
+
+		if (single != null) {
+			codec = new SingleRowDecoder(codec, single.optional(), single.ignoreMore());
+		}
+		return codec;
+	}
+
+	private static GroupedRowDecoder groupedDecoder(
+		Type type, Codec.Resolver codecs, Grouped grouped, Object declaration) {
+		var raw = Types.toRawType(type);
+		if (!raw.isRecord()) throw new WrongDeclaration(
+			"@Grouped requires records as rows, but was " + type + " on " + declaration);
+
+		var arguments = Types.mapArguments(raw, type);
+		var components = raw.getRecordComponents();
+		var names = new String[components.length];
+		var componentCodecs = new ArrayList<Codec<Object, In, Out>>();
+		var children = new ArrayList<GroupedRowDecoder.Child>();
+
+		for (int i = 0; i < components.length; i++) {
+			var c = components[i];
+			names[i] = c.getName();
+			var componentType = Types.resolveArguments(c.getGenericType(), arguments);
+			@Null Spread spread = c.getAnnotation(Spread.class);
+			if (spread != null) {
+				if (Types.toRawType(componentType) != List.class) throw new WrongDeclaration(
+					"@Spread component of @Grouped record must be a List of records, but was "
+						+ componentType + " for " + raw.getSimpleName() + "." + c.getName());
+				if (spread.prefix().isEmpty()) throw new WrongDeclaration(
+					"@Spread(prefix) is required for children of @Grouped record, on "
+						+ raw.getSimpleName() + "." + c.getName());
+				var childType = Types.getFirstArgument(componentType);
+				if (!Types.toRawType(childType).isRecord()) throw new WrongDeclaration(
+					"@Spread component of @Grouped record must be a List of records, but was "
+						+ componentType + " for " + raw.getSimpleName() + "." + c.getName());
+				var childCodec = codecs.resolve(childType, JdbcMedium.Internal);
+				if (childCodec.isEmpty()) throw new WrongDeclaration(
+					"No JDBC codec registered for %s in %s".formatted(childType, declaration));
+				children.add(new GroupedRowDecoder.Child(i, spread.prefix(), childCodec.get()));
+				componentCodecs.add(null);
+			} else {
+				var componentCodec = codecs.resolve(componentType, JdbcMedium.Internal);
+				if (componentCodec.isEmpty()) throw new WrongDeclaration(
+					"No JDBC codec registered for %s in %s".formatted(componentType, declaration));
+				componentCodecs.add(componentCodec.get());
+			}
+		}
+
+		var keyNames = grouped.key().length > 0
+			? grouped.key()
+			: new String[]{components.length > 0 ? components[0].getName() : ""};
+		var keys = new int[keyNames.length];
+		for (int k = 0; k < keyNames.length; k++) {
+			keys[k] = Arrays.asList(names).indexOf(keyNames[k]);
+			if (keys[k] < 0 || componentCodecs.get(keys[k]) == null) throw new WrongDeclaration(
+				"@Grouped(key) '" + keyNames[k] + "' is not a component of " + raw.getSimpleName()
+					+ " read from column, on " + declaration);
+		}
+
+		var constructor = Reflect.getCanonicalConstructor(raw);
+		constructor.trySetAccessible();
+		return new GroupedRowDecoder(raw, constructor, names, componentCodecs, keys, children);
+	}
+
+	private static ResultComponents resultComponents(
+		Type returnType, Codec.Resolver codecs, Method method) {
+		var raw = Types.toRawType(returnType);
+		if (!raw.isRecord()) throw new WrongDeclaration(
+			"@ResultSets requires record return type, but was " + returnType + " on " + method);
+
+		var arguments = Types.mapArguments(raw, returnType);
+		var componentCodecs = new ArrayList<Codec<Object, In, Out>>();
+		for (var c : raw.getRecordComponents()) {
+			var type = Types.resolveArguments(c.getGenericType(), arguments);
+			componentCodecs.add(decodingCodec(type, codecs,
+				c.getAnnotation(Column.class),
+				c.getAnnotation(Single.class),
+				null,
+				false,
+				raw.getSimpleName() + "." + c.getName() + " of " + method));
+		}
+		if (componentCodecs.isEmpty()) throw new WrongDeclaration(
+			"@ResultSets requires record with components, but was " + returnType + " on " + method);
+
+		var constructor = Reflect.getCanonicalConstructor(raw);
+		constructor.trySetAccessible();
+		return new ResultComponents(returnType, constructor, componentCodecs);
+	}
+
+	private static void profileCaching(
+		Method method, MethodProfile.Builder builder, boolean useBatch) {
+		@Null Cached cached = method.getAnnotation(Cached.class);
+		@Null Invalidates invalidates = method.getAnnotation(Invalidates.class);
+
+		if (cached != null) {
+			if (builder.returnUpdateCount || builder.streamsRows || useBatch) {
+				throw new WrongDeclaration(
+					"@Cached requires method returning results, not Stream, Iterator, "
+						+ "@UpdateCount, void or @Batch on " + method);
+			}
+			builder.resultCache = new ResultCache(
+				methodName(method),
+				cached.maxSize(),
+				TimeUnit.SECONDS.toNanos(cached.ttlSeconds()),
+				Set.of(cached.tags()));
+		}
+
+		if (invalidates != null) {
+			if (!builder.returnUpdateCount) throw new WrongDeclaration(
+				"@Invalidates requires @UpdateCount or void method " + method);
+			builder.invalidates = List.of(invalidates.value());
+		}
+	}
+
+	private static void profileCoalescing(
+		Method method, MethodProfile.Builder builder, boolean useBatch) {
+		@Null Coalesce coalesce = method.getAnnotation(Coalesce.class);
+		if (coalesce == null) return;
+
+		var returnType = builder.returnType;
+		if (useBatch || builder.resultCache != null
+			|| (returnType != int.class && returnType != long.class && returnType != void.class)) {
+			throw new WrongDeclaration(
+				"@Coalesce requires int, long @UpdateCount or void method without @Batch on " + method);
+		}
+		if (coalesce.maxRows() <= 0) throw new WrongDeclaration(
+			"@Coalesce(maxRows) must be positive on " + method);
+		if (coalesce.windowMicros() < 0) throw new WrongDeclaration(
+			"@Coalesce(windowMicros) cannot be negative on " + method);
+
+		builder.coalesceRows = coalesce.maxRows();
+		builder.coalesceWindowNanos = TimeUnit.MICROSECONDS.toNanos(coalesce.windowMicros());
+	}
+
+	private static void profileSharding(Method method, MethodProfile.Builder builder) {
+		@Null Scatter scatter = method.getAnnotation(Scatter.class);
+		var parameters = method.getParameters();
+		for (int i = 0; i < parameters.length; i++) {
+			if (parameters[i].isAnnotationPresent(ShardKey.class)) {
+				if (builder.shardKeyParameter >= 0) throw new WrongDeclaration(
+					"Only one @ShardKey parameter allowed on " + method);
+				builder.shardKeyParameter = i;
+			}
+		}
+		boolean sharded = builder.shardKeyParameter >= 0;
+		if (!sharded && scatter == null) return;
+
+		if (sharded && scatter != null) throw new WrongDeclaration(
+			"@Scatter method cannot have @ShardKey parameter " + method);
+		if (builder.coalesceRows > 0) throw new WrongDeclaration(
+			"@Coalesce cannot be used with @ShardKey or @Scatter on " + method);
+		if (scatter == null) return;
+
+		var returnType = builder.returnType;
+		assert returnType != null;
+		boolean returnsList = Types.toRawType(returnType) == List.class;
+		if (!returnsList
+			&& returnType != int.class && returnType != long.class && returnType != void.class) {
+			throw new WrongDeclaration(
+				"@Scatter requires List, int, long @UpdateCount or void return type on " + method);
+		}
+
+		@Null Method mergeKey = null;
+		if (!scatter.mergeBy().isEmpty()) {
+			var elementType = returnsList ? Types.toRawType(Types.getFirstArgument(returnType)) : null;
+			if (elementType == null || !elementType.isRecord()) throw new WrongDeclaration(
+				"@Scatter(mergeBy) requires List of records return type on " + method);
+			for (var component : elementType.getRecordComponents()) {
+				if (component.getName().equals(scatter.mergeBy())) {
+					mergeKey = component.getAccessor();
+				}
+			}
+			if (mergeKey == null) throw new WrongDeclaration(
+				"@Scatter(mergeBy) no component " + scatter.mergeBy() + " in " + elementType
+					+ " on " + method);
+			var keyType = mergeKey.getReturnType();
+			if (!keyType.isPrimitive() && !Comparable.class.isAssignableFrom(keyType)) {
+				throw new WrongDeclaration(
+					"@Scatter(mergeBy) component " + scatter.mergeBy() + " is not Comparable on " + method);
+			}
+			mergeKey.trySetAccessible();
+		}
+		builder.scatter = new ShardScatter(returnType, mergeKey);
+	}
+
+	// so that CompletableFuture<Integer> @UpdateCount is treated as int etc.
+	private static Type unboxAsyncResult(Type type) {
+		if (type == Void.class) return void.class;
+		if (type == Integer.class) return int.class;
+		if (type == Long.class) return long.class;
+		return type;
+	}
+
 	private static boolean determineBatchParameter(MethodProfile.Builder builder) {
 		boolean useBatch = false;
 		var parameters = builder.parameters;
@@ -254,10 +723,21 @@ public final class Regresql {
 				Class<?> raw = Types.toRawType(type);
 				if (raw.isArray()) {
 					type = raw.getComponentType();
-				} else if (Iterable.class.isAssignableFrom(raw)) {
+				} else if (Iterable.class.isAssignableFrom(raw)
+					|| Iterator.class.isAssignableFrom(raw)
+					|| Stream.class.isAssignableFrom(raw)) {
 					type = Types.getFirstArgument(type);
 				} else throw new WrongDeclaration(
-					"@Batch parameter must an Iterable or an array, but was " + type);
+					"@Batch parameter must an Iterable, Iterator, Stream or an array, but was " + type);
+
+				if (batchAnnotation.chunk() < 0) throw new WrongDeclaration(
+					"@Batch(chunk) cannot be negative on " + m);
+				builder.batchChunk = batchAnnotation.chunk();
+				builder.chunkTransactions = batchAnnotation.chunkTransactions();
+
+				if (batchAnnotation.valuesRows() < 0) throw new WrongDeclaration(
+					"@Batch(valuesRows) cannot be negative on " + m);
+				builder.valuesRows = batchAnnotation.valuesRows();
 			}
 
 			var codec = codecs.resolve(type, JdbcMedium.Internal);
@@ -305,40 +785,110 @@ public final class Regresql {
 	static InvocationHandler handlerFor(
 		Class<?> accessor,
 		Codec.Resolver codecs,
-		ConnectionProvider provider) {
+		ConnectionProvider provider,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener,
+		boolean lazy) {
+		var methods = uniqueAccessMethods(accessor);
+		return new AccessorHandler(dispatchFor(
+			accessor, codecs, provider, executor, listener, List.copyOf(methods), lazy));
+	}
+
+	/**
+	 * Validates accessor against its SQL source and prepares profiles of methods
+	 * to be invoked by index in the given order of method names. If lazy, only checks
+	 * that methods are there, while each is validated and profiled on its first invocation.
+	 */
+	static AccessorDispatch dispatchFor(
+		Class<?> accessor,
+		Codec.Resolver codecs,
+		ConnectionProvider provider,
+		@Null SqlExecutor executor,
+		@Null SqlListener listener,
+		List<String> order,
+		boolean lazy) {
+		return new AccessorDispatch(accessor, codecs, provider, executor, listener,
+			uniqueAccessMethods(accessor), order, lazy);
+	}
 
-		Set<String> methods = uniqueAccessMethods(accessor);
+	private static final class AccessorHandler extends ProxyHandler {
+		final AccessorDispatch dispatch;
 
-		// We allow "empty" interfaces as a way to access SQL (via ConnectionProvider etc)
-		// and don't load/require SQL sources in this case
-		@Null SqlSource source;
-		Map<String, MethodSnippet> snippets;
-		Map<String, MethodProfile> profiles;
-		if (!methods.isEmpty()) {
-			source = loadSqlSource(accessor);
-			snippets = parseSnippets(source, methods);
-			profiles = compileProfiles(accessor, methods, codecs);
-		} else {
-			source = null;
-			snippets = Map.of();
-			profiles = Map.of();
+		AccessorHandler(AccessorDispatch dispatch) {
+			this.dispatch = dispatch;
 		}
 
-		return new ProxyHandler() {
-			@Override
-			protected @Null Object handleInterfaceMethod(
-				Object proxy, Method method, Object[] arguments) throws Throwable {
-				if (isConnectionHandleMethod(method)) return provider.handle();
+		@Override
+		protected @Null Object handleInterfaceMethod(
+			Object proxy, Method method, Object[] arguments) throws Throwable {
+			if (isConnectionHandleMethod(method)) return dispatch.handle();
 
-				var name = methodName(method);
-				var snippet = snippets.get(name);
-				var profile = profiles.get(name);
+			int index = dispatch.indexOf(methodName(method));
+			assert index >= 0;
+			return dispatch.invoke(index, arguments);
+		}
+	}
 
-				assert profile != null;
+	/**
+	 * Caches of {@link Cached} methods of accessor, by method name.
+	 * @param accessor accessor created by {@link #create}
+	 */
+	public static Map<String, ResultCache> resultCaches(SqlAccessor accessor) {
+		if (accessor instanceof AccessorDispatch.Generated generated) {
+			return generated.accessorDispatch().caches();
+		}
+		if (Proxy.isProxyClass(accessor.getClass())
+			&& Proxy.getInvocationHandler(accessor) instanceof AccessorHandler handler) {
+			return handler.dispatch.caches();
+		}
+		throw new IllegalArgumentException("Not an accessor created by Regresql: " + accessor);
+	}
 
-				return invokeSqlSnippet(provider, method, source, snippet, profile, arguments);
+	/** Resolves names and tags in {@link Invalidates} to caches, by invalidating method name. */
+	static Map<String, List<ResultCache>> resolveInvalidations(
+		Map<String, MethodProfile> profiles) {
+		var byNameOrTag = new HashMap<String, List<ResultCache>>();
+		for (var p : profiles.values()) {
+			@Null var cache = p.resultCache();
+			if (cache == null) continue;
+			byNameOrTag.computeIfAbsent(p.name(), k -> new ArrayList<>()).add(cache);
+			for (var tag : cache.tags) {
+				byNameOrTag.computeIfAbsent(tag, k -> new ArrayList<>()).add(cache);
 			}
-		};
+		}
+		var invalidations = new HashMap<String, List<ResultCache>>();
+		for (var p : profiles.values()) {
+			if (p.invalidates().isEmpty()) continue;
+			var caches = new LinkedHashSet<ResultCache>();
+			for (var nameOrTag : p.invalidates()) {
+				@Null var matched = byNameOrTag.get(nameOrTag);
+				if (matched == null) throw new WrongDeclaration(
+					"@Invalidates(\"" + nameOrTag + "\") on " + p.method()
+						+ " matches no @Cached method name or tag");
+				caches.addAll(matched);
+			}
+			invalidations.put(p.name(), List.copyOf(caches));
+		}
+		return Map.copyOf(invalidations);
+	}
+
+	/** Key from argument values as encoded for statement placeholders. */
+	static ResultCache.Key cacheKey(
+		@Null SqlSource source,
+		Method method,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		Object[] arguments) throws Exception {
+		var parameters = profile.parameters();
+		var out = new StatementOut(profile, profile.bindingPlans().plan(profile, snippet));
+		try {
+			for (int i = 0; i < parameters.size(); i++) {
+				putArgument(out, parameters.get(i), i, arguments[i]);
+			}
+		} catch (IOException | SqlException exception) {
+			throw Exceptions.refineException(source, method, snippet, exception);
+		}
+		return new ResultCache.Key(out.values());
 	}
 
 	static @Null Object invokeSqlSnippet(
@@ -347,33 +897,299 @@ public final class Regresql {
 		@Null SqlSource source,
 		MethodSnippet snippet,
 		MethodProfile profile,
-		Object[] arguments) throws Exception {
+		Object[] arguments,
+		@Null SqlListener listener) throws Exception {
+		return invokeSqlSnippet(provider, method, source, snippet, profile, arguments, listener, null);
+	}
+
+	/** Binder, if present, sets statement parameters instead of encoding arguments. */
+	static @Null Object invokeSqlSnippet(
+		ConnectionProvider provider,
+		@Null Method method,
+		@Null SqlSource source,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		Object[] arguments,
+		@Null SqlListener listener,
+		@Null AccessorDispatch.Binder binder) throws Exception {
 
-		try (
-			var handle = provider.handle();
-			var statement = handle.connection().prepareStatement(snippet.statements())) {
+		if (listener == null) {
+			return invokeSqlSnippet(
+				provider, method, source, snippet, profile, arguments, binder, Timing.NONE);
+		}
+		var timing = new Timing();
+		@Null Throwable failure = null;
+		try {
+			return invokeSqlSnippet(
+				provider, method, source, snippet, profile, arguments, binder, timing);
+		} catch (Exception | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			listener.completed(timing.call(method, snippet, failure));
+		}
+	}
+
+	private static @Null Object invokeSqlSnippet(
+		ConnectionProvider provider,
+		@Null Method method,
+		@Null SqlSource source,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		Object[] arguments,
+		@Null AccessorDispatch.Binder binder,
+		Timing timing) throws Exception {
 
-			@Null Object result;
+		if (profile.streamsRows()) {
+			return streamSqlSnippet(
+				provider, method, source, snippet, profile, arguments, binder, timing);
+		}
+
+		try (var handle = provider.handle()) {
+			var connection = handle.connection();
+			@Null var cache = provider.unwrap(StatementCache.class);
+			var statement = cache != null
+				? cache.take(connection, snippet.statements())
+				: connection.prepareStatement(snippet.statements());
+
+			boolean reusable = false;
+			try {
+				@Null Object result;
+				try {
+					if (profile.batchParameter().isPresent()) {
+						result = executeBatch(
+							connection, cache, statement, profile, snippet, arguments, timing);
+					} else {
+						if (profile.fetchSize() > 0) statement.setFetchSize(profile.fetchSize());
+						if (binder != null) binder.bind(statement);
+						else prepareStatement(statement, profile, snippet, arguments);
+						timing.prepared();
+
+						result = executeStatement(statement, profile, timing);
+					}
+				} catch (SqlException | WrongDeclaration | IOException | SQLException exception) {
+					throw Exceptions.refineException(source, method, snippet, exception);
+				}
+				// let unexpected runtime exception to fly freely with the full stacktrace,
+				// so we can identify and fix them more easily
+
+				if (profile.returnType() == void.class) {
+					// for the case where update count is to be ignored (void method)
+					// we still carry update count up to here,
+					// maybe will use it for debugging/logging
+					assert profile.returnsUpdateCount();
+					result = null;
+				}
+				// only statements which completed normally are returned to cache
+				reusable = true;
+				return result;
+			} finally {
+				if (cache != null && reusable) cache.release(connection, snippet.statements(), statement);
+				else statement.close();
+			}
+		}
+	}
+
+	/**
+	 * Executes writes of concurrent callers, coalesced by {@link WriteCoalescer}, as a single
+	 * batch in one transaction, completing each write with its own update count. If batch fails,
+	 * it is rolled back and writes are executed one by one, so that each caller gets its own
+	 * result or error.
+	 */
+	static void executeCoalesced(
+		ConnectionProvider provider,
+		@Null Method method,
+		@Null SqlSource source,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		List<WriteCoalescer.Write> writes,
+		@Null SqlListener listener) {
+
+		var timing = listener != null ? new Timing() : Timing.NONE;
+		var added = new ArrayList<WriteCoalescer.Write>(writes.size());
+		boolean retry = false;
+		@Null Throwable failure = null;
+
+		try (var handle = provider.handle()) {
+			var connection = handle.connection();
+			@Null var cache = provider.unwrap(StatementCache.class);
+			var statement = cache != null
+				? cache.take(connection, snippet.statements())
+				: connection.prepareStatement(snippet.statements());
+
+			boolean reusable = false;
+			try {
+				var parameters = profile.parameters();
+				var out = new StatementOut(profile, profile.bindingPlans().plan(profile, snippet));
+				for (var write : writes) {
+					try {
+						for (int i = 0; i < parameters.size(); i++) {
+							putArgument(out, parameters.get(i), i, write.arguments()[i]);
+						}
+						out.fillStatement(statement, snippet);
+					} catch (IOException | SqlException | WrongDeclaration exception) {
+						// only this write fails, others are to be executed
+						write.result().completeExceptionally(
+							Exceptions.refineException(source, method, snippet, exception));
+						continue;
+					}
+					statement.addBatch();
+					added.add(write);
+				}
+				timing.prepared();
+				timing.batched(added.size());
+
+				if (!added.isEmpty()) {
+					boolean autoCommit = connection.getAutoCommit();
+					if (autoCommit) connection.setAutoCommit(false);
+					try {
+						int[] counts = statement.executeBatch();
+						connection.commit();
+						timing.executed();
+						for (int i = 0; i < added.size(); i++) {
+							int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+							added.get(i).result().complete(coalescedResult(profile, count));
+						}
+					} catch (SQLException exception) {
+						try {
+							connection.rollback();
+						} catch (SQLException suppressed) {
+							exception.addSuppressed(suppressed);
+						}
+						if (added.size() == 1) throw exception;
+						failure = exception;
+						retry = true;
+					} finally {
+						if (autoCommit) connection.setAutoCommit(true);
+					}
+				}
+				// failed batch might still be queued on the statement, so it is not reused
+				reusable = !retry;
+			} finally {
+				if (cache != null && reusable) cache.release(connection, snippet.statements(), statement);
+				else statement.close();
+			}
+		} catch (Exception | Error e) {
+			failure = e;
+			var refined = e instanceof Exception exception
+				? Exceptions.refineException(source, method, snippet, exception) : e;
+			for (var write : writes) write.result().completeExceptionally(refined);
+		} finally {
+			if (listener != null) listener.completed(timing.call(method, snippet, failure));
+		}
+
+		if (retry) {
+			for (var write : added) {
+				if (write.result().isDone()) continue;
+				try {
+					var result = invokeSqlSnippet(
+						provider, method, source, snippet, profile, write.arguments(), listener);
+					write.result().complete(result);
+				} catch (Exception | Error e) {
+					write.result().completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	private static @Null Object coalescedResult(MethodProfile profile, int count) {
+		var returnType = profile.returnType();
+		if (returnType == int.class) return count;
+		if (returnType == long.class) return (long) count;
+		return null;
+	}
+
+	/**
+	 * Executes statement and returns lazy rows, which take over the ownership of the statement
+	 * and connection handle. Statements are not taken from {@link StatementCache} as their
+	 * lifetime is not bound to this call. Unless in transaction, rows are read on a connection of
+	 * their own, as they might be read after this call returns and on another thread, within
+	 * transaction began for them, as PostgreSQL only fetches rows by fetch size when not in
+	 * auto-commit mode.
+	 */
+	private static Object streamSqlSnippet(
+		ConnectionProvider provider,
+		@Null Method method,
+		@Null SqlSource source,
+		MethodSnippet snippet,
+		MethodProfile profile,
+		Object[] arguments,
+		@Null AccessorDispatch.Binder binder,
+		Timing timing) throws Exception {
+
+		boolean held = ConnectionHandle.isOpened();
+		var handle = held ? provider.handle() : ConnectionHandle.detached(provider);
+		var connection = handle.connection();
+		boolean transaction = false;
+		@Null PreparedStatement statement = null;
+		try {
+			if (!held && connection.getAutoCommit()) {
+				connection.setAutoCommit(false);
+				transaction = true;
+			}
+			statement = connection.prepareStatement(snippet.statements(),
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+			RowIterator rows;
 			try {
-				prepareStatement(statement, profile, snippet, arguments);
+				if (profile.fetchSize() > 0) statement.setFetchSize(profile.fetchSize());
+				if (binder != null) binder.bind(statement);
+				else prepareStatement(statement, profile, snippet, arguments);
+				timing.prepared();
+
+				var results = executeForResultSet(statement);
+				timing.executed();
+				var codec = profile.returnTypeCodec().orElseThrow(AssertionError::new);
 
-				result = executeStatement(statement, profile);
+				var in = resultIn(results, profile);
+				Function<Exception, RuntimeException> refine = exception -> {
+					var refined = Exceptions.refineException(source, method, snippet, exception);
+					return refined instanceof RuntimeException r
+						? r : new SqlException(refined.getMessage(), refined);
+				};
+				rows = new RowIterator(results, in, statement, handle, transaction, codec, refine);
 			} catch (SqlException | WrongDeclaration | IOException | SQLException exception) {
 				throw Exceptions.refineException(source, method, snippet, exception);
 			}
-			// let unexpected runtime exception to fly freely with the full stacktrace,
-			// so we can identify and fix them more easily
-
-			if (profile.returnType() == void.class) {
-				// for the case where update count is to be ignored (void method)
-				// we still carry update count up to here,
-				// maybe will use it for debugging/logging
-				assert profile.returnsUpdateCount();
-				result = null;
+			return Types.toRawType(profile.returnType()) == Stream.class ? rows.stream() : rows;
+		} catch (Exception | Error e) {
+			try {
+				if (statement != null) statement.close();
+			} catch (SQLException suppressed) {
+				e.addSuppressed(suppressed);
 			}
+			try {
+				if (transaction) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			} catch (SQLException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			try {
+				handle.close();
+			} catch (Exception suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	private static ResultIn resultIn(ResultSet results, MethodProfile profile) throws SQLException {
+		return new ResultIn(results, profile.resultPlans().plan(results.getMetaData()));
+	}
 
-			return result;
+	/** Skips any update counts preceding the result set. */
+	private static ResultSet executeForResultSet(PreparedStatement statement)
+		throws SQLException {
+		boolean hasResultSet = statement.execute();
+		while (!hasResultSet) {
+			if (statement.getUpdateCount() < 0) throw new WrongDeclaration(
+				"ResultSet expected but there was none. " +
+					"Fix SQL query, or use void return type or int/long @UpdateCount");
+			hasResultSet = statement.getMoreResults();
 		}
+		return statement.getResultSet();
 	}
 
 	private static boolean isConnectionHandleMethod(Method method) {
@@ -388,39 +1204,258 @@ public final class Regresql {
 		MethodSnippet snippet,
 		Object[] args) throws SQLException, IOException {
 
+		assert profile.batchParameter().isEmpty();
+
 		var parameters = profile.parameters();
-		var out = new StatementOut(profile, profile.parameterIndex());
+		var out = new StatementOut(profile, profile.bindingPlans().plan(profile, snippet));
 
-		if (profile.batchParameter().isPresent()) {
-			int batchIndex = profile.batchParameter().getAsInt();
-			for (int i = 0; i < parameters.size(); i++) {
-				if (i != batchIndex) {
-					putArgument(out, parameters.get(i), i, args[i]);
-				}
+		for (int i = 0; i < parameters.size(); i++) {
+			putArgument(out, parameters.get(i), i, args[i]);
+		}
+		out.fillStatement(statement, snippet);
+	}
+
+	/**
+	 * Adds batch entries and executes them in chunks, if chunk size is configured,
+	 * so that neither driver nor database have to buffer the whole batch. Batch parameter
+	 * is consumed lazily, so it can be an iterator or a stream producing elements on the fly.
+	 */
+	private static Object executeBatch(
+		Connection connection,
+		@Null StatementCache cache,
+		PreparedStatement statement,
+		MethodProfile profile,
+		MethodSnippet snippet,
+		Object[] args,
+		Timing timing) throws SQLException, IOException {
+
+		var parameters = profile.parameters();
+		var plan = profile.bindingPlans().plan(profile, snippet);
+		var out = new StatementOut(profile, plan);
+
+		int batchIndex = profile.batchParameter().getAsInt();
+		for (int i = 0; i < parameters.size(); i++) {
+			if (i != batchIndex) {
+				putArgument(out, parameters.get(i), i, args[i]);
 			}
-			ParameterProfile batcher = parameters.get(batchIndex);
-			Object batch = args[batchIndex];
-			if (batch instanceof Iterable<?>) {
-				for (Object o : (Iterable<?>) batch) {
-					putArgument(out, batcher, batchIndex, o);
+		}
+		ParameterProfile batcher = parameters.get(batchIndex);
+		Iterator<?> entries = batchEntries(args[batchIndex]);
+
+		// chunks are committed separately only if not already within transaction
+		boolean chunkTransactions = profile.chunkTransactions() && connection.getAutoCommit();
+		var chunks = new BatchChunks(connection, profile, chunkTransactions, timing);
+
+		if (chunkTransactions) connection.setAutoCommit(false);
+		try {
+			if (plan.multiRow != null) {
+				addMultiRows(connection, cache, statement, snippet, plan.multiRow,
+					out, batcher, batchIndex, entries, chunks);
+			} else {
+				while (entries.hasNext()) {
+					putArgument(out, batcher, batchIndex, entries.next());
 					out.fillStatement(statement, snippet);
 					statement.addBatch();
+					chunks.added(statement, 1);
 				}
-			} else if (batch.getClass().isArray()) {
-				int length = Array.getLength(batch);
-				for (int i = 0; i < length; i++) {
-					Object value = Array.get(batch, i);
-					putArgument(out, batcher, batchIndex, value);
-					out.fillStatement(statement, snippet);
-					statement.addBatch();
+				if (chunks.added > 0) chunks.execute(statement);
+			}
+			// execute empty batch too (if nothing was executed)
+			// as it was done before, when no chunking was used
+			if (!chunks.executed) chunks.execute(statement);
+		} catch (SQLException | IOException | RuntimeException e) {
+			if (chunkTransactions) try {
+				connection.rollback();
+			} catch (SQLException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		} finally {
+			if (chunkTransactions) connection.setAutoCommit(true);
+		}
+		return chunks.counts.result();
+	}
+
+	/**
+	 * Binds batch entries to multi-row VALUES statements, up to the number of rows
+	 * entries are retained before binding, the remainder is inserted using separate statement.
+	 */
+	private static void addMultiRows(
+		Connection connection,
+		@Null StatementCache cache,
+		PreparedStatement statement,
+		MethodSnippet snippet,
+		MultiRowValues multiRow,
+		StatementOut out,
+		ParameterProfile batcher,
+		int batchIndex,
+		Iterator<?> entries,
+		BatchChunks chunks) throws SQLException, IOException {
+
+		int rows = multiRow.rows();
+		var pending = new Object[rows];
+		int pendingCount = 0;
+		@Null PreparedStatement rowsStatement = null;
+		@Null PreparedStatement tailStatement = null;
+		@Null String tailSql = null;
+		boolean reusable = false;
+		try {
+			while (entries.hasNext()) {
+				pending[pendingCount++] = entries.next();
+				if (pendingCount == rows) {
+					if (rowsStatement == null) {
+						rowsStatement = cache != null
+							? cache.take(connection, multiRow.statements())
+							: connection.prepareStatement(multiRow.statements());
+					}
+					for (int r = 0; r < rows; r++) {
+						putArgument(out, batcher, batchIndex, pending[r]);
+						out.fillRow(rowsStatement, snippet, multiRow, r, rows);
+					}
+					Arrays.fill(pending, null);
+					pendingCount = 0;
+					rowsStatement.addBatch();
+					chunks.added(rowsStatement, rows);
 				}
-			} else throw new WrongDeclaration(
-				"Batch parameter should be Iterable or an array");
-		} else {
-			for (int i = 0; i < parameters.size(); i++) {
-				putArgument(out, parameters.get(i), i, args[i]);
 			}
-			out.fillStatement(statement, snippet);
+			if (rowsStatement != null && chunks.added > 0) chunks.execute(rowsStatement);
+
+			if (pendingCount > 0) {
+				// single row remainder can use the original statement
+				PreparedStatement tail;
+				if (pendingCount == 1) {
+					tail = statement;
+				} else {
+					tailSql = multiRow.statements(pendingCount);
+					tail = tailStatement = cache != null
+						? cache.take(connection, tailSql)
+						: connection.prepareStatement(tailSql);
+				}
+				for (int r = 0; r < pendingCount; r++) {
+					putArgument(out, batcher, batchIndex, pending[r]);
+					out.fillRow(tail, snippet, multiRow, r, pendingCount);
+				}
+				tail.addBatch();
+				chunks.execute(tail);
+			}
+			// only statements which executed all their batches are returned to cache
+			reusable = true;
+		} finally {
+			if (rowsStatement != null) {
+				if (cache != null && reusable) {
+					cache.release(connection, multiRow.statements(), rowsStatement);
+				} else rowsStatement.close();
+			}
+			if (tailStatement != null) {
+				assert tailSql != null;
+				if (cache != null && reusable) {
+					cache.release(connection, tailSql, tailStatement);
+				} else tailStatement.close();
+			}
+		}
+	}
+
+	/** Tracks rows added to batch and executes it when chunk is full. */
+	private static final class BatchChunks {
+		final BatchCounts counts;
+		private final Connection connection;
+		private final int chunk;
+		private final boolean transactions;
+		private final Timing timing;
+		int added;
+		boolean executed;
+
+		BatchChunks(
+			Connection connection, MethodProfile profile, boolean transactions, Timing timing) {
+			this.connection = connection;
+			this.counts = new BatchCounts(profile.returnType());
+			this.chunk = profile.batchChunk();
+			this.transactions = transactions;
+			this.timing = timing;
+		}
+
+		void added(PreparedStatement statement, int rows) throws SQLException {
+			added += rows;
+			timing.batched(rows);
+			if (chunk > 0 && added >= chunk) execute(statement);
+		}
+
+		void execute(PreparedStatement statement) throws SQLException {
+			// binding entries counts as preparation, then executing chunk
+			timing.prepared();
+			counts.execute(statement);
+			if (transactions) connection.commit();
+			timing.executed();
+			added = 0;
+			executed = true;
+		}
+	}
+
+	private static Iterator<?> batchEntries(Object batch) {
+		if (batch instanceof Iterable<?> iterable) return iterable.iterator();
+		if (batch instanceof Iterator<?> iterator) return iterator;
+		if (batch instanceof Stream<?> stream) return stream.iterator();
+		if (batch.getClass().isArray()) {
+			int length = Array.getLength(batch);
+			return new Iterator<Object>() {
+				int i;
+
+				@Override public boolean hasNext() {
+					return i < length;
+				}
+
+				@Override public Object next() {
+					if (i >= length) throw new NoSuchElementException();
+					return Array.get(batch, i++);
+				}
+			};
+		}
+		throw new WrongDeclaration(
+			"Batch parameter should be Iterable, Iterator, Stream or an array");
+	}
+
+	/**
+	 * Accumulates update counts of executed batch chunks, either as a sum,
+	 * or as an array of counts, depending on return type, not retained for void.
+	 */
+	private static final class BatchCounts {
+		private final boolean large;
+		private final boolean sum;
+		private final boolean ignore;
+		private long total;
+		private long[] counts = new long[0];
+		private int size;
+
+		BatchCounts(Type returnType) {
+			large = returnType == long.class || returnType == long[].class;
+			sum = returnType == int.class || returnType == long.class;
+			ignore = returnType == void.class;
+		}
+
+		void execute(PreparedStatement statement) throws SQLException {
+			if (large) {
+				for (long c : statement.executeLargeBatch()) add(c);
+			} else {
+				for (int c : statement.executeBatch()) add(c);
+			}
+		}
+
+		private void add(long count) {
+			if (ignore) return;
+			if (sum) {
+				total += count;
+			} else {
+				if (size == counts.length) counts = Arrays.copyOf(counts, Math.max(16, size * 2));
+				counts[size++] = count;
+			}
+		}
+
+		Object result() {
+			if (sum) return large ? (Object) total : (Object) (int) total;
+			if (large) return Arrays.copyOf(counts, size);
+			var ints = new int[size];
+			for (int i = 0; i < size; i++) ints[i] = (int) counts[i];
+			return ints;
 		}
 	}
 
@@ -434,7 +1469,7 @@ public final class Regresql {
 		p.codec().encode(out, value);
 	}
 
-	private static SqlSource loadSqlSource(Class<?> accessorInterface) throws AssertionError {
+	static SqlSource loadSqlSource(Class<?> accessorInterface) throws AssertionError {
 		String filename = Snippets.resourceFilenameFor(accessorInterface);
 		@Null InputStream resource = accessorInterface.getResourceAsStream(filename);
 
@@ -450,17 +1485,14 @@ public final class Regresql {
 		// to generate prepared statement strings which we then store
 		// and use directly for JDBC. Also, we collect placeholder strings in lists
 		// per method.
-		Source.Buffer content = new Source.Buffer();
-
-		// none of the simpler ways available without libraries (?)
-		// transferTo works for byte streams, not chars
-		try (var source =
-			new BufferedReader(new InputStreamReader(resource, StandardCharsets.UTF_8))) {
-			char[] buffer = new char[BUFFER_SIZE];
-			int length;
-			while ((length = source.read(buffer)) != -1) {
-				content.write(buffer, 0, length);
-			}
+		Source.Buffer content;
+
+		// reading all bytes at once and decoding them in one go into buffer
+		// of the exact size, rather than growing it while reading in chunks
+		try (resource) {
+			var chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(resource.readAllBytes()));
+			content = new Source.Buffer(chars.remaining());
+			content.append(chars);
 		} catch (IOException readingClasspathResourceFailed) {
 			throw new UncheckedIOException("Cannot read " + filename,
 				readingClasspathResourceFailed);
@@ -469,7 +1501,7 @@ public final class Regresql {
 		return new SqlSource(filename, content, Source.Lines.from(content));
 	}
 
-	private static Map<String, MethodSnippet> parseSnippets(
+	static Map<String, MethodSnippet> parseSnippets(
 		SqlSource source,
 		Set<String> methods) {
 		var snippets = Snippets.parse(source);
@@ -547,7 +1579,7 @@ public final class Regresql {
 	 * alphanumeric characters}'
 	 * This method return the same name as it was on compile time
 	 */
-	private static String methodName(Method m) {
+	static String methodName(Method m) {
 		String name = m.getName();
 		int dashIndex = name.indexOf("-");
 		return dashIndex == -1 ? name : name.substring(0, dashIndex);
@@ -557,8 +1589,10 @@ public final class Regresql {
 		return Modifier.isAbstract(m.getModifiers()) && !isConnectionHandleMethod(m);
 	}
 
-	static @Null Object executeStatement(PreparedStatement statement, MethodProfile profile)
-		throws SQLException, IOException {
+	static @Null Object executeStatement(
+		PreparedStatement statement,
+		MethodProfile profile,
+		Timing timing) throws SQLException, IOException {
 
 		Type returnType = profile.returnType();
 		boolean useUpdateCount = profile.returnsUpdateCount();
@@ -572,97 +1606,158 @@ public final class Regresql {
 		// do not initialize here, forcing compiler to check all branches to assign it
 		@Null Object returnValue;
 
-		if (profile.batchParameter().isPresent()) {
-			if (largeUpdateCount) { // large update count
-				long[] updates = statement.executeLargeBatch();
+		assert profile.batchParameter().isEmpty();
 
+		boolean hasResultSet = statement.execute();
+		timing.executed();
+
+		if (useUpdateCount) {
+			if (largeUpdateCount) { // long update count
+				var updates = new ArrayList<Long>();
+				for (long count; ; ) {
+					count = statement.getLargeUpdateCount();
+					if (count >= 0) {
+						updates.add(count);
+					}
+					if (!hasResultSet && count < 0) break;
+					hasResultSet = statement.getMoreResults();
+				}
 				if (sumUpdateCount) {
-					returnValue = Arrays.stream(updates).sum();
+					returnValue = updates.stream().mapToLong(l -> l).sum();
 				} else {
-					returnValue = updates;
+					returnValue = updates.stream().mapToLong(l -> l).toArray();
+				}
+			} else { // int update count
+				var updates = new ArrayList<Integer>();
+				for (int count; ; ) {
+					count = statement.getUpdateCount();
+					if (count >= 0) {
+						updates.add(count);
+					}
+					if (!hasResultSet && count < 0) break;
+					hasResultSet = statement.getMoreResults();
 				}
-			} else { // long update count and void
-				int[] updates = statement.executeBatch();
-
 				if (sumUpdateCount) {
-					returnValue = Arrays.stream(updates).sum();
+					returnValue = updates.stream().mapToInt(l -> l).sum();
 				} else {
-					returnValue = updates;
+					returnValue = updates.stream().mapToInt(l -> l).toArray();
 				}
 			}
-		} else { // not batching
-			boolean hasResultSet = statement.execute();
+		} else if (profile.resultComponents() != null) {
+			returnValue = profile.resultComponents().decode(statement, hasResultSet, timing);
+		} else { // reading result set (not an update count)
+			// for the return type, the codec must be present at this point, so AssertionError
+			var codec = profile.returnTypeCodec().orElseThrow(AssertionError::new);
 
-			if (useUpdateCount) {
-				if (largeUpdateCount) { // long update count
-					var updates = new ArrayList<Long>();
-					for (long count; ; ) {
-						count = statement.getLargeUpdateCount();
-						if (count >= 0) {
-							updates.add(count);
-						}
-						if (!hasResultSet && count < 0) break;
-						hasResultSet = statement.getMoreResults();
-					}
-					if (sumUpdateCount) {
-						returnValue = updates.stream().mapToLong(l -> l).sum();
-					} else {
-						returnValue = updates.stream().mapToLong(l -> l).toArray();
-					}
-				} else { // int update count
-					var updates = new ArrayList<Integer>();
-					for (int count; ; ) {
-						count = statement.getUpdateCount();
-						if (count >= 0) {
-							updates.add(count);
-						}
-						if (!hasResultSet && count < 0) break;
-						hasResultSet = statement.getMoreResults();
-					}
-					if (sumUpdateCount) {
-						returnValue = updates.stream().mapToInt(l -> l).sum();
-					} else {
-						returnValue = updates.stream().mapToInt(l -> l).toArray();
-					}
-				}
-			} else { // reading result set (not an update count)
-				// for the return type, the codec must be present at this point, so AssertionError
-				var codec = profile.returnTypeCodec().orElseThrow(AssertionError::new);
+			boolean wasResultSet = false;
+
+			returnValue = null; // cannot use clean branching below, have to initialize early
 
-				boolean wasResultSet = false;
+			if (hasResultSet) {
+				var in = resultIn(statement.getResultSet(), profile);
+				returnValue = codec.decode(in);
+				timing.decoded(in);
+				wasResultSet = true;
+			}
 
-				returnValue = null; // cannot use clean branching below, have to initialize early
+			for (int count; ; ) {
+				count = statement.getUpdateCount();
+				if (!hasResultSet && count < 0) break;
+				hasResultSet = statement.getMoreResults();
 
 				if (hasResultSet) {
-					var in = new ResultIn(statement.getResultSet());
+					if (wasResultSet) throw new WrongDeclaration(
+						"Only single ResultSet can be processed, " +
+							"Use sql UNION ALL to merge multiple results");
+
+					var in = resultIn(statement.getResultSet(), profile);
 					returnValue = codec.decode(in);
+					timing.decoded(in);
 					wasResultSet = true;
 				}
+			}
 
-				for (int count; ; ) {
-					count = statement.getUpdateCount();
-					if (!hasResultSet && count < 0) break;
-					hasResultSet = statement.getMoreResults();
+			if (!wasResultSet) throw new WrongDeclaration(
+				"ResultSet expected but there was none. " +
+					"Fix SQL query, or use void return type or int/long @UpdateCount");
+		} // end resultsets
 
-					if (hasResultSet) {
-						if (wasResultSet) throw new WrongDeclaration(
-							"Only single ResultSet can be processed, " +
-								"Use sql UNION ALL to merge multiple results");
+		// remaining update counts and results are attributed to execution
+		timing.executed();
+		return returnValue;
+	}
 
-						var in = new ResultIn(statement.getResultSet());
-						returnValue = codec.decode(in);
-						wasResultSet = true;
-					}
-				}
+	/**
+	 * Measures phases of invocation for {@link SqlListener}, each mark attributes time since
+	 * the previous mark to a phase. Disabled instance does nothing, not even reading the clock.
+	 */
+	static final class Timing {
+		static final Timing NONE = new Timing(false);
+
+		private final boolean enabled;
+		private long mark;
+		private long prepareNanos;
+		private long executeNanos;
+		private long decodeNanos;
+		private long rows;
+		private long batchEntries;
+
+		private Timing(boolean enabled) {
+			this.enabled = enabled;
+		}
 
-				if (!wasResultSet) throw new WrongDeclaration(
-					"ResultSet expected but there was none. " +
-						"Fix SQL query, or use void return type or int/long @UpdateCount");
-			} // end resultsets
-		} // end not batch
+		Timing() {
+			this(true);
+			mark = System.nanoTime();
+		}
 
-		return returnValue;
+		void prepared() {
+			if (enabled) prepareNanos += lap();
+		}
+
+		void executed() {
+			if (enabled) executeNanos += lap();
+		}
+
+		void batched(long entries) {
+			if (enabled) batchEntries += entries;
+		}
+
+		void decoded(ResultIn in) {
+			if (enabled) {
+				decodeNanos += lap();
+				rows += in.rowsRead();
+			}
+		}
+
+		private long lap() {
+			long now = System.nanoTime();
+			long elapsed = now - mark;
+			mark = now;
+			return elapsed;
+		}
+
+		SqlCall call(@Null Method method, MethodSnippet snippet, @Null Throwable failure) {
+			// whatever is not attributed yet, such as closing statement or failure
+			executed();
+			var source = snippet.source();
+			return new SqlCall(
+				method != null
+					? method.getDeclaringClass().getSimpleName() + "." + snippet.name()
+					: source.filename(),
+				source.filename() + ":" + snippet.identifierRange().begin.line,
+				snippet.statements(),
+				prepareNanos,
+				executeNanos,
+				decodeNanos,
+				rows,
+				batchEntries,
+				failure);
+		}
 	}
 
-	public static final int BUFFER_SIZE = 8_192;
+	/** Suffix of the accessor implementation class generated by annotation processor. */
+	public static final String GENERATED_SUFFIX = "_Regresql";
+	/** Static field of generated class with method names in the order of their indexes. */
+	public static final String GENERATED_METHODS = "METHODS";
 }
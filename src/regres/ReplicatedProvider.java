@@ -0,0 +1,208 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits reads and writes between primary database and its read replicas. Connections
+ * are obtained from the primary, unless for {@link SqlAccessor.Read} methods and
+ * {@link SqlFactory#readonly} transactions, which use {@link #forRead()} provider: it picks
+ * one of the replicas at random, in proportion to their weights, falling back to the primary
+ * if replica fails to give connection, unless disabled. Within transaction (connection
+ * held by the thread) reads use the held connection, as usual.
+ * <p>Replicas lag behind the primary, so, to read own writes, reads can stick to the primary
+ * for a while after the thread used primary connection. Any use of primary connection counts
+ * as write for that purpose.
+ * <p>Use {@link #builder(ConnectionProvider)} to create.
+ */
+public final class ReplicatedProvider implements ConnectionProvider {
+	private final ConnectionProvider primary;
+	private final ConnectionProvider[] replicas;
+	// cumulative weights, to pick replica by random number
+	private final int[] weights;
+	private final boolean fallbackToPrimary;
+	private final long stickyNanos;
+	private final ConnectionProvider reads = new Reads();
+
+	// to recycle connections to replicas they were taken from
+	private final Map<Connection, ConnectionProvider> borrowed = new ConcurrentHashMap<>();
+	private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+
+	private final LongAdder replicaReads = new LongAdder();
+	private final LongAdder primaryReads = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+
+	private ReplicatedProvider(Builder builder) {
+		this.primary = builder.primary;
+		this.replicas = builder.replicas.toArray(new ConnectionProvider[0]);
+		this.weights = new int[replicas.length];
+		int total = 0;
+		for (int i = 0; i < weights.length; i++) {
+			total += builder.weights.get(i);
+			weights[i] = total;
+		}
+		this.fallbackToPrimary = builder.fallbackToPrimary;
+		this.stickyNanos = builder.stickyAfterWrite.toNanos();
+	}
+
+	/** Connection to the primary. */
+	@Override public Connection get() throws SQLException {
+		var connection = primary.get();
+		if (stickyNanos > 0) lastWrite.get()[0] = System.nanoTime();
+		return connection;
+	}
+
+	@Override public void recycle(Connection c) throws SQLException {
+		@Null var replica = borrowed.remove(c);
+		if (replica != null) replica.recycle(c);
+		else primary.recycle(c);
+	}
+
+	@Override public <P extends ConnectionProvider> @Null P unwrap(Class<P> type) {
+		return type.isInstance(this) ? type.cast(this) : primary.unwrap(type);
+	}
+
+	/** Provider of connections for reading, these are recycled by this provider. */
+	public ConnectionProvider forRead() {
+		return reads;
+	}
+
+	private Connection getForRead() throws SQLException {
+		if (replicas.length == 0 || sticksToPrimary()) {
+			primaryReads.increment();
+			return primary.get();
+		}
+		var replica = pickReplica();
+		Connection connection;
+		try {
+			connection = replica.get();
+		} catch (SQLException e) {
+			if (!fallbackToPrimary) throw e;
+			fallbacks.increment();
+			primaryReads.increment();
+			return primary.get();
+		}
+		replicaReads.increment();
+		borrowed.put(connection, replica);
+		return connection;
+	}
+
+	private boolean sticksToPrimary() {
+		if (stickyNanos == 0) return false;
+		long at = lastWrite.get()[0];
+		return at != 0 && System.nanoTime() - at < stickyNanos;
+	}
+
+	private ConnectionProvider pickReplica() {
+		if (replicas.length == 1) return replicas[0];
+		int point = ThreadLocalRandom.current().nextInt(weights[weights.length - 1]);
+		for (int i = 0; i < weights.length; i++) {
+			if (point < weights[i]) return replicas[i];
+		}
+		throw new AssertionError("point is within total weight");
+	}
+
+	/** Number of reads served by replicas. */
+	public long replicaReads() {
+		return replicaReads.sum();
+	}
+
+	/** Number of reads served by the primary: sticking to it, or falling back. */
+	public long primaryReads() {
+		return primaryReads.sum();
+	}
+
+	/** Number of times replica failed to give connection, so read fell back to the primary. */
+	public long fallbacks() {
+		return fallbacks.sum();
+	}
+
+	@Override public String toString() {
+		return ReplicatedProvider.class.getSimpleName()
+			+ "(replicas=" + replicas.length
+			+ ", replicaReads=" + replicaReads
+			+ ", primaryReads=" + primaryReads
+			+ ", fallbacks=" + fallbacks + ")";
+	}
+
+	private final class Reads implements ConnectionProvider {
+		@Override public Connection get() throws SQLException {
+			return getForRead();
+		}
+
+		@Override public void recycle(Connection c) throws SQLException {
+			ReplicatedProvider.this.recycle(c);
+		}
+
+		@Override public <P extends ConnectionProvider> @Null P unwrap(Class<P> type) {
+			// statements are cached per connection, so cache of any replica would do
+			for (var replica : replicas) {
+				@Null var found = replica.unwrap(type);
+				if (found != null) return found;
+			}
+			return ReplicatedProvider.this.unwrap(type);
+		}
+
+		@Override public String toString() {
+			return ReplicatedProvider.this + ".forRead()";
+		}
+	}
+
+	public static Builder builder(ConnectionProvider primary) {
+		return new Builder(primary);
+	}
+
+	public static final class Builder {
+		private final ConnectionProvider primary;
+		private final List<ConnectionProvider> replicas = new ArrayList<>();
+		private final List<Integer> weights = new ArrayList<>();
+		private boolean fallbackToPrimary = true;
+		private Duration stickyAfterWrite = Duration.ZERO;
+
+		private Builder(ConnectionProvider primary) {
+			this.primary = primary;
+		}
+
+		/** Adds replica with weight 1. */
+		public Builder replica(ConnectionProvider replica) {
+			return replica(replica, 1);
+		}
+
+		/** Adds replica, which gets reads in proportion of its weight to total weight. */
+		public Builder replica(ConnectionProvider replica, int weight) {
+			if (weight <= 0) throw new IllegalArgumentException("weight must be positive");
+			replicas.add(replica);
+			weights.add(weight);
+			return this;
+		}
+
+		/** Reads use primary if replica fails to give connection, enabled by default. */
+		public Builder fallbackToPrimary(boolean fallbackToPrimary) {
+			this.fallbackToPrimary = fallbackToPrimary;
+			return this;
+		}
+
+		/**
+		 * Reads stick to the primary for that long after the thread used primary connection,
+		 * zero (the default) to disable.
+		 */
+		public Builder stickyAfterWrite(Duration stickyAfterWrite) {
+			if (stickyAfterWrite.isNegative()) throw new IllegalArgumentException(
+				"stickyAfterWrite cannot be negative");
+			this.stickyAfterWrite = stickyAfterWrite;
+			return this;
+		}
+
+		public ReplicatedProvider build() {
+			return new ReplicatedProvider(this);
+		}
+	}
+}
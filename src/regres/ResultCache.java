@@ -0,0 +1,155 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of results of {@link SqlAccessor.Cached} accessor method. Results are
+ * keyed by argument values as encoded for statement parameters, so arguments are compared the
+ * same way database would see them. Entries are evicted in LRU order when cache exceeds its
+ * maximum size, and expire after time-to-live, if configured. Results are shared by all callers
+ * getting them from cache, so these have to be immutable (records, immutable collections).
+ * <p>Cache is invalidated as a whole by {@link SqlAccessor.Invalidates} methods of the same
+ * accessor, or by calling {@link #invalidate()}. Results being read during invalidation are
+ * not stored. When invalidating method runs within transaction, cache is invalidated once
+ * again after the transaction completes.
+ * Use {@link Regresql#resultCaches(SqlAccessor)} to get caches of an accessor.
+ */
+public final class ResultCache {
+	private final String method;
+	private final int maxSize;
+	private final long ttlNanos;
+	final Set<String> tags;
+
+	// access order LRU, guarded by its own monitor, as well as the generation
+	private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	ResultCache(String method, int maxSize, long ttlNanos, Set<String> tags) {
+		if (maxSize <= 0) throw new WrongDeclaration("@Cached(maxSize) must be positive on " + method);
+		if (ttlNanos < 0) throw new WrongDeclaration("@Cached(ttl) cannot be negative on " + method);
+		this.method = method;
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlNanos;
+		this.tags = Set.copyOf(tags);
+	}
+
+	/** Argument values as bound to the statement placeholders. */
+	record Key(@Null Object[] values) {
+		@Override public boolean equals(@Null Object o) {
+			return o instanceof Key k && Arrays.deepEquals(values, k.values);
+		}
+
+		@Override public int hashCode() {
+			return Arrays.deepHashCode(values);
+		}
+
+		@Override public String toString() {
+			return Arrays.deepToString(values);
+		}
+	}
+
+	private record Entry(@Null Object value, long storedAt) {}
+
+	/** Cached result or {@link #ABSENT}. */
+	@Null Object get(Key key) {
+		synchronized (entries) {
+			@Null var entry = entries.get(key);
+			if (entry != null) {
+				if (ttlNanos > 0 && System.nanoTime() - entry.storedAt >= ttlNanos) {
+					entries.remove(key);
+					evictions.increment();
+				} else {
+					hits.increment();
+					return entry.value;
+				}
+			}
+		}
+		misses.increment();
+		return ABSENT;
+	}
+
+	/** Take generation before reading result, to pass it to {@link #put}. */
+	long generation() {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+
+	/** Stores result unless cache was invalidated since the generation was taken. */
+	void put(Key key, long generation, @Null Object value) {
+		synchronized (entries) {
+			if (this.generation == generation) {
+				entries.put(key, new Entry(value, System.nanoTime()));
+				if (entries.size() > maxSize) {
+					var eldest = entries.keySet().iterator();
+					eldest.next();
+					eldest.remove();
+					evictions.increment();
+				}
+			}
+		}
+	}
+
+	/** Removes all cached results. */
+	public void invalidate() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+		}
+		invalidations.increment();
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	/** Ratio of hits to all lookups, from 0 to 1, or 0 if there were no lookups. */
+	public double hitRatio() {
+		long hits = this.hits.sum();
+		long total = hits + misses.sum();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/** Number of entries evicted by size or expired. */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public long invalidations() {
+		return invalidations.sum();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override public String toString() {
+		return ResultCache.class.getSimpleName()
+			+ "(" + method
+			+ ", size=" + size()
+			+ ", maxSize=" + maxSize
+			+ ", hits=" + hits
+			+ ", misses=" + misses
+			+ ", evictions=" + evictions
+			+ ", invalidations=" + invalidations + ")";
+	}
+
+	/** Marker of absent cache entry, as {@code null} can be cached. */
+	static final Object ABSENT = new Object();
+}
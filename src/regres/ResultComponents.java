@@ -0,0 +1,75 @@
+package io.immutables.regres;
+
+import io.immutables.codec.Codec;
+import io.immutables.codec.In;
+import io.immutables.codec.Out;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Decodes components of a record from successive result sets of a single statement execution,
+ * see {@link SqlAccessor.ResultSets}. Update counts in between result sets are skipped.
+ */
+final class ResultComponents {
+	private final Type type;
+	private final Constructor<?> constructor;
+	private final Codec<Object, In, Out>[] codecs;
+	// each result set have different columns, so having plan cache per component
+	private final ResultPlan.Cache[] plans;
+
+	@SuppressWarnings("unchecked") // for private generic array
+	ResultComponents(Type type, Constructor<?> constructor, List<Codec<Object, In, Out>> codecs) {
+		this.type = type;
+		this.constructor = constructor;
+		this.codecs = codecs.toArray((Codec<Object, In, Out>[]) new Codec<?, ?, ?>[0]);
+		this.plans = new ResultPlan.Cache[codecs.size()];
+		for (int i = 0; i < plans.length; i++) {
+			plans[i] = new ResultPlan.Cache();
+		}
+	}
+
+	/** Reads all remaining results of executed statement. */
+	Object decode(PreparedStatement statement, boolean hasResultSet, Regresql.Timing timing)
+		throws SQLException, IOException {
+		var values = new Object[codecs.length];
+		int count = 0;
+
+		for (; ; ) {
+			if (hasResultSet) {
+				if (count == codecs.length) throw new WrongDeclaration(
+					"More than " + codecs.length + " ResultSets to decode as components of " + type
+						+ ". Fix SQL query or add components to the record");
+
+				var results = statement.getResultSet();
+				var in = new ResultIn(results, plans[count].plan(results.getMetaData()));
+				values[count] = codecs[count].decode(in);
+				timing.decoded(in);
+				count++;
+			} else if (statement.getUpdateCount() < 0) break;
+
+			hasResultSet = statement.getMoreResults();
+			timing.executed();
+		}
+
+		if (count < codecs.length) throw new WrongDeclaration(
+			codecs.length + " ResultSets expected to decode as components of " + type
+				+ ", but there were " + count + ". Fix SQL query or remove components from the record");
+
+		try {
+			return constructor.newInstance(values);
+		} catch (InvocationTargetException e) {
+			throw new IOException("Cannot construct " + type + ": " + e.getCause(), e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Canonical constructor must be accessible " + constructor, e);
+		}
+	}
+
+	@Override public String toString() {
+		return ResultComponents.class.getSimpleName() + "(" + type + ", " + codecs.length + ")";
+	}
+}
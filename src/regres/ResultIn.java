@@ -5,22 +5,30 @@ import io.immutables.codec.AtPath;
 import io.immutables.codec.In;
 import io.immutables.codec.NameIndex;
 import io.immutables.meta.Null;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.Arrays;
 
 /**
- * Structured codec input read from JDBC result set.
+ * Structured codec input read from JDBC result set. Column values are read lazily, only when
+ * taken or peeked, using typed getters for common numeric, boolean and string column types,
+ * so primitives are not boxed and skipped columns are not read at all.
  */
 public class ResultIn extends In {
 	private final ResultSet results;
+	private final ResultPlan plan;
 	private final int columnCount;
 	private final String[] names;
 	private final int[] types;
-	private final Object[] values;
-	private final int[] indexes;
+	private final byte[] readers;
+	// result set column numbers for view of the current row, otherwise column is index + 1
+	private final @Null int[] columns;
+	private int[] indexes;
 
 	private Token peek = Token.Array;
 	private int atRow = -1;
@@ -28,65 +36,79 @@ public class ResultIn extends In {
 	private @Null String currentName;
 	private int currentType = Types.OTHER;
 
-	// Will not close result set
-	ResultIn(ResultSet results) throws SQLException {
+	// current column value, read on demand after takeField
+	private boolean valuePending;
+	private long longValue;
+	private double doubleValue;
+	private @Null Object objectValue;
+
+	// Will not close result set, plan must match result set columns
+	ResultIn(ResultSet results, ResultPlan plan) {
+		this(results, plan, null);
+	}
+
+	private ResultIn(ResultSet results, ResultPlan plan, @Null int[] columns) {
 		this.results = results;
-		var meta = results.getMetaData();
-		columnCount = meta.getColumnCount();
-
-		names = new String[columnCount];
-		values = new Object[columnCount];
-		types = new int[columnCount];
-		indexes = new int[columnCount];
-		Arrays.fill(indexes, NameIndex.UNKNOWN);
-
-		for (int i = 0; i < columnCount; i++) {
-			names[i] = meta.getColumnLabel(i + 1);
-			types[i] = meta.getColumnType(i + 1);
+		this.plan = plan;
+		this.columns = columns;
+		columnCount = plan.names.length;
+		names = plan.names;
+		types = plan.types;
+		readers = plan.readers;
+		indexes = plan.unmapped();
+	}
+
+	/**
+	 * View of some columns of the current row as a struct, the plan is for these columns only,
+	 * having their own names. View never advances rows, this input does. Use
+	 * {@link #atCurrentRow()} to begin reading the view at each row.
+	 * @param columns result set column numbers (one-based) corresponding to the plan columns
+	 */
+	ResultIn rowView(ResultPlan plan, int[] columns) {
+		assert plan.names.length == columns.length;
+		return new ResultIn(results, plan, columns);
+	}
+
+	/** Positions view at the beginning of the current row. */
+	ResultIn atCurrentRow() {
+		assert columns != null;
+		atColumn = -1;
+		valuePending = false;
+		objectValue = null;
+		peek = Token.Struct;
+		return this;
+	}
+
+	/** If all columns of view are SQL {@code NULL} in the current row, as in outer joins. */
+	boolean isNullRow() {
+		assert columns != null;
+		try {
+			for (int column : columns) {
+				if (results.getObject(column) != null) return false;
+			}
+			return true;
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
 		}
 	}
 
+	ResultPlan plan() {
+		return plan;
+	}
+
 	private @Null NameIndex currentNames;
 
 	private void configureNames(NameIndex names) {
 		// check by reference if it's the same index we've already initialized
 		if (currentNames != names) {
 			currentNames = names;
-			for (int i = 0; i < indexes.length; i++) {
-				String columnLabel = this.names[i];
-				// first trying to map verbatim column names
-				int index = names.index(columnLabel);
-				if (index == NameIndex.UNKNOWN) {
-					index = names.index(snakeToCamel(columnLabel));
-				}
-				indexes[i] = index;
-			}
+			indexes = plan.indexes(names);
 		}
 	}
 
-	// should we use CaseFormat (from common)
-	private static String snakeToCamel(String columnLabel) {
-		var builder = new StringBuilder();
-		boolean capitalizeNext = false;
-		for (int i = 0; i < columnLabel.length(); i++) {
-			char c = columnLabel.charAt(i);
-			c = capitalizeNext
-					? Character.toUpperCase(c)
-					: Character.toLowerCase(c);
-
-			if (c == '_') {
-				capitalizeNext = true;
-				// skipping _ character
-			} else {
-				capitalizeNext = false;
-				builder.append(c);
-			}
-		}
-		return builder.toString();
-	}
-
 	@Override
 	public Token peek() throws IOException {
+		if (valuePending) readValue();
 		return peek;
 	}
 
@@ -113,6 +135,8 @@ public class ResultIn extends In {
 	}
 
 	private void advanceColumn() {
+		valuePending = false;
+		objectValue = null;
 		atColumn++;
 		if (atColumn >= columnCount) {
 			atColumn = -1;
@@ -122,14 +146,53 @@ public class ResultIn extends In {
 		}
 	}
 
-	private void typeValue() {
-		currentType = types[atColumn];
-		Object v = values[atColumn];
+	private int column() {
+		return columns != null ? columns[atColumn] : atColumn + 1;
+	}
+
+	private void readValue() {
+		valuePending = false;
+		int column = column();
+		try {
+			switch (readers[atColumn]) {
+			case ResultPlan.READ_INT -> {
+				longValue = results.getInt(column);
+				peek = results.wasNull() ? Token.Null : Token.Int;
+			}
+			case ResultPlan.READ_LONG -> {
+				longValue = results.getLong(column);
+				peek = results.wasNull() ? Token.Null : Token.Long;
+			}
+			case ResultPlan.READ_DOUBLE -> {
+				doubleValue = results.getDouble(column);
+				peek = results.wasNull() ? Token.Null : Token.Float;
+			}
+			case ResultPlan.READ_BOOLEAN -> {
+				boolean b = results.getBoolean(column);
+				peek = results.wasNull() ? Token.Null : b ? Token.True : Token.False;
+			}
+			case ResultPlan.READ_STRING -> {
+				objectValue = results.getString(column);
+				peek = objectValue == null ? Token.Null : Token.String;
+			}
+			default -> typeObject(results.getObject(column));
+			}
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private void typeObject(@Null Object v) {
+		objectValue = v;
 		Token peek;
 		if (v == null) peek = Token.Null;
-		else if (v instanceof Integer) peek = Token.Int;
-		else if (v instanceof Long) peek = Token.Long;
-		else if (v instanceof Number) peek = Token.Float;
+		else if (v instanceof Integer i) {
+			peek = Token.Int;
+			longValue = i;
+		} else if (v instanceof Long l) {
+			peek = Token.Long;
+			longValue = l;
+		} else if (v instanceof Number) peek = Token.Float;
 		else if (v instanceof Boolean b) peek = b == Boolean.TRUE ? Token.True : Token.False;
 		else if (v instanceof String s) peek = Token.String;
 		else peek = Token.Special;
@@ -137,12 +200,27 @@ public class ResultIn extends In {
 		this.peek = peek;
 	}
 
+	/** Current value as object, boxing primitive values if these were read using typed getters. */
+	private @Null Object value() {
+		if (valuePending) readValue();
+		if (objectValue != null) return objectValue;
+		return switch (peek) {
+			case Int -> (int) longValue;
+			case Long -> longValue;
+			case Float -> doubleValue;
+			case True -> true;
+			case False -> false;
+			default -> null;
+		};
+	}
+
 	@Override
 	public int takeField() throws IOException {
 		if (peek != Token.Field) unexpected("not at column");
 		int field = indexes[atColumn];
 		currentName = names[atColumn];
-		typeValue();
+		currentType = types[atColumn];
+		valuePending = true;
 		return field;
 	}
 
@@ -159,10 +237,18 @@ public class ResultIn extends In {
 		return currentName;
 	}
 
+	/** Number of rows read so far. */
+	int rowsRead() {
+		return atRow + 1;
+	}
+
 	@Override
 	public void endStruct() throws IOException {
 		if (peek != Token.StructEnd) unexpected("not at the end of the row");
-		advanceRow();
+		if (columns != null) {
+			// view of the current row, rows are advanced by the outer input
+			peek = Token.End;
+		} else advanceRow();
 	}
 
 	private void advanceRow() {
@@ -173,9 +259,6 @@ public class ResultIn extends In {
 			} else {
 				atRow++;
 				peek = Token.Struct;
-				for (int i = 0; i < columnCount; i++) {
-					values[i] = results.getObject(i + 1);
-				}
 			}
 		} catch (SQLException ex) {
 			throw new RuntimeException(ex);
@@ -184,33 +267,101 @@ public class ResultIn extends In {
 
 	@Override
 	public String takeString() throws IOException {
-		if (!peek.isScalar()) {
+		if (!peek().isScalar()) {
 			unexpected("cannot be read as a string");
 			skip();
 			return "";
 		}
-		String s = String.valueOf(values[atColumn]);
+		String s = switch (peek) {
+			case Int, Long -> objectValue == null ? String.valueOf(longValue) : objectValue.toString();
+			case Float -> objectValue == null ? String.valueOf(doubleValue) : objectValue.toString();
+			default -> String.valueOf(value());
+		};
 		advanceColumn();
 		return s;
 	}
 
-	public Object takeSpecial() {
-		Object v = values[atColumn];
+	/**
+	 * Takes column value as character stream, reading it directly from the result set,
+	 * so large text and JSON values are not read as strings first. Stream is valid until the
+	 * next column or row is read.
+	 * @return character stream or {@code null} if column is SQL {@code NULL}
+	 */
+	public @Null Reader takeCharacterStream() throws IOException {
+		if (!valuePending) {
+			// value was already read, peeked
+			@Null Object v = value();
+			advanceColumn();
+			return v != null ? new StringReader(v.toString()) : null;
+		}
+		valuePending = false;
+		try {
+			@Null Reader reader = results.getCharacterStream(column());
+			advanceColumn();
+			return reader;
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Takes column value as binary stream, reading it directly from the result set,
+	 * for large binary values. Stream is valid until the next column or row is read.
+	 * @return binary stream or {@code null} if column is SQL {@code NULL}
+	 */
+	public @Null InputStream takeBinaryStream() throws IOException {
+		if (!valuePending) {
+			// value was already read, peeked
+			@Null Object v = value();
+			advanceColumn();
+			if (v == null) return null;
+			if (v instanceof byte[] bytes) return new ByteArrayInputStream(bytes);
+			throw new IOException("Column value is not binary at " + path());
+		}
+		valuePending = false;
+		try {
+			@Null InputStream stream = results.getBinaryStream(column());
+			advanceColumn();
+			return stream;
+		} catch (SQLException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/** Reads column as character stream, {@code null} value is read as "null" string. */
+	@Override
+	public Reader takeReader() throws IOException {
+		@Null Reader reader = takeCharacterStream();
+		return reader != null ? reader : new StringReader("null");
+	}
+
+	public @Null Object takeSpecial() {
+		if (valuePending) {
+			// read as is, no typed getters
+			valuePending = false;
+			try {
+				objectValue = results.getObject(column());
+			} catch (SQLException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		@Null Object v = value();
 		advanceColumn();
 		return v;
 	}
 
 	@Override
 	public void takeNull() throws IOException {
-		if (peek != Token.Null) unexpected("not at null value");
+		if (peek() != Token.Null) unexpected("not at null value");
 		advanceColumn();
 	}
 
 	@Override
 	public long takeLong() throws IOException {
-		long l = switch (peek) { // @formatter:off
-		case Int, Long, Float -> ((Number)values[atColumn]).longValue();
-			case String -> Long.parseLong((String)values[atColumn]);
+		long l = switch (peek()) { // @formatter:off
+			case Int, Long -> longValue;
+			case Float -> objectValue instanceof Number n ? n.longValue() : (long) doubleValue;
+			case String -> Long.parseLong((String) objectValue);
 			default -> unexpected("not at int value", Long.MIN_VALUE);
 		};
 		advanceColumn();
@@ -219,9 +370,10 @@ public class ResultIn extends In {
 
 	@Override
 	public int takeInt() throws IOException {
-		int i = switch (peek) {
-			case Int, Long, Float -> ((Number)values[atColumn]).intValue();
-			case String -> Integer.parseInt((String)values[atColumn]);
+		int i = switch (peek()) {
+			case Int, Long -> (int) longValue;
+			case Float -> objectValue instanceof Number n ? n.intValue() : (int) doubleValue;
+			case String -> Integer.parseInt((String) objectValue);
 			default -> unexpected("not at int value", Integer.MIN_VALUE);
 		};
 		advanceColumn();
@@ -230,9 +382,10 @@ public class ResultIn extends In {
 
 	@Override
 	public double takeDouble() throws IOException {
-		double d = switch (peek) {
-			case Int, Long, Float -> ((Number) values[atColumn]).doubleValue();
-			case String -> Double.parseDouble((String) values[atColumn]);
+		double d = switch (peek()) {
+			case Int, Long -> longValue;
+			case Float -> objectValue instanceof Number n ? n.doubleValue() : doubleValue;
+			case String -> Double.parseDouble((String) objectValue);
 			default -> unexpected("not at double value", Double.NaN);
 		};
 		advanceColumn();
@@ -241,12 +394,13 @@ public class ResultIn extends In {
 
 	@Override
 	public boolean takeBoolean() throws IOException {
-		boolean b = switch (peek) {
-			case True -> true;//(boolean) values[atColumn]
+		boolean b = switch (peek()) {
+			case True -> true;
 			case False -> false;
-			case Int, Long, Float -> ((Number) values[atColumn]).intValue() != 0;
-			case String -> Boolean.parseBoolean((String) values[atColumn]);
-			default -> values[atColumn] != null;
+			case Int, Long -> (int) longValue != 0;
+			case Float -> (objectValue instanceof Number n ? n.intValue() : (int) doubleValue) != 0;
+			case String -> Boolean.parseBoolean((String) objectValue);
+			default -> value() != null;
 		};
 		advanceColumn();
 		return b;
@@ -254,7 +408,10 @@ public class ResultIn extends In {
 
 	@Override
 	public void skip() throws IOException {
-		if (peek == Token.Struct) {
+		if (valuePending) {
+			// column value is never read
+			advanceColumn();
+		} else if (peek == Token.Struct) {
 			advanceRow();
 		} else if (peek == Token.Array) {
 			peek = Token.End;
@@ -275,7 +432,7 @@ public class ResultIn extends In {
 	public boolean hasNext() {
 		// field (column) within struct (row)
 		// or struct (row) within array (of results)
-		return peek == Token.Field || peek == Token.Struct;
+		return !valuePending && (peek == Token.Field || peek == Token.Struct);
 	}
 
 	// TODO revise as a whole hierarchy
@@ -0,0 +1,160 @@
+package io.immutables.regres;
+
+import io.immutables.codec.NameIndex;
+import io.immutables.meta.Null;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column binding plan for the shape of result set: column labels, SQL types and readers
+ * for them, and mappings of columns to the slots of name indexes (record components).
+ * Plan is immutable, except for name mappings which are computed once per name index,
+ * so it is safely shared between threads and reused by repeated executions of the same query.
+ */
+final class ResultPlan {
+	final String[] names;
+	final int[] types;
+	final byte[] readers;
+	private final int[] unmapped;
+	private final Map<NameIndex, int[]> indexes = new ConcurrentHashMap<>();
+
+	private ResultPlan(String[] names, int[] types) {
+		this.names = names;
+		this.types = types;
+		this.readers = new byte[types.length];
+		for (int i = 0; i < types.length; i++) {
+			readers[i] = readerFor(types[i]);
+		}
+		this.unmapped = new int[names.length];
+		Arrays.fill(unmapped, NameIndex.UNKNOWN);
+	}
+
+	static ResultPlan of(ResultSetMetaData meta) throws SQLException {
+		int columnCount = meta.getColumnCount();
+		var names = new String[columnCount];
+		var types = new int[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names[i] = meta.getColumnLabel(i + 1);
+			types[i] = meta.getColumnType(i + 1);
+		}
+		return new ResultPlan(names, types);
+	}
+
+	/**
+	 * Plan for the subset of columns, having prefix removed from their names.
+	 * @param columns zero-based indexes of columns in this plan
+	 */
+	ResultPlan window(int[] columns, String prefix) {
+		var names = new String[columns.length];
+		var types = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			names[i] = this.names[columns[i]].substring(prefix.length());
+			types[i] = this.types[columns[i]];
+		}
+		return new ResultPlan(names, types);
+	}
+
+	/** Checks that the result set has the same column labels and types. */
+	boolean matches(ResultSetMetaData meta) throws SQLException {
+		if (meta.getColumnCount() != names.length) return false;
+		for (int i = 0; i < names.length; i++) {
+			if (meta.getColumnType(i + 1) != types[i]
+				|| !meta.getColumnLabel(i + 1).equals(names[i])) return false;
+		}
+		return true;
+	}
+
+	/** All columns mapped to {@link NameIndex#UNKNOWN}, shared, do not modify. */
+	int[] unmapped() {
+		return unmapped;
+	}
+
+	/** Columns mapped to the slots of the name index, shared, do not modify. */
+	int[] indexes(NameIndex index) {
+		@Null int[] mapped = indexes.get(index);
+		if (mapped == null) {
+			mapped = mapIndexes(index);
+			// name indexes are normally long-lived and owned by codecs,
+			// but we guard against ones created on the fly
+			if (indexes.size() < MAX_NAME_INDEXES) indexes.putIfAbsent(index, mapped);
+		}
+		return mapped;
+	}
+
+	private int[] mapIndexes(NameIndex index) {
+		var mapped = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			String columnLabel = names[i];
+			// first trying to map verbatim column names
+			int slot = index.index(columnLabel);
+			if (slot == NameIndex.UNKNOWN) {
+				slot = index.index(snakeToCamel(columnLabel));
+			}
+			mapped[i] = slot;
+		}
+		return mapped;
+	}
+
+	// should we use CaseFormat (from common)
+	private static String snakeToCamel(String columnLabel) {
+		var builder = new StringBuilder();
+		boolean capitalizeNext = false;
+		for (int i = 0; i < columnLabel.length(); i++) {
+			char c = columnLabel.charAt(i);
+			c = capitalizeNext
+					? Character.toUpperCase(c)
+					: Character.toLowerCase(c);
+
+			if (c == '_') {
+				capitalizeNext = true;
+				// skipping _ character
+			} else {
+				capitalizeNext = false;
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static byte readerFor(int sqlType) {
+		return switch (sqlType) {
+			case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> READ_INT;
+			case Types.BIGINT -> READ_LONG;
+			case Types.FLOAT, Types.DOUBLE -> READ_DOUBLE;
+			// PostgreSQL driver reports boolean columns as BIT
+			case Types.BOOLEAN, Types.BIT -> READ_BOOLEAN;
+			case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR,
+				Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR -> READ_STRING;
+			// decimals, dates, uuid, json etc are read as objects
+			default -> READ_OBJECT;
+		};
+	}
+
+	/**
+	 * Keeps the plan for the last seen result shape, typically per method, as the same query
+	 * would return the same shape. Plan is rebuilt if shape changes, such as after schema
+	 * changes or for dynamic SQL with different columns.
+	 */
+	static final class Cache {
+		private volatile @Null ResultPlan last;
+
+		ResultPlan plan(ResultSetMetaData meta) throws SQLException {
+			@Null var plan = last;
+			if (plan != null && plan.matches(meta)) return plan;
+			return last = of(meta);
+		}
+	}
+
+	static final byte READ_OBJECT = 0;
+	static final byte READ_INT = 1;
+	static final byte READ_LONG = 2;
+	static final byte READ_DOUBLE = 3;
+	static final byte READ_BOOLEAN = 4;
+	static final byte READ_STRING = 5;
+
+	private static final int MAX_NAME_INDEXES = 16;
+}
@@ -0,0 +1,119 @@
+package io.immutables.regres;
+
+import io.immutables.codec.Codec;
+import io.immutables.codec.In;
+import io.immutables.codec.Out;
+import io.immutables.meta.Null;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily decodes rows of the result set one at a time, so only the current row is held in
+ * memory. Owns result set, statement and connection handle, which are closed when rows are
+ * exhausted, on any failure, or when closed explicitly (when stream is closed). Transaction
+ * began for reading rows on a connection of its own is committed then, or rolled back on
+ * failure, and auto-commit is restored.
+ */
+final class RowIterator implements Iterator<Object>, AutoCloseable {
+	private final ResultSet results;
+	private final PreparedStatement statement;
+	private final ConnectionProvider.Handle handle;
+	private final boolean transaction;
+	private final Codec<Object, In, Out> codec;
+	private final Function<Exception, RuntimeException> refine;
+	private final ResultIn in;
+	private boolean closed;
+	private boolean failed;
+
+	RowIterator(
+		ResultSet results,
+		ResultIn in,
+		PreparedStatement statement,
+		ConnectionProvider.Handle handle,
+		boolean transaction,
+		Codec<Object, In, Out> codec,
+		Function<Exception, RuntimeException> refine) throws IOException {
+		this.results = results;
+		this.statement = statement;
+		this.handle = handle;
+		this.transaction = transaction;
+		this.codec = codec;
+		this.refine = refine;
+		this.in = in;
+		in.beginArray();
+	}
+
+	@Override public boolean hasNext() {
+		if (closed) return false;
+		if (in.hasNext()) return true;
+		close();
+		return false;
+	}
+
+	@Override public @Null Object next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		try {
+			return codec.decode(in);
+		} catch (IOException | RuntimeException e) {
+			var refined = refine.apply(e);
+			failed = true;
+			try {
+				close();
+			} catch (RuntimeException suppressed) {
+				refined.addSuppressed(suppressed);
+			}
+			throw refined;
+		}
+	}
+
+	Stream<Object> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+			.onClose(this::close);
+	}
+
+	/** Closes result set, statement, transaction and handle, can be called many times. */
+	@Override public void close() {
+		if (closed) return;
+		closed = true;
+		@Null Exception exception = null;
+		try {
+			results.close();
+		} catch (SQLException e) {
+			exception = e;
+		}
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			if (exception == null) exception = e;
+			else exception.addSuppressed(e);
+		}
+		if (transaction) {
+			var connection = handle.connection();
+			try {
+				if (failed) connection.rollback();
+				else connection.commit();
+				connection.setAutoCommit(true);
+			} catch (SQLException e) {
+				if (exception == null) exception = e;
+				else exception.addSuppressed(e);
+			}
+		}
+		try {
+			handle.close();
+		} catch (Exception e) {
+			if (exception == null) exception = e;
+			else exception.addSuppressed(e);
+		}
+		if (exception != null) throw refine.apply(exception);
+	}
+}
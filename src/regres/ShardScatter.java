@@ -0,0 +1,86 @@
+package io.immutables.regres;
+
+import io.immutables.codec.Reflect;
+import io.immutables.meta.Null;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges results of {@link SqlAccessor.Scatter} method executed on each shard: sums update
+ * counts, concatenates lists in order of shards or, if merge key is given, merges them
+ * as these are sorted by the key already.
+ */
+final class ShardScatter {
+	private final Type returnType;
+	private final @Null Method mergeKey;
+
+	ShardScatter(Type returnType, @Null Method mergeKey) {
+		this.returnType = returnType;
+		this.mergeKey = mergeKey;
+	}
+
+	@Null Object merge(List<Object> results) {
+		if (returnType == void.class) return null;
+		if (returnType == int.class) {
+			int sum = 0;
+			for (var r : results) sum += (Integer) r;
+			return sum;
+		}
+		if (returnType == long.class) {
+			long sum = 0;
+			for (var r : results) sum += (Long) r;
+			return sum;
+		}
+		int size = 0;
+		for (var r : results) size += ((List<?>) r).size();
+		var merged = new ArrayList<>(size);
+		if (mergeKey == null) {
+			for (var r : results) merged.addAll((List<?>) r);
+		} else {
+			mergeSorted(results, merged);
+		}
+		return Collections.unmodifiableList(merged);
+	}
+
+	private record Head(@Null Object key, int shard, int at) {}
+
+	private void mergeSorted(List<Object> results, List<Object> merged) {
+		assert mergeKey != null;
+		// on equal keys, rows of the lower shard go first, so the merge is stable
+		var heads = new PriorityQueue<Head>((a, b) -> {
+			int c = compareKeys(a.key, b.key);
+			return c != 0 ? c : Integer.compare(a.shard, b.shard);
+		});
+
+		for (int s = 0; s < results.size(); s++) {
+			var rows = (List<?>) results.get(s);
+			if (!rows.isEmpty()) heads.add(head(rows, s, 0));
+		}
+		for (@Null Head h; (h = heads.poll()) != null; ) {
+			var rows = (List<?>) results.get(h.shard);
+			merged.add(rows.get(h.at));
+			if (h.at + 1 < rows.size()) heads.add(head(rows, h.shard, h.at + 1));
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"}) // merge key component is comparable
+	private static int compareKeys(@Null Object a, @Null Object b) {
+		if (a == null) return b == null ? 0 : 1;
+		if (b == null) return -1;
+		return ((Comparable) a).compareTo(b);
+	}
+
+	private Head head(List<?> rows, int shard, int at) {
+		assert mergeKey != null;
+		return new Head(Reflect.getValue(mergeKey, rows.get(at)), shard, at);
+	}
+
+	@Override public String toString() {
+		return ShardScatter.class.getSimpleName() + "(" + returnType
+			+ (mergeKey != null ? ", mergeBy=" + mergeKey.getName() : "") + ")";
+	}
+}
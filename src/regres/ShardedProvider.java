@@ -0,0 +1,154 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Routes accessor methods to one of the identical database shards, each shard having its own
+ * connection provider (usually {@link ConnectionPool}). Shard is selected by the value of
+ * {@link SqlAccessor.ShardKey} parameter using {@link ShardFunction}, while
+ * {@link SqlAccessor.Scatter} methods are executed on all shards in parallel, and their
+ * results are merged. Methods having neither are not routed, so connection cannot be obtained
+ * from this provider directly, use {@link #forKey(Object)} or {@link #shard(int)} for that,
+ * for example, to open transaction on a shard, within which accessor methods use the held
+ * connection, except that methods with shard key of another shard, and
+ * {@link SqlAccessor.Scatter} methods, fail with {@link SqlException}.
+ * <p>Use {@link #builder()} to create.
+ */
+public final class ShardedProvider implements ConnectionProvider {
+	private final List<ConnectionProvider> shards;
+	private final ShardFunction function;
+	private final Executor executor;
+
+	private ShardedProvider(Builder builder) {
+		this.shards = List.copyOf(builder.shards);
+		this.function = builder.function;
+		this.executor = builder.executor != null ? builder.executor : defaultExecutor();
+	}
+
+	/** Selects shard index by the key value, given the number of shards. */
+	@FunctionalInterface
+	public interface ShardFunction {
+		int shardOf(Object key, int shards);
+
+		/**
+		 * Shard by hash code of the key, which should be stable across JVMs, as it is for
+		 * strings, boxed primitives, UUIDs and records of these, but not for enums.
+		 */
+		static ShardFunction hash() {
+			return (key, shards) -> Math.floorMod(key.hashCode(), shards);
+		}
+
+		/**
+		 * Shard by ranges of keys, splits are ascending lower bounds of all shards but the first,
+		 * so keys below the first split go to the first shard, and so on.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"}) // keys are to be comparable with splits
+		static ShardFunction ranges(List<? extends Comparable<?>> splits) {
+			var bounds = List.copyOf(splits);
+			return (key, shards) -> {
+				if (bounds.size() != shards - 1) throw new IllegalStateException(
+					"There should be " + (shards - 1) + " range splits for " + shards + " shards");
+				int shard = 0;
+				while (shard < bounds.size() && ((Comparable) bounds.get(shard)).compareTo(key) <= 0) {
+					shard++;
+				}
+				return shard;
+			};
+		}
+	}
+
+	public int size() {
+		return shards.size();
+	}
+
+	public ConnectionProvider shard(int index) {
+		return shards.get(index);
+	}
+
+	/** Shard provider for the key, {@code null} key is not allowed. */
+	public ConnectionProvider forKey(@Null Object key) {
+		if (key == null) throw new IllegalArgumentException("Shard key cannot be null");
+		int index = function.shardOf(key, shards.size());
+		if (index < 0 || index >= shards.size()) throw new IllegalStateException(
+			"Shard function returned " + index + " for " + shards.size() + " shards, key: " + key);
+		return shards.get(index);
+	}
+
+	/** Executor running {@link SqlAccessor.Scatter} queries on shards. */
+	Executor executor() {
+		return executor;
+	}
+
+	/**
+	 * Always fails, as there's no key to select the shard.
+	 * @throws SQLException as shard is not selected
+	 */
+	@Override public Connection get() throws SQLException {
+		throw new SQLException("Shard is not selected. Use @ShardKey parameter or @Scatter method,"
+			+ " or get connection from forKey(key) or shard(index) provider");
+	}
+
+	@Override public String toString() {
+		return ShardedProvider.class.getSimpleName() + "(shards=" + shards.size() + ")";
+	}
+
+	// Virtual threads are preferable for blocking JDBC calls, when running on JDK having them
+	private static Executor defaultExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null);
+		} catch (ReflectiveOperationException noVirtualThreads) {
+			return Executors.newCachedThreadPool(task -> {
+				var thread = new Thread(task, "regres-scatter");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static final class Builder {
+		private final List<ConnectionProvider> shards = new ArrayList<>();
+		private ShardFunction function = ShardFunction.hash();
+		private @Null Executor executor;
+
+		private Builder() {}
+
+		/** Adds shard, shards are numbered in the order of adding. */
+		public Builder add(ConnectionProvider shard) {
+			shards.add(shard);
+			return this;
+		}
+
+		/** Function to select shard by key, defaults to {@link ShardFunction#hash()}. */
+		public Builder function(ShardFunction function) {
+			this.function = function;
+			return this;
+		}
+
+		/**
+		 * Executor to query shards in parallel, defaults to virtual threads, if available,
+		 * or cached pool of daemon threads.
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		public ShardedProvider build() {
+			if (shards.isEmpty()) throw new IllegalStateException("At least one shard required");
+			return new ShardedProvider(this);
+		}
+	}
+}
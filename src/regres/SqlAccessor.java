@@ -16,9 +16,12 @@ public interface SqlAccessor {
 	@Target(ElementType.METHOD)
 	@interface UpdateCount {}
 
-	/** Expects single row to bind to result. */
+	/**
+	 * Expects single row to bind to result. Also applicable to record components
+	 * of {@link ResultSets} result.
+	 */
 	@Retention(RetentionPolicy.RUNTIME)
-	@Target(ElementType.METHOD)
+	@Target({ElementType.METHOD, ElementType.RECORD_COMPONENT})
 	@interface Single {
 		/**
 		 * Marks support for 0..1 rows result. It's hard to reliably detect in environment
@@ -38,9 +41,10 @@ public interface SqlAccessor {
 
 	/**
 	 * Use this annotation when extracting only single column, not the entire result set row.
+	 * Also applicable to record components of {@link ResultSets} result.
 	 */
 	@Retention(RetentionPolicy.RUNTIME)
-	@Target(ElementType.METHOD)
+	@Target({ElementType.METHOD, ElementType.RECORD_COMPONENT})
 	@interface Column {
 		/**
 		 * Column name (column label in result set) to extract. When not empty, this takes
@@ -56,6 +60,166 @@ public interface SqlAccessor {
 		int index() default 0;
 	}
 
+	/**
+	 * Number of rows to fetch from the database at a time when reading result set, a hint
+	 * to the JDBC driver. Mostly useful along with {@link java.util.stream.Stream} or
+	 * {@link java.util.Iterator} return types, which decode rows lazily, one at a time, so that
+	 * large results can be processed in constant memory. PostgreSQL only honours fetch size
+	 * (using cursor) when connection is not in auto-commit mode, so outside of transaction,
+	 * rows are read within transaction on a connection taken for the stream or iterator, which
+	 * is committed when it is exhausted or closed.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface FetchSize {
+		int value();
+	}
+
+	/**
+	 * Decodes record returned by method from multiple result sets produced by a single
+	 * execution of the snippet: each record component, in order of declaration, is decoded from
+	 * the next result set. This allows fetching, for example, a page of rows along with the
+	 * total count, or parent row with its children, in a single round trip to the database.
+	 * Components are decoded the same way as a method return type, and can be annotated with
+	 * {@link Single} and {@link Column}. Update counts in between result sets are skipped.
+	 * <pre>
+	 * record Page(List&lt;Item&gt; items, @Single @Column long total) {}
+	 *
+	 * &#64;ResultSets
+	 * Page itemsPage(int offset, int limit);
+	 * </pre>
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface ResultSets {}
+
+	/**
+	 * Folds rows of one-to-many join into records with nested lists of child records. Rows
+	 * having the same key values are folded into a single record, so rows should be ordered
+	 * by the key. {@code List} components annotated with {@link Spread} are filled with child
+	 * records decoded from columns having the prefix, with the prefix removed from their names.
+	 * Columns without any such prefix are for other components. Children columns which are all
+	 * {@code NULL}, as in outer join without matching rows, are skipped. When there's more than
+	 * one list of children, duplicate children are also skipped as joining these multiplies rows.
+	 * Applicable to records returned as {@code List}, {@code Stream}, {@code Iterator} or
+	 * {@link Single}, streams and iterators give each record as soon as its group is read.
+	 * <pre>
+	 * record Line(int no, String item) {}
+	 * record Order(int id, String customer, &#64;Spread(prefix = "line_") List&lt;Line&gt; lines) {}
+	 *
+	 * &#64;Grouped
+	 * List&lt;Order&gt; orders();
+	 *
+	 * --.orders
+	 * select o.id, o.customer, l.no as line_no, l.item as line_item
+	 * from orders o left join lines l on l.order_id = o.id
+	 * order by o.id, l.no
+	 * </pre>
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Grouped {
+		/** Names of record components being the key, by default, the first component. */
+		String[] key() default {};
+	}
+
+	/**
+	 * Generates implementation of the accessor at compile time, when annotation processor
+	 * {@code io.immutables.regres.processor} is used. Methods and SQL source are validated
+	 * during compilation, and the generated class invokes methods without reflection, binding
+	 * primitive and string parameters using typed setters. Without the processor, the
+	 * reflection proxy is used the same as when the annotation is not present.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	@interface Precompile {}
+
+	/**
+	 * Caches results of the method by argument values, see {@link ResultCache}. Results should
+	 * be immutable as these are shared by callers. Results read while connection is held by the
+	 * calling thread (i.e. within transaction) are not stored, as they might be uncommitted.
+	 * Cache is invalidated by {@link Invalidates} methods of the same accessor.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Cached {
+		/** Maximum number of cached results, least recently used are evicted. */
+		int maxSize() default 1024;
+		/** Time to live of cached results, in seconds. Zero (the default) means no expiration. */
+		long ttlSeconds() default 0;
+		/** Tags to invalidate the cache by, in addition to the method name. */
+		String[] tags() default {};
+	}
+
+	/**
+	 * Invalidates caches of {@link Cached} methods when this method completes, successfully
+	 * or not. Values are names of cached methods or their tags. Only applicable to
+	 * {@link UpdateCount} or void methods.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Invalidates {
+		String[] value();
+	}
+
+	/**
+	 * Coalesces concurrent invocations of a single row write method, such as insert of an audit
+	 * row: writes of callers arriving within a short window are executed together as a single
+	 * batch in one transaction, saving round trip and commit per caller. Each caller gets its own
+	 * update count or error, if batch fails, its writes are retried one by one. Lone caller waits
+	 * for the window, so it only pays off under contention. When connection is held by the
+	 * calling thread (i.e. within transaction), method is executed as usual. Only applicable to
+	 * int, long {@link UpdateCount} or void methods without {@link Batch} parameter, which can
+	 * also return {@code CompletableFuture}, so callers do not wait for the batch.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Coalesce {
+		/** Maximum number of writes in a batch, batch is executed as soon as there are that many. */
+		int maxRows() default 100;
+		/**
+		 * Time to wait for more writes since the oldest pending one, in microseconds. With zero
+		 * only writes arriving while the previous batch is being executed are coalesced.
+		 */
+		long windowMicros() default 1000;
+	}
+
+	/**
+	 * Marks method as read only, so it can be executed on read replica, when accessor is
+	 * created with {@link ReplicatedProvider}. With other connection providers, or within
+	 * transaction, method is executed as usual. Not applicable to {@link UpdateCount} or void
+	 * methods.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Read {}
+
+	/**
+	 * Marks parameter which value selects the shard to execute method on, when accessor is
+	 * created with {@link ShardedProvider}. Value is used as passed to the method, before encoding,
+	 * and cannot be {@code null}. With other connection providers it is a regular parameter.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.PARAMETER)
+	@interface ShardKey {}
+
+	/**
+	 * Executes method on all shards of {@link ShardedProvider} in parallel and merges results:
+	 * lists are concatenated in order of shards, or merged by the key, update counts are summed.
+	 * Only applicable to {@code List}, int, long {@link UpdateCount} or void methods. With other
+	 * connection providers method is executed once, as usual.
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	@interface Scatter {
+		/**
+		 * Name of record component by which rows of each shard are ordered (using SQL
+		 * {@code ORDER BY}), so that merged rows are ordered by it too. Empty (the default)
+		 * means concatenation.
+		 */
+		String mergeBy() default "";
+	}
+
 	/**
 	 * Mark parameter to be used for batching. Other parameters will be reused for each batch
 	 * entry,
@@ -63,10 +227,38 @@ public interface SqlAccessor {
 	 * The presence of this parameter will enable batch execution mode. Result sets are not
 	 * supported
 	 * for batch scripts, only update counts are processed.
+	 * The parameter can also be an {@link java.util.Iterator} or a {@link java.util.stream.Stream},
+	 * elements are consumed lazily, so, along with {@link #chunk()}, large amounts of
+	 * rows can be loaded without holding them all in memory.
 	 */
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target(ElementType.PARAMETER)
-	@interface Batch {}
+	@interface Batch {
+		/**
+		 * Executes batch every given number of rows, instead of adding all rows to a single
+		 * batch. Update counts are combined as if it was a single batch.
+		 * Zero (the default) means no chunking.
+		 */
+		int chunk() default 0;
+		/**
+		 * When connection is in auto-commit mode, each chunk will be executed and committed
+		 * in its own transaction. If failed, the failed chunk is rolled back, but previously
+		 * committed chunks are not. Has no effect if already in transaction.
+		 */
+		boolean chunkTransactions() default false;
+		/**
+		 * Rewrites single row {@code INSERT ... VALUES (...)} statement to insert given number
+		 * of rows at once: {@code VALUES (...), (...), ...}, the remaining rows are inserted
+		 * by additional statement. Placeholders before and after the values group, such as in
+		 * {@code ON CONFLICT} clause, are shared by all rows, and should not differ between
+		 * batch entries. This can greatly improve bulk insert throughput, as it reduces
+		 * the number of statement executions. Update counts are reported per statement,
+		 * not per row, so only sum update count (int, long) or void return types are
+		 * allowed. Zero (the default) means no rewriting.
+		 * {@link #chunk()} still counts rows.
+		 */
+		int valuesRows() default 0;
+	}
 
 	/**
 	 * This can be used to specify parameter name. Under better circumstances those could be
@@ -84,9 +276,11 @@ public interface SqlAccessor {
 	/**
 	 * This parameter object will be spread as if it was marshaled to the attributes,
 	 * and those individual attributes will fill placeholders in SQL template.
+	 * On a {@code List} component of a {@link Grouped} record, marks list of child records,
+	 * which are read from columns having the prefix.
 	 */
 	@Retention(RetentionPolicy.RUNTIME)
-	@Target(ElementType.PARAMETER)
+	@Target({ElementType.PARAMETER, ElementType.RECORD_COMPONENT})
 	@interface Spread {
 		/** This prefix will be added to each attribute placeholder of an object. */
 		String prefix() default "";
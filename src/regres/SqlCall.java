@@ -0,0 +1,40 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+
+/**
+ * Completed SQL invocation as reported to {@link SqlListener}. Timings are split into phases:
+ * preparing statement and binding parameters, executing it, and decoding results. For batches,
+ * binding and execution of chunks interleave and are summed up by phase. For methods streaming
+ * rows, only preparation and execution (until the first result set) are measured, and rows
+ * are not counted, as these are decoded lazily after the method returns.
+ * @param method accessor method as {@code Accessor.method}, or {@code <inline>} for
+ * {@link SqlFactory} statements
+ * @param location source location of the method snippet, as {@code Accessor.sql:line}
+ * @param statements SQL statements as sent to the database
+ * @param prepareNanos time spent preparing statement and binding parameters
+ * @param executeNanos time spent executing statement or batches
+ * @param decodeNanos time spent reading and decoding result set
+ * @param rows number of rows decoded
+ * @param batchEntries number of entries added to batch, zero if not a batch
+ * @param failure exception thrown by invocation, if any
+ */
+public record SqlCall(
+	String method,
+	String location,
+	String statements,
+	long prepareNanos,
+	long executeNanos,
+	long decodeNanos,
+	long rows,
+	long batchEntries,
+	@Null Throwable failure
+) {
+	public long totalNanos() {
+		return prepareNanos + executeNanos + decodeNanos;
+	}
+
+	public boolean failed() {
+		return failure != null;
+	}
+}
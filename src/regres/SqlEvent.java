@@ -0,0 +1,58 @@
+package io.immutables.regres;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("io.immutables.regres.Sql")
+@Label("SQL Invocation")
+@Category({"Immutables", "Regres"})
+@Description("Completed SQL invocation of accessor method or statement")
+@StackTrace(false)
+final class SqlEvent extends Event {
+	@Label("Method")
+	String method;
+
+	@Label("Location")
+	String location;
+
+	@Label("Prepare")
+	@Timespan(Timespan.NANOSECONDS)
+	long prepare;
+
+	@Label("Execute")
+	@Timespan(Timespan.NANOSECONDS)
+	long execute;
+
+	@Label("Decode")
+	@Timespan(Timespan.NANOSECONDS)
+	long decode;
+
+	@Label("Rows")
+	long rows;
+
+	@Label("Batch Entries")
+	long batchEntries;
+
+	@Label("Failure")
+	String failure;
+
+	static void commit(SqlCall call) {
+		var event = new SqlEvent();
+		if (!event.isEnabled()) return;
+		event.method = call.method();
+		event.location = call.location();
+		event.prepare = call.prepareNanos();
+		event.execute = call.executeNanos();
+		event.decode = call.decodeNanos();
+		event.rows = call.rows();
+		event.batchEntries = call.batchEntries();
+		var failure = call.failure();
+		if (failure != null) event.failure = failure.getClass().getName();
+		if (event.shouldCommit()) event.commit();
+	}
+}
@@ -0,0 +1,116 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs SQL access asynchronously on the executor, bounding the number of in-flight tasks,
+ * which should normally not exceed the number of connections available from the
+ * {@link ConnectionProvider}, so share single instance for all accessors using the same
+ * provider. Tasks over the limit are queued without blocking the caller or executor threads.
+ * <p>Each task obtains its own connection on the executor thread. When called while
+ * a connection is already held by the calling thread ({@link ConnectionProvider#handle()},
+ * i.e. within transaction), the task is run synchronously on the calling thread using that
+ * connection, as connections cannot be shared between concurrent tasks, and the returned
+ * future is already completed.
+ */
+public final class SqlExecutor {
+	private final Executor executor;
+	private final Semaphore permits;
+	private final Queue<Task<?>> pending = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param executor executor to run SQL access on, these are blocking JDBC calls
+	 * @param maxInFlight maximum number of tasks running at the same time
+	 */
+	public SqlExecutor(Executor executor, int maxInFlight) {
+		if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive");
+		this.executor = executor;
+		this.permits = new Semaphore(maxInFlight);
+	}
+
+	/** Runs task asynchronously, or in place if connection is held by current thread. */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		var future = new CompletableFuture<T>();
+		if (ConnectionHandle.isOpened()) {
+			new Task<>(future, task).run();
+			return future;
+		}
+		pending.add(new Task<>(future, task));
+		drain();
+		return future;
+	}
+
+	/**
+	 * Runs independent queries concurrently, waits for all of them to complete,
+	 * and returns results in the same order.
+	 * @throws RuntimeException first failure, others are added as suppressed
+	 */
+	public <T> List<T> all(List<? extends Supplier<? extends T>> queries) {
+		var futures = new ArrayList<CompletableFuture<? extends T>>(queries.size());
+		for (var query : queries) {
+			futures.add(submit(query::get));
+		}
+		var results = new ArrayList<T>(futures.size());
+		@Null RuntimeException failure = null;
+		for (var f : futures) {
+			try {
+				results.add(f.join());
+			} catch (CompletionException e) {
+				var cause = e.getCause() instanceof RuntimeException r ? r : e;
+				if (failure == null) failure = cause;
+				else failure.addSuppressed(cause);
+			}
+		}
+		if (failure != null) throw failure;
+		return results;
+	}
+
+	private void drain() {
+		while (!pending.isEmpty() && permits.tryAcquire()) {
+			@Null Task<?> task = pending.poll();
+			if (task == null) {
+				permits.release();
+				continue;
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						permits.release();
+						drain();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				permits.release();
+				task.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private record Task<T>(CompletableFuture<T> future, Callable<T> callable) {
+		void run() {
+			try {
+				future.complete(callable.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	@Override public String toString() {
+		return SqlExecutor.class.getSimpleName()
+			+ "(available=" + permits.availablePermits() + ", pending=" + pending.size() + ")";
+	}
+}
@@ -13,6 +13,7 @@ import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 import static io.immutables.regres.IdentifierPatterns.*;
 import static java.util.Objects.requireNonNull;
 
@@ -25,6 +26,10 @@ public interface SqlFactory {
 
 	<T> T transaction(Supplier<T> inTransaction);
 
+	/**
+	 * Runs read only transaction, which uses read replica if factory is created with
+	 * {@link ReplicatedProvider}.
+	 */
 	<T> T readonly(Supplier<T> inTransaction);
 
 	default void transaction(Runnable inTransaction) {
@@ -44,9 +49,21 @@ public interface SqlFactory {
 
 	ConnectionProvider.Handle handle() throws SQLException;
 
+	/**
+	 * Runs independent queries, concurrently if factory is created with
+	 * {@link SqlExecutor}, otherwise one after another, and returns results in order.
+	 * Within transaction, these are always run on current thread using its connection.
+	 */
+	default <T> List<T> concurrently(List<? extends Supplier<? extends T>> queries) {
+		var results = new ArrayList<T>(queries.size());
+		for (var q : queries) results.add(q.get());
+		return results;
+	}
+
 	final class SqlStatement {
 		private final Codec.Resolver codecs;
 		private final ConnectionProvider provider;
+		private final @Null SqlListener listener;
 
 		private final Source.Buffer buffer = new Source.Buffer();
 		private boolean wasLexem;
@@ -56,12 +73,16 @@ public interface SqlFactory {
 
 		private int unnamedParameterCounter;
 		private int batchIndex = ABSENT;
+		private int fetchSize;
+		private int batchChunk;
 
 		public final Parameters params = new Parameters();
 
-		SqlStatement(Codec.Resolver codecs, ConnectionProvider provider) {
+		SqlStatement(
+			Codec.Resolver codecs, ConnectionProvider provider, @Null SqlListener listener) {
 			this.codecs = codecs;
 			this.provider = provider;
+			this.listener = listener;
 		}
 
 		/**
@@ -83,6 +104,26 @@ public interface SqlFactory {
 			return this;
 		}
 
+		/**
+		 * Sets number of rows to fetch at a time when reading results.
+		 * @see SqlAccessor.FetchSize
+		 */
+		public SqlStatement fetchSize(int rows) {
+			if (rows < 0) throw new IllegalArgumentException("fetchSize cannot be negative");
+			this.fetchSize = rows;
+			return this;
+		}
+
+		/**
+		 * Executes batch every given number of rows.
+		 * @see SqlAccessor.Batch#chunk()
+		 */
+		public SqlStatement batchChunk(int rows) {
+			if (rows < 0) throw new IllegalArgumentException("batchChunk cannot be negative");
+			this.batchChunk = rows;
+			return this;
+		}
+
 		public SqlStatement params(Consumer<Parameters> parameterBinder) {
 			parameterBinder.accept(params);
 			return this;
@@ -124,6 +165,29 @@ public interface SqlFactory {
 			return sql("in (").separating(", ", values, (v, p) -> p.next(v)).sql(")");
 		}
 
+		/**
+		 * Appends {@code = any(:p)} with values bound as a single SQL array parameter. Unlike
+		 * {@link #in(Collection)}, statement text is the same regardless of the number of values,
+		 * so prepared statements and query plans can be reused. Element type is taken from the
+		 * first value, use {@link #any(Collection, Class)} if values might be empty.
+		 */
+		public SqlStatement any(Collection<?> values) {
+			var first = values.stream().findFirst().orElseThrow(() -> new IllegalArgumentException(
+				"Cannot determine element type of empty values, use any(values, elementType)"));
+			@SuppressWarnings("unchecked") // the type of the first element is the type of elements
+			var elementType = (Class<Object>) first.getClass();
+			return any(values, elementType);
+		}
+
+		/**
+		 * Appends {@code = any(:p)} with values bound as a single SQL array parameter of
+		 * the element type, see {@link #any(Collection)}.
+		 */
+		public <V> SqlStatement any(Collection<? extends V> values, Class<V> elementType) {
+			var parameter = params.next(List.copyOf(values)).parameterizedType(List.class, elementType);
+			return sql(" = any(").sql(parameter).sql(")");
+		}
+
 		public <T> SqlStatement separating(
 			CharSequence separator,
 			Collection<T> elements,
@@ -263,6 +327,8 @@ public interface SqlFactory {
 			var builder = new MethodProfile.Builder();
 			builder.name = methodName;
 			builder.batchParameter = batchIndex;
+			builder.fetchSize = fetchSize;
+			builder.batchChunk = batchChunk;
 
 			switch (mode) {
 			case Update -> {
@@ -292,6 +358,12 @@ public interface SqlFactory {
 				builder.returnTypeCodec = codecs.resolve(parameterized, JdbcMedium.Internal)
 					.orElseThrow(() -> noCodecFor(returnType));
 			}
+			case Stream -> {
+				builder.returnType = Types.newParameterized(Stream.class, returnType);
+				builder.streamsRows = true;
+				builder.returnTypeCodec = codecs.resolve(returnType, JdbcMedium.Internal)
+					.orElseThrow(() -> noCodecFor(returnType));
+			}
 			}
 
 			profileParameters(codecs, builder);
@@ -300,7 +372,7 @@ public interface SqlFactory {
 
 			try {
 				return Regresql.invokeSqlSnippet(provider, /*no reflective method*/null,
-					source, snippet, profile, collectArguments());
+					source, snippet, profile, collectArguments(), listener);
 			} catch (RuntimeException e) {
 				throw e;
 			} catch (IOException e) {
@@ -366,6 +438,21 @@ public interface SqlFactory {
 			return (List<T>) result;
 		}
 
+		public <T> Stream<T> stream(Class<T> type) {
+			return stream((Type) type);
+		}
+
+		/**
+		 * Rows are decoded lazily while stream is consumed, the stream holds statement and
+		 * connection until closed, so it should be used in try-with-resources.
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> Stream<T> stream(Type type) {
+			var result = execute(ExpectedResult.Stream, type);
+			assert result != null;
+			return (Stream<T>) result;
+		}
+
 		public <T> T single(Class<T> type) {
 			return single((Type) type);
 		}
@@ -0,0 +1,29 @@
+package io.immutables.regres;
+
+/**
+ * Receives completed SQL invocations of accessor methods and {@link SqlFactory} statements,
+ * along with timings of their phases. Called synchronously on the invoking thread, so
+ * listener should be fast and should not throw. When no listener is set, nothing is
+ * measured or allocated.
+ * @see SqlMetrics
+ */
+@FunctionalInterface
+public interface SqlListener {
+	void completed(SqlCall call);
+
+	/** Notifies this and then other listener. */
+	default SqlListener and(SqlListener other) {
+		return call -> {
+			completed(call);
+			other.completed(call);
+		};
+	}
+
+	/**
+	 * Listener which commits JFR events (named {@code io.immutables.regres.Sql})
+	 * for calls, when events are enabled in a recording.
+	 */
+	static SqlListener jfr() {
+		return SqlEvent::commit;
+	}
+}
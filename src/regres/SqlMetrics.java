@@ -0,0 +1,217 @@
+package io.immutables.regres;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates per-method metrics of SQL invocations: counts of invocations and failures,
+ * rows decoded, batch entries and latency histograms for each phase of invocation.
+ * Calls taking longer than a threshold are retained (the most recent ones) for inspection.
+ * Use as {@link SqlListener} when creating accessors or factories, and take
+ * {@link #snapshot()} to read metrics. Recording is lock-free, except for slow calls.
+ */
+public final class SqlMetrics implements SqlListener {
+	private final Map<String, Recorder> methods = new ConcurrentHashMap<>();
+	private final long slowNanos;
+	private final int slowRetained;
+	private final ArrayDeque<SqlCall> slowCalls = new ArrayDeque<>();
+
+	/** Metrics without slow calls capture. */
+	public SqlMetrics() {
+		this(Duration.ZERO, 0);
+	}
+
+	/**
+	 * @param slowThreshold calls taking this long or longer are captured
+	 * @param slowRetained maximum number of most recent slow calls retained
+	 */
+	public SqlMetrics(Duration slowThreshold, int slowRetained) {
+		if (slowRetained < 0) throw new IllegalArgumentException("slowRetained cannot be negative");
+		this.slowNanos = slowThreshold.toNanos();
+		this.slowRetained = slowRetained;
+	}
+
+	@Override public void completed(SqlCall call) {
+		methods.computeIfAbsent(call.method(), k -> new Recorder()).record(call);
+
+		if (slowRetained > 0 && call.totalNanos() >= slowNanos) {
+			synchronized (slowCalls) {
+				if (slowCalls.size() == slowRetained) slowCalls.removeFirst();
+				slowCalls.addLast(call);
+			}
+		}
+	}
+
+	/** Current metrics by method, sorted by method name. */
+	public Map<String, MethodMetrics> snapshot() {
+		var snapshot = new TreeMap<String, MethodMetrics>();
+		methods.forEach((method, recorder) -> snapshot.put(method, recorder.snapshot(method)));
+		return snapshot;
+	}
+
+	/** Most recent calls which took longer than the threshold, oldest first. */
+	public List<SqlCall> slowCalls() {
+		synchronized (slowCalls) {
+			return List.copyOf(slowCalls);
+		}
+	}
+
+	/** Clears all metrics and slow calls. */
+	public void reset() {
+		methods.clear();
+		synchronized (slowCalls) {
+			slowCalls.clear();
+		}
+	}
+
+	@Override public String toString() {
+		return SqlMetrics.class.getSimpleName() + snapshot().values();
+	}
+
+	/**
+	 * Metrics of a method.
+	 * @param batchEntries total number of entries added to batches
+	 */
+	public record MethodMetrics(
+		String method,
+		long invocations,
+		long failures,
+		long rows,
+		long batchEntries,
+		Histogram prepare,
+		Histogram execute,
+		Histogram decode,
+		Histogram total
+	) {}
+
+	/**
+	 * Latency histogram with power-of-two buckets: bucket {@code i} counts durations
+	 * in range {@code [2^(i-1), 2^i)} nanoseconds, bucket 0 counts zero durations.
+	 */
+	public static final class Histogram {
+		private final long[] buckets;
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+
+		private Histogram(long[] buckets, long count, long totalNanos, long maxNanos) {
+			this.buckets = buckets;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long totalNanos() {
+			return totalNanos;
+		}
+
+		public long maxNanos() {
+			return maxNanos;
+		}
+
+		public long meanNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		/** Count in bucket, see {@link Histogram} for bucket ranges. */
+		public long bucket(int index) {
+			return buckets[index];
+		}
+
+		/**
+		 * Approximate percentile, upper bound of the bucket where it falls,
+		 * but not greater than the maximum recorded duration.
+		 * @param percentile from 0 to 100
+		 */
+		public long percentileNanos(double percentile) {
+			if (count == 0) return 0;
+			long rank = (long) Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets[i];
+				if (seen >= rank) return Math.min(maxNanos, i == 0 ? 0 : (1L << i) - 1);
+			}
+			return maxNanos;
+		}
+
+		@Override public String toString() {
+			return "(count=" + count
+				+ ", mean=" + meanNanos()
+				+ "ns, p99=" + percentileNanos(99)
+				+ "ns, max=" + maxNanos + "ns)";
+		}
+	}
+
+	private static final class Recorder {
+		final LongAdder invocations = new LongAdder();
+		final LongAdder failures = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LongAdder batchEntries = new LongAdder();
+		final Latencies prepare = new Latencies();
+		final Latencies execute = new Latencies();
+		final Latencies decode = new Latencies();
+		final Latencies total = new Latencies();
+
+		void record(SqlCall call) {
+			invocations.increment();
+			if (call.failed()) failures.increment();
+			if (call.rows() > 0) rows.add(call.rows());
+			if (call.batchEntries() > 0) batchEntries.add(call.batchEntries());
+			prepare.record(call.prepareNanos());
+			execute.record(call.executeNanos());
+			decode.record(call.decodeNanos());
+			total.record(call.totalNanos());
+		}
+
+		MethodMetrics snapshot(String method) {
+			return new MethodMetrics(method,
+				invocations.sum(),
+				failures.sum(),
+				rows.sum(),
+				batchEntries.sum(),
+				prepare.snapshot(),
+				execute.snapshot(),
+				decode.snapshot(),
+				total.snapshot());
+		}
+	}
+
+	private static final class Latencies {
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		final LongAdder totalNanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+		void record(long nanos) {
+			buckets.incrementAndGet(bucketOf(nanos));
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+		}
+
+		Histogram snapshot() {
+			var counts = new long[BUCKETS];
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += counts[i] = buckets.get(i);
+			}
+			return new Histogram(counts, count, totalNanos.sum(), maxNanos.get());
+		}
+	}
+
+	private static int bucketOf(long nanos) {
+		return nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/** Number of histogram buckets: zero plus one per bit of positive long. */
+	public static final int BUCKETS = 64;
+}
@@ -0,0 +1,213 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection provider which keeps prepared statements open per connection, so that repeated
+ * invocations of the same SQL on the same connection skip statement parsing and planning.
+ * Statements are cached by SQL text in LRU order, up to a maximum per connection, evicted ones
+ * are closed. Statements stay cached while connection is recycled and borrowed again, as it
+ * is with {@link ConnectionPool}, and are dropped once the connection is closed: statements
+ * of a connection closed by recycle itself are removed right away, and when a new connection
+ * comes in (which is rare once the pool is warm), statements of all connections found closed,
+ * such as discarded by the pool, are removed. The cache is found by accessors even if wrapped
+ * by another provider, see {@link ConnectionProvider#unwrap(Class)}.
+ * <p>Use {@link ConnectionProvider#withStatementCache(int)} to create.
+ */
+public final class StatementCache implements ConnectionProvider {
+	private final ConnectionProvider provider;
+	private final int maxSize;
+	private final Map<Connection, Statements> connections;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	StatementCache(ConnectionProvider provider, int maxSize) {
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+		this.provider = provider;
+		this.maxSize = maxSize;
+		this.connections = new ConcurrentHashMap<>();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	private StatementCache(StatementCache cache, ConnectionProvider provider) {
+		this.provider = provider;
+		this.maxSize = cache.maxSize;
+		this.connections = cache.connections;
+		this.hits = cache.hits;
+		this.misses = cache.misses;
+		this.evictions = cache.evictions;
+	}
+
+	/**
+	 * Cache sharing statements (and stats) with this one, but getting connections from
+	 * another provider. Used when connections are routed to a provider this cache wraps,
+	 * such as a replica or a shard.
+	 */
+	StatementCache over(ConnectionProvider provider) {
+		return new StatementCache(this, provider);
+	}
+
+	@Override public <P extends ConnectionProvider> @Null P unwrap(Class<P> type) {
+		return type.isInstance(this) ? type.cast(this) : provider.unwrap(type);
+	}
+
+	@Override public Connection get() throws SQLException {
+		return provider.get();
+	}
+
+	@Override public void recycle(Connection c) throws SQLException {
+		try {
+			provider.recycle(c);
+		} finally {
+			if (isClosed(c)) evict(c);
+		}
+	}
+
+	/** Removes statements of closed connections, these are closed along with connection. */
+	private void evictClosed() {
+		for (var c : connections.keySet()) {
+			if (isClosed(c)) evict(c);
+		}
+	}
+
+	private void evict(Connection c) {
+		@Null var statements = connections.remove(c);
+		if (statements != null) {
+			try {
+				statements.closeAll();
+			} catch (SQLException ignored) {
+				// statements of closed connection are closed anyway
+			}
+		}
+	}
+
+	private static boolean isClosed(Connection c) {
+		try {
+			return c.isClosed();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	/** Closes and removes all cached statements for connection. */
+	public void invalidate(Connection c) throws SQLException {
+		@Null var statements = connections.remove(c);
+		if (statements != null) statements.closeAll();
+	}
+
+	/**
+	 * Takes statement for exclusive use, either cached or newly prepared,
+	 * should be returned via {@link #release}.
+	 */
+	PreparedStatement take(Connection c, String sql) throws SQLException {
+		@Null var statements = connections.get(c);
+		if (statements == null) {
+			// new connection, likely replacing closed ones
+			evictClosed();
+			statements = connections.computeIfAbsent(c, k -> new Statements());
+		}
+		@Null PreparedStatement statement;
+		synchronized (statements) {
+			statement = statements.bySql.remove(sql);
+		}
+		if (statement != null && !statement.isClosed()) {
+			hits.increment();
+			return statement;
+		}
+		misses.increment();
+		return c.prepareStatement(sql);
+	}
+
+	/** Returns statement to the cache after use, closes it if it cannot be cached. */
+	void release(Connection c, String sql, PreparedStatement statement) throws SQLException {
+		@Null var statements = connections.get(c);
+		boolean cached = false;
+		if (statements != null) {
+			statement.clearParameters();
+			synchronized (statements) {
+				cached = statements.cache(sql, statement);
+			}
+		}
+		// connection was invalidated or same statement was already returned
+		// by another (nested) use while this one was taken
+		if (!cached) statement.close();
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	@Override public String toString() {
+		return StatementCache.class.getSimpleName()
+			+ "(maxSize=" + maxSize
+			+ ", connections=" + connections.size()
+			+ ", hits=" + hits
+			+ ", misses=" + misses
+			+ ", evictions=" + evictions + ")";
+	}
+
+	// guarded by its own monitor
+	private final class Statements {
+		// access order LRU
+		final Map<String, PreparedStatement> bySql = new LinkedHashMap<>(16, 0.75f, true);
+		boolean invalidated;
+
+		/** Caches statement, unless invalidated or already having one for the SQL. */
+		boolean cache(String sql, PreparedStatement statement) {
+			assert Thread.holdsLock(this);
+			if (invalidated || bySql.putIfAbsent(sql, statement) != null) return false;
+			if (bySql.size() > maxSize) {
+				var eldest = bySql.values().iterator();
+				closeQuietly(eldest.next());
+				eldest.remove();
+				evictions.increment();
+			}
+			return true;
+		}
+
+		void closeAll() throws SQLException {
+			@Null SQLException exception = null;
+			synchronized (this) {
+				invalidated = true;
+				for (var s : bySql.values()) {
+					try {
+						s.close();
+					} catch (SQLException e) {
+						if (exception == null) exception = e;
+						else exception.addSuppressed(e);
+					}
+				}
+				bySql.clear();
+			}
+			if (exception != null) throw exception;
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException ignored) {
+			// evicted statement is of no use anyway,
+			// connection-level problems will surface on next use
+		}
+	}
+}
@@ -5,34 +5,84 @@ import io.immutables.codec.Out;
 import io.immutables.meta.Late;
 import io.immutables.meta.Null;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import static io.immutables.regres.Exceptions.methodLine;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Collects parameter values directly into the positions of statement placeholders
+ * as planned by {@link BindingPlan}. Collections and arrays of scalars are bound as SQL
+ * arrays, to be used as {@code = any(:values)} instead of expanding to a list of placeholders.
+ */
 public final class StatementOut extends Out {
 	private enum SpreadState {
 		Expect, Doing, None
 	}
 
 	private final MethodProfile profile;
-	private final NameIndex parameterIndex;
-	private final Map<String, Object> values = new HashMap<>();
+	private final BindingPlan plan;
+	// values by placeholder position, retained between batch entries
+	private final @Null Object[] values;
 
 	private SpreadState spreading = SpreadState.None;
 	private String prefix = "";
-	private String parameter = "";
 	private @Null NameIndex spreadingIndex;
-
-	StatementOut(MethodProfile profile, NameIndex parameterIndex) {
+	private int[][] spreadPositions = NO_POSITIONS;
+	// placeholder positions of the current parameter or field
+	private int[] current = BindingPlan.NONE;
+
+	// current parameter or field name, only resolved for diagnostics
+	private @Null NameIndex currentNames;
+	private int currentField;
+	private @Null String currentName;
+	// field names of spread maps not matching any placeholder, for diagnostics
+	private @Null List<String> unmatchedNames;
+	// elements of parameter or field encoded as an array, bound as SQL array
+	private @Null List<Object> elements;
+	private int elementsSqlType = Types.NULL;
+
+	StatementOut(MethodProfile profile, BindingPlan plan) {
 		this.profile = profile;
-		this.parameterIndex = parameterIndex;
+		this.plan = plan;
+		this.values = new Object[plan.placeholderCount()];
 	}
 
 	private record TypedValue(int sqlType, @Null Object value) {}
 
+	/** Value of array parameter, created using {@link java.sql.Connection#createArrayOf}. */
+	private record ArrayValue(String typeName, @Null Object[] elements) {
+		@Override public boolean equals(@Null Object o) {
+			return o instanceof ArrayValue a
+				&& typeName.equals(a.typeName)
+				&& Arrays.deepEquals(elements, a.elements);
+		}
+
+		@Override public int hashCode() {
+			return typeName.hashCode() * 31 + Arrays.deepHashCode(elements);
+		}
+
+		@Override public String toString() {
+			return typeName + Arrays.deepToString(elements);
+		}
+	}
+
 	private @Late ParameterProfile parameterProfile;
 
 	void parameter(ParameterProfile p) {
@@ -49,6 +99,7 @@ public final class StatementOut extends Out {
 		if (spreading == SpreadState.Expect) {
 			spreading = SpreadState.Doing;
 			spreadingIndex = f;
+			spreadPositions = plan.spreadPositions(f, prefix);
 		} else {
 			onlyScalarAllowed();
 		}
@@ -58,6 +109,8 @@ public final class StatementOut extends Out {
 	public void endStruct() throws IOException {
 		if (spreading == SpreadState.Doing) {
 			spreading = SpreadState.None;
+			spreadingIndex = null;
+			spreadPositions = NO_POSITIONS;
 			prefix = "";
 		} else {
 			unexpected("Out of order end of struct at " + path());
@@ -66,13 +119,28 @@ public final class StatementOut extends Out {
 
 	@Override
 	public void putField(int field) {
-		var names =
-			spreading == SpreadState.Doing ? requireNonNull(spreadingIndex) : parameterIndex;
-		putField(names.name(field));
+		currentName = null;
+		currentField = field;
+		if (spreading == SpreadState.Doing) {
+			var names = requireNonNull(spreadingIndex);
+			currentNames = names;
+			current = field < spreadPositions.length
+				? spreadPositions[field]
+				: plan.positions(prefix + names.name(field));
+		} else {
+			currentNames = plan.parameterIndex;
+			current = plan.parameterPositions(field);
+		}
 	}
 
 	public void putField(String name) {
-		this.parameter = prefix + name;
+		currentNames = null;
+		currentName = name;
+		current = plan.positions(prefix.isEmpty() ? name : prefix + name);
+		if (current.length == 0) {
+			if (unmatchedNames == null) unmatchedNames = new ArrayList<>();
+			unmatchedNames.add(prefix + name);
+		}
 	}
 
 	public NameIndex index(String... known) {
@@ -81,12 +149,61 @@ public final class StatementOut extends Out {
 
 	@Override
 	public void endArray() throws IOException {
-		unexpected("Out of order end of array at " + path());
+		@Null var elements = this.elements;
+		if (elements == null) {
+			unexpected("Out of order end of array at " + path());
+			return;
+		}
+		this.elements = null;
+		var typeName = arrayTypeName(elements);
+		elementsSqlType = Types.NULL;
+		put(new ArrayValue(typeName, elements.toArray()));
 	}
 
 	@Override
 	public void beginArray() throws IOException {
-		onlyScalarAllowed();
+		if (elements != null || spreading == SpreadState.Expect) {
+			onlyScalarAllowed();
+			return;
+		}
+		// collections and arrays of scalars are bound as SQL arrays
+		elements = new ArrayList<>();
+	}
+
+	/**
+	 * SQL type name of array elements. Uses declared element type of the parameter if known,
+	 * otherwise type of element values, and {@code varchar} if there are none. Names are
+	 * of PostgreSQL types, where this is mostly used as {@code = any(:values)}.
+	 */
+	private String arrayTypeName(List<Object> elements) {
+		@Null Class<?> declared = null;
+		if (spreading == SpreadState.None && parameterProfile != null) {
+			declared = elementClass(parameterProfile.type());
+		}
+		@Null String name = declared != null ? TYPE_NAMES.get(declared) : null;
+		if (name != null) return name;
+
+		name = SQL_TYPE_NAMES.get(elementsSqlType);
+		if (name != null) return name;
+
+		for (var e : elements) {
+			if (e != null) {
+				name = TYPE_NAMES.get(e.getClass());
+				if (name != null) return name;
+			}
+		}
+		return "varchar";
+	}
+
+	private static @Null Class<?> elementClass(Type type) {
+		var raw = io.immutables.codec.Types.toRawType(type);
+		if (raw.isArray()) return raw.getComponentType();
+		if (type instanceof ParameterizedType parameterized
+			&& parameterized.getActualTypeArguments().length == 1) {
+			return io.immutables.codec.Types.toRawType(
+				io.immutables.codec.Types.getFirstArgument(type));
+		}
+		return null;
 	}
 
 	private void onlyScalarAllowed() throws IOException {
@@ -96,90 +213,174 @@ public final class StatementOut extends Out {
 			: "Use a string, a number, Jsons<T> or any type convertible to scalar";
 
 		unexpected("%s `%s` cannot be converted to a scalar. %s%s"
-			.formatted(what, parameter, suggestion, methodLine(profile, parameterProfile)));
+			.formatted(what, path(), suggestion, methodLine(profile, parameterProfile)));
+	}
+
+	// values for which there are no placeholders are ignored,
+	// checking for it upfront where boxing or allocation can be avoided
+	private void put(Object value) {
+		@Null var elements = this.elements;
+		if (elements != null) {
+			if (value == MASKED_NULL) {
+				elements.add(null);
+			} else if (value instanceof TypedValue typed) {
+				elementsSqlType = typed.sqlType;
+				elements.add(typed.value);
+			} else elements.add(value);
+			return;
+		}
+		for (int p : current) values[p] = value;
 	}
 
 	@Override
 	public void putInt(int i) {
-		values.put(parameter, i);
+		if (current.length > 0) put(i);
 	}
 
 	@Override
 	public void putLong(long l) {
-		values.put(parameter, l);
+		if (current.length > 0) put(l);
 	}
 
 	@Override
 	public void putDouble(double d) {
-		values.put(parameter, d);
+		if (current.length > 0) put(d);
 	}
 
 	@Override
 	public void putBoolean(boolean b) {
-		values.put(parameter, b);
+		put(b);
 	}
 
 	public void putSpecial(int sqlType, @Null Object value) {
-		values.put(parameter, new TypedValue(sqlType, value));
+		if (current.length > 0) put(new TypedValue(sqlType, value));
 	}
 
 	public void putSpecial(Object o) {
-		values.put(parameter, o);
+		put(o);
 	}
 
 	@Override
 	public void putNull() {
-		values.put(parameter, MASKED_NULL);
+		put(MASKED_NULL);
 	}
 
 	@Override
 	public void putString(String s) {
-		values.put(parameter, s);
+		put(s);
 	}
 
 	@Override
 	public void putString(char[] chars, int offset, int length) {
-		values.put(parameter, String.valueOf(chars, offset, length));
+		if (current.length > 0) put(String.valueOf(chars, offset, length));
 	}
 
 	@Override
 	public void putString(NameIndex names, int index) throws IOException {
-		values.put(parameter, names.name(index));
+		if (current.length > 0) put(names.name(index));
 	}
 
 	public String path() {
-		return parameter;
+		if (currentName != null) return prefix + currentName;
+		if (currentNames != null) return prefix + currentNames.name(currentField);
+		return prefix;
 	}
 
 	private void unexpected(String message) throws IOException {
 		throw new SqlException(message);
 	}
 
+	/** Copy of values bound so far, by placeholder position. */
+	@Null Object[] values() {
+		return values.clone();
+	}
+
 	void fillStatement(
 		PreparedStatement statement,
 		MethodSnippet snippet) throws SQLException, IOException {
-		int i = 1;
-		for (var placeholder : snippet.placeholders()) {
-			@Null Object v = values.get(placeholder.name());
+		fill(statement, snippet, null, 0, 1);
+	}
+
+	/** Fills values as a row of multi-row VALUES statement having number of rows. */
+	void fillRow(
+		PreparedStatement statement,
+		MethodSnippet snippet,
+		MultiRowValues multiRow,
+		int row,
+		int rows) throws SQLException, IOException {
+		fill(statement, snippet, multiRow, row, rows);
+	}
+
+	private void fill(
+		PreparedStatement statement,
+		MethodSnippet snippet,
+		@Null MultiRowValues multiRow,
+		int row,
+		int rows) throws SQLException, IOException {
+		var placeholders = snippet.placeholders();
+		for (int p = 0; p < values.length; p++) {
+			int i = multiRow != null ? multiRow.parameterIndex(p, row, rows) : p + 1;
+			@Null Object v = values[p];
 			if (v == null) {
+				var placeholder = placeholders.get(p);
 				throw new WrongDeclaration("\n" + snippet.source().problemAt(
 					placeholder.range(),
 					"No parameter or value for placeholder :" + placeholder.name(),
 					"Add parameter with such name or @Spread parameter having such " +
 						"field/component\nAvailable parameters: " + String.join(", ",
-						values.keySet())));
+						availableNames())));
 			}
 			if (v == MASKED_NULL) {
 				// do we need setNull with specific JDBC type?
 				statement.setObject(i, null);
 			} else if (v instanceof TypedValue typed) {
 				statement.setObject(i, typed.value, typed.sqlType);
+			} else if (v instanceof ArrayValue array) {
+				statement.setArray(i,
+					statement.getConnection().createArrayOf(array.typeName, array.elements));
+			} else if (v instanceof InputStream stream) {
+				statement.setBinaryStream(i, stream);
+			} else if (v instanceof Reader reader) {
+				statement.setCharacterStream(i, reader);
 			} else {
 				statement.setObject(i, v);
 			}
-			i++;
 		}
 	}
 
+	private List<String> availableNames() {
+		var names = plan.availableNames();
+		if (unmatchedNames != null) names.addAll(unmatchedNames);
+		return names;
+	}
+
 	private static final Object MASKED_NULL = new Object();
+	private static final int[][] NO_POSITIONS = new int[0][];
+
+	private static final Map<Class<?>, String> TYPE_NAMES = Map.ofEntries(
+		Map.entry(Integer.class, "integer"),
+		Map.entry(int.class, "integer"),
+		Map.entry(Long.class, "bigint"),
+		Map.entry(long.class, "bigint"),
+		Map.entry(Short.class, "smallint"),
+		Map.entry(short.class, "smallint"),
+		Map.entry(Double.class, "float8"),
+		Map.entry(double.class, "float8"),
+		Map.entry(Float.class, "float4"),
+		Map.entry(float.class, "float4"),
+		Map.entry(Boolean.class, "boolean"),
+		Map.entry(boolean.class, "boolean"),
+		Map.entry(String.class, "varchar"),
+		Map.entry(BigDecimal.class, "numeric"),
+		Map.entry(UUID.class, "uuid"),
+		Map.entry(Timestamp.class, "timestamp"),
+		Map.entry(Instant.class, "timestamp"),
+		Map.entry(LocalDateTime.class, "timestamp"),
+		Map.entry(OffsetDateTime.class, "timestamptz"),
+		Map.entry(LocalDate.class, "date"));
+
+	private static final Map<Integer, String> SQL_TYPE_NAMES = Map.of(
+		Types.TIMESTAMP_WITH_TIMEZONE, "timestamptz",
+		Types.TIMESTAMP, "timestamp",
+		Types.DATE, "date");
 }
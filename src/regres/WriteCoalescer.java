@@ -0,0 +1,176 @@
+package io.immutables.regres;
+
+import io.immutables.meta.Null;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects concurrent invocations of {@link SqlAccessor.Coalesce} method to execute them
+ * together as a single batch, see {@link Regresql#executeCoalesced}. One of the callers becomes
+ * a leader: it waits for more writes up to the window since the oldest pending write, or until
+ * there are enough rows, then executes the batch, while other callers wait for their writes to
+ * complete. Leader stays until its own write is done, then the next waiting caller takes over.
+ * Asynchronous callers do not wait, the leader for these is run by {@link SqlExecutor}.
+ */
+final class WriteCoalescer {
+	private final int maxRows;
+	private final long windowNanos;
+	private final @Null SqlExecutor executor;
+	private final Flush flush;
+
+	// guarded by this, as well as the leading flag
+	private final List<Write> pending = new ArrayList<>();
+	private boolean leading;
+
+	/** Executes writes, completing each of them. */
+	@FunctionalInterface
+	interface Flush {
+		void flush(List<Write> writes);
+	}
+
+	record Write(Object[] arguments, long enqueuedAt, CompletableFuture<Object> result) {}
+
+	WriteCoalescer(int maxRows, long windowNanos, @Null SqlExecutor executor, Flush flush) {
+		this.maxRows = maxRows;
+		this.windowNanos = windowNanos;
+		this.executor = executor;
+		this.flush = flush;
+	}
+
+	/** Writes on the calling thread, either as a leader, or waiting for the leader. */
+	@Null Object write(Object[] arguments) throws Exception {
+		var write = enqueue(arguments);
+		boolean lead;
+		boolean interrupted = false;
+		synchronized (this) {
+			// pending write will complete soon, not bailing out on interruption
+			while (leading && !write.result.isDone()) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			lead = !write.result.isDone();
+			if (lead) leading = true;
+		}
+		if (lead) lead(write);
+		if (interrupted) Thread.currentThread().interrupt();
+
+		try {
+			return write.result.get();
+		} catch (ExecutionException e) {
+			var cause = e.getCause();
+			if (cause instanceof Exception exception) throw exception;
+			if (cause instanceof Error error) throw error;
+			throw e;
+		}
+	}
+
+	/** Enqueues write without waiting, starting leader on the executor if there's none. */
+	CompletableFuture<Object> submit(Object[] arguments) {
+		assert executor != null;
+		var write = enqueue(arguments);
+		boolean lead;
+		synchronized (this) {
+			lead = !leading;
+			if (lead) leading = true;
+		}
+		if (lead) startLeader();
+		return write.result;
+	}
+
+	private Write enqueue(Object[] arguments) {
+		var write = new Write(arguments, System.nanoTime(), new CompletableFuture<>());
+		synchronized (this) {
+			pending.add(write);
+			// wakes up leader waiting for the window
+			if (pending.size() >= maxRows) notifyAll();
+		}
+		return write;
+	}
+
+	private void startLeader() {
+		assert executor != null;
+		executor.submit(() -> {
+			lead(null);
+			return null;
+		}).whenComplete((ignore, rejected) -> {
+			if (rejected != null) failPending(rejected);
+		});
+	}
+
+	/**
+	 * Executes batches of pending writes until own write is done, or, if there's none,
+	 * until there are no more pending writes.
+	 */
+	private void lead(@Null Write own) {
+		for (; ; ) {
+			List<Write> batch;
+			synchronized (this) {
+				if (own != null ? own.result.isDone() : pending.isEmpty()) {
+					leading = false;
+					// waiting callers would take over, but not asynchronous ones
+					if (!pending.isEmpty() && executor != null) {
+						leading = true;
+						startLeader();
+					}
+					notifyAll();
+					return;
+				}
+				awaitWindow();
+				var taken = pending.subList(0, Math.min(maxRows, pending.size()));
+				batch = List.copyOf(taken);
+				taken.clear();
+			}
+			try {
+				flush.flush(batch);
+			} catch (Throwable e) {
+				for (var w : batch) w.result.completeExceptionally(e);
+			}
+			for (var w : batch) {
+				assert w.result.isDone() : "flush must complete all writes";
+			}
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	private void awaitWindow() {
+		assert Thread.holdsLock(this);
+		long deadline = pending.get(0).enqueuedAt + windowNanos;
+		while (pending.size() < maxRows) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) break;
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				// executing what we have without further waiting
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	private void failPending(Throwable failure) {
+		List<Write> failed;
+		synchronized (this) {
+			failed = List.copyOf(pending);
+			pending.clear();
+			leading = false;
+			notifyAll();
+		}
+		for (var w : failed) w.result.completeExceptionally(failure);
+	}
+
+	@Override public synchronized String toString() {
+		return WriteCoalescer.class.getSimpleName()
+			+ "(maxRows=" + maxRows
+			+ ", windowNanos=" + windowNanos
+			+ ", pending=" + pending.size() + ")";
+	}
+}
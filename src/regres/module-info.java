@@ -11,6 +11,7 @@ module io.immutables.regres {
 
 	requires com.fasterxml.jackson.core;
 	requires java.sql;
+	requires jdk.jfr;
 
 	exports io.immutables.regres;
 }
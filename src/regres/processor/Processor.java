@@ -0,0 +1,312 @@
+package io.immutables.regres.processor;
+
+import io.immutables.meta.Null;
+import io.immutables.regres.Regresql;
+import io.immutables.regres.SqlAccessor.Batch;
+import io.immutables.regres.SqlAccessor.Cached;
+import io.immutables.regres.SqlAccessor.Coalesce;
+import io.immutables.regres.SqlAccessor.Invalidates;
+import io.immutables.regres.SqlAccessor.Named;
+import io.immutables.regres.SqlAccessor.Precompile;
+import io.immutables.regres.SqlAccessor.Read;
+import io.immutables.regres.SqlAccessor.Scatter;
+import io.immutables.regres.SqlAccessor.ShardKey;
+import io.immutables.regres.SqlAccessor.Spread;
+import io.immutables.regres.WrongDeclaration;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.*;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates implementations of {@link Precompile} accessors, validating methods against
+ * SQL source the same way {@link Regresql#create} does at runtime. Generated class invokes
+ * methods via {@link io.immutables.regres.AccessorDispatch} by constant index, and for simple
+ * methods having only primitive and string parameters bound by name, sets statement parameters
+ * using typed setters, skipping codecs.
+ */
+public class Processor extends AbstractProcessor {
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Set.of(Precompile.class.getCanonicalName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		for (var element : round.getElementsAnnotatedWith(Precompile.class)) {
+			try {
+				if (element.getKind() != ElementKind.INTERFACE
+					|| ((TypeElement) element).getNestingKind() != NestingKind.TOP_LEVEL) {
+					error(element, "@Precompile is only applicable to top level accessor interface");
+					continue;
+				}
+				generate((TypeElement) element);
+			} catch (Throwable e) {
+				error(element, e + "\n" + toStackTraceString(e));
+			}
+		}
+		return true;
+	}
+
+	private void generate(TypeElement accessor) throws IOException {
+		var methods = new LinkedHashMap<String, ExecutableElement>();
+		for (var m : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(accessor))) {
+			if (!isAccessMethod(m)) continue;
+			var name = m.getSimpleName().toString();
+			if (methods.put(name, m) != null) {
+				error(m, "Method overloads are not supported: " + name + ". Please use distinct names");
+				return;
+			}
+			if (!m.getTypeParameters().isEmpty()) {
+				error(m, "Generic access methods are not supported: " + name);
+				return;
+			}
+		}
+
+		var packageName = processingEnv.getElementUtils().getPackageOf(accessor)
+			.getQualifiedName().toString();
+		var simpleName = accessor.getSimpleName().toString();
+
+		Map<String, List<String>> placeholders = Map.of();
+		if (!methods.isEmpty()) {
+			var filename = "/" + (packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/")
+				+ simpleName + ".sql";
+			@Null CharSequence content = readSource(packageName, simpleName + ".sql");
+			if (content == null) {
+				error(accessor, filename + " must be present in source or class path");
+				return;
+			}
+			try {
+				placeholders = Regresql.placeholders(filename, content, methods.keySet());
+			} catch (WrongDeclaration wrongDeclaration) {
+				error(accessor, wrongDeclaration.getMessage());
+				return;
+			}
+		}
+
+		var names = new ArrayList<>(methods.keySet());
+		var code = new StringBuilder();
+		if (!packageName.isEmpty()) code.append("package ").append(packageName).append(";\n\n");
+		var generatedName = simpleName + Regresql.GENERATED_SUFFIX;
+
+		code.append("// Generated by ").append(Processor.class.getName()).append("\n")
+			.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+			.append("public final class ").append(generatedName)
+			.append(" implements ").append(accessor.getQualifiedName())
+			.append(", ").append(DISPATCH).append(".Generated {\n")
+			.append("\tpublic static final String[] ").append(Regresql.GENERATED_METHODS).append(" = {");
+		for (int i = 0; i < names.size(); i++) {
+			if (i > 0) code.append(", ");
+			code.append('"').append(names.get(i)).append('"');
+		}
+		code.append("};\n\n")
+			.append("\tprivate final ").append(DISPATCH).append(" dispatch;\n\n")
+			.append("\tpublic ").append(generatedName).append("(")
+			.append(DISPATCH).append(" dispatch) {\n")
+			.append("\t\tthis.dispatch = dispatch;\n")
+			.append("\t}\n\n")
+			.append("\t@Override public ").append(DISPATCH).append(" accessorDispatch() {\n")
+			.append("\t\treturn dispatch;\n")
+			.append("\t}\n\n")
+			.append("\t@Override public io.immutables.regres.ConnectionProvider.Handle handle() {\n")
+			.append("\t\ttry {\n")
+			.append("\t\t\treturn dispatch.handle();\n")
+			.append("\t\t} catch (java.sql.SQLException exception) {\n")
+			.append("\t\t\tthrow new java.lang.reflect.UndeclaredThrowableException(exception);\n")
+			.append("\t\t}\n")
+			.append("\t}\n");
+
+		for (int i = 0; i < names.size(); i++) {
+			var name = names.get(i);
+			var method = methods.get(name);
+			assert method != null;
+			var bound = boundPositions(method, placeholders.getOrDefault(name, List.of()));
+			if (bound == INVALID) return;
+			generateMethod(code, i, method, bound);
+		}
+		code.append("}\n");
+
+		var qualifiedName = packageName.isEmpty() ? generatedName : packageName + "." + generatedName;
+		var file = processingEnv.getFiler().createSourceFile(qualifiedName, accessor);
+		try (var writer = file.openWriter()) {
+			writer.append(code);
+		}
+	}
+
+	private void generateMethod(
+		StringBuilder code, int index, ExecutableElement method, @Null List<int[]> bound) {
+		var parameters = method.getParameters();
+		var returnType = method.getReturnType();
+		boolean returnsVoid = returnType.getKind() == TypeKind.VOID;
+
+		code.append("\n\t@Override public ").append(returnType).append(' ')
+			.append(method.getSimpleName()).append('(');
+		for (int p = 0; p < parameters.size(); p++) {
+			if (p > 0) code.append(", ");
+			var type = parameters.get(p).asType();
+			if (method.isVarArgs() && p == parameters.size() - 1) {
+				var component = ((ArrayType) type).getComponentType();
+				code.append("final ").append(component).append("... p").append(p);
+			} else {
+				code.append("final ").append(type).append(" p").append(p);
+			}
+		}
+		code.append(')');
+		var thrown = method.getThrownTypes();
+		for (int t = 0; t < thrown.size(); t++) {
+			code.append(t == 0 ? " throws " : ", ").append(thrown.get(t));
+		}
+		code.append(" {\n\t\ttry {\n\t\t\t");
+		if (!returnsVoid) code.append("return (").append(returnType).append(") ");
+
+		if (bound != null) {
+			code.append("dispatch.invokeBound(").append(index).append(", statement -> {\n");
+			for (int p = 0; p < parameters.size(); p++) {
+				var setter = SETTERS.get(parameters.get(p).asType().toString());
+				for (int position : bound.get(p)) {
+					code.append("\t\t\t\tstatement.").append(setter)
+						.append('(').append(position + 1).append(", p").append(p).append(");\n");
+				}
+			}
+			code.append("\t\t\t});\n");
+		} else {
+			code.append("dispatch.invoke(").append(index).append(", new Object[] {");
+			for (int p = 0; p < parameters.size(); p++) {
+				if (p > 0) code.append(", ");
+				code.append('p').append(p);
+			}
+			code.append("});\n");
+		}
+		code.append("\t\t} catch (Exception exception) {\n")
+			.append("\t\t\tthrow dispatch.rethrow(").append(index).append(", exception);\n")
+			.append("\t\t}\n\t}\n");
+	}
+
+	/**
+	 * Placeholder positions for each parameter, if method can be bound using typed setters,
+	 * {@code null} if it should use codecs, or {@link #INVALID} if error was reported.
+	 */
+	private @Null List<int[]> boundPositions(ExecutableElement method, List<String> placeholders) {
+		var parameters = method.getParameters();
+		var names = new ArrayList<String>(parameters.size());
+		boolean spread = false;
+		boolean simple = method.getAnnotation(Cached.class) == null
+			&& method.getAnnotation(Invalidates.class) == null
+			&& method.getAnnotation(Coalesce.class) == null
+			&& method.getAnnotation(Scatter.class) == null
+			&& method.getAnnotation(Read.class) == null
+			&& !isAsync(method.getReturnType());
+
+		for (VariableElement p : parameters) {
+			@Null Named named = p.getAnnotation(Named.class);
+			names.add(named != null ? named.value() : p.getSimpleName().toString());
+			if (p.getAnnotation(Spread.class) != null) spread = true;
+			if (p.getAnnotation(Spread.class) != null
+				|| p.getAnnotation(Batch.class) != null
+				|| p.getAnnotation(ShardKey.class) != null
+				|| !SETTERS.containsKey(p.asType().toString())) simple = false;
+		}
+
+		for (var placeholder : placeholders) {
+			if (!spread && !names.contains(placeholder)) {
+				error(method, "No parameter for placeholder :" + placeholder
+					+ ", available parameters: " + String.join(", ", names));
+				return INVALID;
+			}
+		}
+		if (!simple) return null;
+
+		var positions = new ArrayList<int[]>(names.size());
+		for (var name : names) {
+			positions.add(placeholderPositions(placeholders, name));
+		}
+		return positions;
+	}
+
+	private static int[] placeholderPositions(List<String> placeholders, String name) {
+		int count = 0;
+		for (var p : placeholders) {
+			if (p.equals(name)) count++;
+		}
+		var positions = new int[count];
+		for (int i = 0, at = 0; i < placeholders.size(); i++) {
+			if (placeholders.get(i).equals(name)) positions[at++] = i;
+		}
+		return positions;
+	}
+
+	private boolean isAsync(TypeMirror type) {
+		var erased = processingEnv.getTypeUtils().erasure(type).toString();
+		return erased.equals("java.util.concurrent.CompletableFuture");
+	}
+
+	private static boolean isAccessMethod(ExecutableElement m) {
+		if (!m.getModifiers().contains(Modifier.ABSTRACT)) return false;
+		if (m.getEnclosingElement().getKind() != ElementKind.INTERFACE) return false;
+		// SqlAccessor.handle() gives connection handle, not SQL snippet
+		return !(m.getSimpleName().contentEquals("handle") && m.getParameters().isEmpty());
+	}
+
+	private @Null CharSequence readSource(String packageName, String filename) {
+		for (JavaFileManager.Location location : new JavaFileManager.Location[]{
+			StandardLocation.SOURCE_PATH,
+			StandardLocation.CLASS_OUTPUT,
+			StandardLocation.CLASS_PATH}) {
+			// module sources are not necessarily laid out in package directories
+			for (var relativeTo : new String[]{packageName, ""}) {
+				try {
+					return processingEnv.getFiler()
+						.getResource(location, relativeTo, filename)
+						.getCharContent(true);
+				} catch (IOException | IllegalArgumentException notFoundThere) {
+					// trying next location
+				}
+			}
+		}
+		return null;
+	}
+
+	private void error(javax.lang.model.element.Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private static CharSequence toStackTraceString(Throwable e) {
+		var w = new StringWriter();
+		try (var pw = new PrintWriter(w)) {
+			e.printStackTrace(pw);
+		}
+		return w.toString();
+	}
+
+	private static final String DISPATCH = "io.immutables.regres.AccessorDispatch";
+
+	private static final Map<String, String> SETTERS = Map.of(
+		"int", "setInt",
+		"long", "setLong",
+		"double", "setDouble",
+		"boolean", "setBoolean",
+		"java.lang.String", "setString");
+
+	private static final List<int[]> INVALID = new ArrayList<>(0);
+}
@@ -0,0 +1,11 @@
+module io.immutables.regres.processor {
+	requires static java.compiler;
+	requires static io.immutables.meta;
+
+	// needs accessor annotations and SQL source validation
+	// at annotation processor runtime
+	requires io.immutables.regres;
+
+	provides javax.annotation.processing.Processor
+		with io.immutables.regres.processor.Processor;
+}
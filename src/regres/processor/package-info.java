@@ -0,0 +1,6 @@
+@NonnullByDefault
+@CheckReturnByDefault
+package io.immutables.regres.processor;
+
+import io.immutables.meta.CheckReturnByDefault;
+import io.immutables.meta.NonnullByDefault;
@@ -0,0 +1,13 @@
+package io.immutables.regres.test;
+
+import io.immutables.regres.SqlAccessor;
+import java.util.List;
+
+@SqlAccessor.Precompile
+public interface Precompiled extends SqlAccessor {
+	@Single
+	@Column
+	String selectConcatSimple(@Named("a") String a1, @Named("b") String b2, @Named("c") String c3);
+
+	List<Bu> selectBuByIds(@Named("ids") List<Integer> ids);
+}
@@ -0,0 +1,6 @@
+--.selectConcatSimple
+
+select :a || :b || :c;
+
+--.selectBuByIds
+select * from bu where a = any(:ids) order by a;
@@ -4,13 +4,18 @@ import io.immutables.codec.Jsons;
 import io.immutables.regres.SqlAccessor;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Iterator;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface Sample extends SqlAccessor {
 	@UpdateCount
@@ -73,6 +78,14 @@ public interface Sample extends SqlAccessor {
 	@UpdateCount
 	int[] insertBatch(@Named("a") @Batch List<String> a, @Named("b") int b) throws SQLException;
 
+	@UpdateCount
+	long insertBatchChunked(
+			@Named("a") @Batch(chunk = 2) Stream<String> a, @Named("b") int b) throws SQLException;
+
+	@UpdateCount
+	int insertBatchValues(
+			@Named("a") @Batch(valuesRows = 2) List<String> a, @Named("b") int b) throws SQLException;
+
 	@UpdateCount
 	int[] insertBatchSpread(@Spread Map<String, String> m, @Named("b") @Batch int... values) throws SQLException;
 
@@ -90,6 +103,51 @@ public interface Sample extends SqlAccessor {
 
 	List<Bu> selectBuRecords();
 
+	CompletableFuture<List<Bu>> selectBuRecordsAsync();
+
+	@UpdateCount
+	CompletableFuture<Integer> insertValueAsync(@Named("a") int a);
+
+	List<Bu> selectBuByIds(@Named("ids") List<Integer> ids);
+
+	@Single
+	@Column
+	ByteBuffer selectBytes(@Named("bytes") ByteBuffer bytes);
+
+	@Single
+	@Column
+	Reader selectText(@Named("text") Reader text);
+
+	@Cached(maxSize = 16, tags = "bu")
+	List<Bu> selectBuCached(@Named("a") int a);
+
+	@UpdateCount
+	@Invalidates("bu")
+	int insertValueInvalidating(@Named("a") int a);
+
+	@UpdateCount
+	@Coalesce(maxRows = 4)
+	int insertValueCoalesced(@Named("a") int a);
+
+	@FetchSize(2)
+	Stream<Bu> streamBuRecords();
+
+	@Column("b")
+	Iterator<String> iterateColumn();
+
+	@FetchSize(2)
+	@Column
+	Iterator<Integer> iterateFetched();
+
+	@ResultSets
+	BuPage selectBuPage(@Named("limit") int limit);
+
+	@Grouped
+	List<BuBelow> selectBuBelow();
+
+	@Grouped
+	Stream<BuBelow> streamBuBelow();
+
 	void createTypes();
 
 	void insertTypes(@Spread FancyTypes types);
@@ -112,6 +170,10 @@ public interface Sample extends SqlAccessor {
 			Jsons<String> jb
 	) {}
 
+	record BuPage(List<Bu> items, @Single @Column long total) {}
+
+	record BuBelow(int a, String b, @Spread(prefix = "below_") List<Nested> below) {}
+
 	record Nested(
 		int a,
 		String b
@@ -82,6 +82,14 @@ drop table chu;
 
 insert into chu(a, b) values (:a, :b);
 
+--.insertBatchChunked
+
+insert into chu(a, b) values (:a, :b);
+
+--.insertBatchValues
+
+insert into chu(a, b) values (:a, :b);
+
 --.insertBatchSpread
 
 insert into chu(a, b) values (:a, :b);
@@ -102,6 +110,53 @@ select 'A' as a_a, 'B' as b_b_b, 3 as c_cc;
 --.selectBuRecords
 select * from bu;
 
+--.selectBuRecordsAsync
+select * from bu order by a;
+
+--.insertValueAsync
+insert into bu(a, b, c) values (:a, 'Async', '[0]');
+
+--.selectBuByIds
+select * from bu where a = any(:ids) order by a;
+
+--.selectBytes
+select cast(:bytes as bytea) as bytes;
+
+--.selectText
+select cast(:text as text) as text;
+
+--.selectBuCached
+select * from bu where a = :a;
+
+--.insertValueInvalidating
+insert into bu(a, b, c) values (:a, 'Cached', '[0]');
+
+--.insertValueCoalesced
+insert into bu(a, b, c) values (:a, 'Coalesced', '[0]');
+
+--.streamBuRecords
+select * from bu order by a;
+
+--.iterateColumn
+select b from bu order by a;
+
+--.iterateFetched
+select 12 / (5 - x) from generate_series(1, 10) x;
+
+--.selectBuPage
+select * from bu order by a limit :limit;
+select count(*) from bu;
+
+--.selectBuBelow
+select u.a, u.b, l.a as below_a, l.b as below_b
+from bu u left join bu l on l.a < u.a
+order by u.a, l.a;
+
+--.streamBuBelow
+select u.a, u.b, l.a as below_a, l.b as below_b
+from bu u left join bu l on l.a < u.a
+order by u.a, l.a;
+
 --.createTypes
 
 drop table if exists types cascade;
@@ -0,0 +1,20 @@
+package io.immutables.regres.test;
+
+import io.immutables.regres.SqlAccessor;
+import java.util.List;
+
+public interface Shards extends SqlAccessor {
+	record Item(int id, String name) {}
+
+	List<Item> itemsOf(@ShardKey @Named("tenant") int tenant);
+
+	@Scatter
+	List<Item> allItems();
+
+	@Scatter(mergeBy = "id")
+	List<Item> allItemsById();
+
+	@Scatter
+	@UpdateCount
+	int deleteAll();
+}
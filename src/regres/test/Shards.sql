@@ -0,0 +1,11 @@
+--.itemsOf
+select id, name from item where tenant = :tenant order by id;
+
+--.allItems
+select id, name from item;
+
+--.allItemsById
+select id, name from item order by id;
+
+--.deleteAll
+delete from item;
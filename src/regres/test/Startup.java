@@ -0,0 +1,13 @@
+package io.immutables.regres.test;
+
+import io.immutables.regres.SqlAccessor;
+
+public interface Startup extends SqlAccessor {
+	@UpdateCount
+	int touch();
+
+	// wrong on purpose, update count cannot be read from replica
+	@Read
+	@UpdateCount
+	int touchReplica();
+}
@@ -0,0 +1,5 @@
+--.touch
+update item set name = name;
+
+--.touchReplica
+update item set name = name;
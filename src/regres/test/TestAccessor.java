@@ -1,18 +1,33 @@
 package io.immutables.regres.test;
 
 import io.immutables.codec.Jsons;
+import io.immutables.regres.ConnectionPool;
 import io.immutables.regres.Regresql;
+import io.immutables.regres.SqlException;
+import io.immutables.regres.SqlExecutor;
+import io.immutables.regres.SqlMetrics;
+import io.immutables.regres.StatementCache;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import org.junit.Test;
 import static io.immutables.that.Assert.that;
 
 public class TestAccessor extends Base {
-	private static final Sample sample = Regresql.create(Sample.class, codecs, connections);
+	// single connection in tests, so single task in-flight
+	private static final SqlExecutor executor = new SqlExecutor(ForkJoinPool.commonPool(), 1);
+	private static final Sample sample = Regresql.create(Sample.class, codecs, connections, executor);
 
 	@Test
 	public void results() throws Exception {
@@ -50,6 +65,35 @@ public class TestAccessor extends Base {
 		sample.dropTableForBatch();
 	}
 
+	@Test
+	public void batchChunks() throws SQLException {
+		sample.createTableForBatch();
+		that(sample.insertBatchChunked(Stream.of("X", "Y", "Z", "W", "V"), 4)).is(5L);
+		that(sample.selectFromBatch()).hasOnly("X-4", "Y-4", "Z-4", "W-4", "V-4");
+		sample.dropTableForBatch();
+	}
+
+	@Test
+	public void batchMultiRowValues() throws SQLException {
+		sample.createTableForBatch();
+		that(sample.insertBatchValues(List.of("X", "Y", "Z", "W", "V"), 5)).is(5);
+		that(sample.selectFromBatch()).hasOnly("X-5", "Y-5", "Z-5", "W-5", "V-5");
+		sample.dropTableForBatch();
+	}
+
+	@Test
+	public void batchMultiRowValuesCached() throws SQLException {
+		StatementCache cache = connections.withStatementCache(8);
+		var cached = Regresql.create(Sample.class, codecs, cache, executor);
+		cached.createTableForBatch();
+		that(cached.insertBatchValues(List.of("X", "Y", "Z"), 1)).is(3);
+		long misses = cache.misses();
+		// multi-row statements are taken from cache too
+		that(cached.insertBatchValues(List.of("U", "V", "W"), 2)).is(3);
+		that(cache.misses()).is(misses);
+		cached.dropTableForBatch();
+	}
+
 	@Test
 	public void jsonb() throws SQLException {
 		sample.createTable();
@@ -84,6 +128,35 @@ public class TestAccessor extends Base {
 		sample.dropTable();
 	}
 
+	@Test
+	public void streamRows() throws SQLException {
+		sample.createTable();
+		sample.insertValues();
+		try (var stream = sample.streamBuRecords()) {
+			that(stream.map(Bu::a).toList()).isOf(1, 2, 3);
+		}
+		var iterator = sample.iterateColumn();
+		that(iterator.next()).is("A");
+		that(iterator.next()).is("B");
+		that(iterator.next()).is("C");
+		that(iterator.hasNext()).is(false);
+		sample.dropTable();
+	}
+
+	@Test
+	public void fetchSizeOutsideTransaction() throws Exception {
+		var pool = ConnectionPool.builder(connections).maxSize(2).build();
+		var pooled = Regresql.create(Sample.class, codecs, pool, executor);
+		// rows are fetched by 2 using cursor, so division by zero in 5th row is not yet reached
+		var rows = pooled.iterateFetched();
+		that(rows.next()).is(3);
+		that(rows.next()).is(4);
+		that(pool.active()).is(1);
+		that(() -> rows.forEachRemaining(row -> {})).thrown(SqlException.class);
+		that(pool.active()).is(0);
+		pool.close();
+	}
+
 	@Test
 	public void jdbcTypes() {
 		sample.createTypes();
@@ -107,4 +180,154 @@ public class TestAccessor extends Base {
 		that(a.a()).is(1);
 		that(a.b()).is("B");
 	}
+
+	@SuppressWarnings("try")
+	@Test public void statementCache() throws Exception {
+		StatementCache cache = connections.withStatementCache(8);
+		var cached = Regresql.create(Sample.class, codecs, cache, executor);
+		try (var handle = cache.handle()) {
+			that(cached.selectConcatSimple("a", "b", "c")).is("abc");
+			that(cached.selectConcatSimple("d", "e", "f")).is("def");
+			that(cached.selectSingleColumn()).is("C");
+		}
+		that(cache.misses()).is(2L);
+		that(cache.hits()).is(1L);
+		// statements are kept while connection is recycled, reused in the next call
+		that(cached.selectConcatSimple("a", "b", "c")).is("abc");
+		that(cached.selectSingleColumn()).is("C");
+		that(cache.misses()).is(2L);
+		that(cache.hits()).is(3L);
+	}
+
+	@Test public void multipleResultSets() throws Exception {
+		sample.createTable();
+		sample.insertValues();
+		var page = sample.selectBuPage(2);
+		that(page.items()).hasSize(2);
+		that(page.items().get(1).b()).is("B");
+		that(page.total()).is(3L);
+		sample.dropTable();
+	}
+
+	@Test public void arrayParameters() throws Exception {
+		sample.createTable();
+		sample.insertValues();
+		that(sample.selectBuByIds(List.of(1, 3)).stream().map(Bu::a)).isOf(1, 3);
+		that(sample.selectBuByIds(List.of())).isEmpty();
+		sample.dropTable();
+	}
+
+	@Test public void streamColumns() throws Exception {
+		var bytes = ByteBuffer.wrap(new byte[]{1, 2, 3});
+		that(sample.selectBytes(bytes)).equalTo(bytes);
+		var text = new StringWriter();
+		sample.selectText(new StringReader("Text")).transferTo(text);
+		that(text.toString()).is("Text");
+	}
+
+	@Test public void groupedRows() throws Exception {
+		sample.createTable();
+		sample.insertValues();
+		var grouped = sample.selectBuBelow();
+		that(grouped).hasSize(3);
+		that(grouped.get(0).below()).isEmpty();
+		that(grouped.get(1).below()).isOf(new Sample.Nested(1, "A"));
+		that(grouped.get(2).below()).isOf(new Sample.Nested(1, "A"), new Sample.Nested(2, "B"));
+		try (var stream = sample.streamBuBelow()) {
+			that(stream.toList()).isOf(grouped);
+		}
+		sample.dropTable();
+	}
+
+	@SuppressWarnings("try")
+	@Test public void asyncMethods() throws Exception {
+		sample.createTable();
+		var inserted = List.of(
+			sample.insertValueAsync(1),
+			sample.insertValueAsync(2),
+			sample.insertValueAsync(3));
+		for (var f : inserted) that(f.get()).is(1);
+		that(sample.selectBuRecordsAsync().get()).hasSize(3);
+		// within transaction, run in place on the same connection
+		try (var handle = connections.handle()) {
+			var future = sample.selectBuRecordsAsync();
+			that(future.isDone()).is(true);
+			that(future.get()).hasSize(3);
+		}
+		sample.dropTable();
+	}
+
+	@Test public void metrics() throws Exception {
+		var metrics = new SqlMetrics(Duration.ZERO, 1);
+		var measured = Regresql.create(Sample.class, codecs, connections, executor, metrics);
+		measured.createTableForBatch();
+		measured.insertBatch(List.of("a", "b", "c"), 1);
+		that(measured.selectFromBatch()).hasSize(3);
+		measured.dropTableForBatch();
+
+		var snapshot = metrics.snapshot();
+		that(snapshot.get("Sample.insertBatch").batchEntries()).is(3L);
+		var select = snapshot.get("Sample.selectFromBatch");
+		that(select.invocations()).is(1L);
+		that(select.rows()).is(3L);
+		that(select.decode().count()).is(1L);
+		that(metrics.slowCalls()).hasSize(1);
+		that(metrics.slowCalls().get(0).location()).startsWith("/io/immutables/regres/test/Sample.sql:");
+	}
+
+	@Test public void cachedResults() throws Exception {
+		sample.createTable();
+		var cache = Regresql.resultCaches(sample).get("selectBuCached");
+		cache.invalidate();
+		that(sample.selectBuCached(1)).isEmpty();
+		that(sample.selectBuCached(1)).isEmpty();
+		that(cache.hits()).is(1L);
+		that(sample.insertValueInvalidating(1)).is(1);
+		that(sample.selectBuCached(1)).hasSize(1);
+		that(cache.invalidations()).is(2L);
+		sample.dropTable();
+	}
+
+	@SuppressWarnings("try")
+	@Test public void invalidateAfterTransaction() throws Exception {
+		sample.createTable();
+		var cache = Regresql.resultCaches(sample).get("selectBuCached");
+		cache.invalidate();
+		try (var handle = connections.handle()) {
+			that(sample.insertValueInvalidating(1)).is(1);
+			// reader outside of transaction caches rows read before commit
+			var reader = new Thread(() -> sample.selectBuCached(1));
+			reader.start();
+			reader.join();
+			that(cache.size()).is(1);
+		}
+		that(cache.size()).is(0);
+		sample.dropTable();
+	}
+
+	@Test public void coalescedWrites() throws Exception {
+		sample.createTable();
+		var updated = new AtomicInteger();
+		var writers = new ArrayList<Thread>();
+		for (int i = 0; i < 10; i++) {
+			int a = i;
+			var writer = new Thread(() -> updated.addAndGet(sample.insertValueCoalesced(a)));
+			writers.add(writer);
+			writer.start();
+		}
+		for (var writer : writers) writer.join();
+		that(updated.get()).is(10);
+		that(sample.selectBuByIds(List.of(0, 9))).hasSize(2);
+		sample.dropTable();
+	}
+
+	@Test public void precompiled() throws Exception {
+		var precompiled = Regresql.create(Precompiled.class, codecs, connections);
+		that(precompiled instanceof Precompiled_Regresql).is(true);
+		that(precompiled.selectConcatSimple("a", "b", "c")).is("abc");
+		sample.createTable();
+		sample.insertValues();
+		that(precompiled.selectBuByIds(List.of(1, 3)).stream().map(Bu::a)).isOf(1, 3);
+		sample.dropTable();
+	}
 }
@@ -0,0 +1,155 @@
+package io.immutables.regres.test;
+
+import io.immutables.regres.ConnectionPool;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestConnectionPool {
+	private final StubDriver driver = new StubDriver();
+
+	private ConnectionPool.Builder pool() {
+		return ConnectionPool.builder(() -> driver.connect("jdbc:stub:", new Properties()));
+	}
+
+	@Test public void reuseConnections() throws SQLException {
+		var pool = pool().maxSize(2).build();
+		var c1 = pool.get();
+		var c2 = pool.get();
+		that(pool.active()).is(2);
+		that(pool.utilization()).bitwiseIs(1.0);
+		pool.recycle(c1);
+		that(pool.idle()).is(1);
+		that(pool.get()).same(c1);
+		pool.recycle(c1);
+		pool.recycle(c2);
+		that(pool.created()).is(2L);
+		that(pool.borrows()).is(3L);
+		that(pool.active()).is(0);
+	}
+
+	@Test public void timeoutWhenExhausted() throws SQLException {
+		var pool = pool().maxSize(1).borrowTimeout(Duration.ofMillis(10)).build();
+		var c = pool.get();
+		that(pool::get).thrown(SQLTransientConnectionException.class);
+		that(pool.timeouts()).is(1L);
+		that(pool.waitTime().toNanos() > 0).is(true);
+		pool.recycle(c);
+		that(pool.get()).same(c);
+	}
+
+	@Test public void restoreSessionState() throws SQLException {
+		var pool = pool().maxSize(1).build();
+		var c = pool.get();
+		c.setReadOnly(true);
+		c.setAutoCommit(false);
+		pool.recycle(c);
+		that(c.getAutoCommit()).is(true);
+		that(c.isReadOnly()).is(false);
+		that(driver.rollbacks).is(1);
+	}
+
+	@Test public void discardInvalidAndExpired() throws SQLException {
+		var pool = pool().maxSize(1).build();
+		var c = pool.get();
+		pool.recycle(c);
+		driver.valid = false;
+		var other = pool.get();
+		that(other).notSame(c);
+		that(c.isClosed()).is(true);
+		pool.recycle(other);
+
+		var expiring = pool().maxLifetime(Duration.ofNanos(1)).build();
+		var e = expiring.get();
+		expiring.recycle(e);
+		that(e.isClosed()).is(true);
+		that(expiring.idle()).is(0);
+		that(expiring.discarded()).is(1L);
+	}
+
+	@Test public void evictIdle() throws SQLException {
+		var pool = pool().idleTimeout(Duration.ofNanos(1)).build();
+		var c = pool.get();
+		pool.recycle(c);
+		pool.evictIdle();
+		that(pool.idle()).is(0);
+		that(c.isClosed()).is(true);
+	}
+
+	@Test public void closePool() throws SQLException {
+		var pool = pool().build();
+		var idle = pool.get();
+		var borrowed = pool.get();
+		pool.recycle(idle);
+		pool.close();
+		that(idle.isClosed()).is(true);
+		that(borrowed.isClosed()).is(false);
+		pool.recycle(borrowed);
+		that(borrowed.isClosed()).is(true);
+		that(pool::get).thrown(SQLException.class);
+	}
+
+	/** Driver creating stub connections which only keep session state. */
+	static final class StubDriver implements Driver {
+		final List<Connection> connections = new ArrayList<>();
+		boolean valid = true;
+		int rollbacks;
+
+		@Override public Connection connect(String url, Properties info) {
+			var state = new boolean[]{true, false, false}; // autoCommit, readOnly, closed
+			var connection = (Connection) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getAutoCommit" -> state[0];
+					case "setAutoCommit" -> state[0] = (boolean) args[0];
+					case "isReadOnly" -> state[1];
+					case "setReadOnly" -> state[1] = (boolean) args[0];
+					case "isClosed" -> state[2];
+					case "close" -> state[2] = true;
+					case "isValid" -> valid && !state[2];
+					case "rollback" -> ++rollbacks;
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					case "toString" -> "StubConnection";
+					default -> null;
+				});
+			connections.add(connection);
+			return connection;
+		}
+
+		@Override public boolean acceptsURL(String url) {
+			return url.startsWith("jdbc:stub:");
+		}
+
+		@Override public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override public Logger getParentLogger() {
+			return Logger.getGlobal();
+		}
+	}
+}
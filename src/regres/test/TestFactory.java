@@ -2,8 +2,11 @@ package io.immutables.regres.test;
 
 import io.immutables.regres.Regresql;
 import io.immutables.regres.SqlException;
+import io.immutables.regres.SqlExecutor;
 import io.immutables.regres.SqlFactory;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -106,6 +109,17 @@ public class TestFactory extends Base {
 		that(list.stream().map(MyTable::b)).isOf("X", "Z");
 	}
 
+	@Test public void selectAny() {
+		var list = factory.sql("select * from my_table where b")
+			.any(List.of("X", "Z"))
+			.list(MyTable.class);
+
+		that(list.stream().map(MyTable::b)).isOf("X", "Z");
+		that(factory.sql("select * from my_table where b")
+			.any(List.of(), String.class)
+			.list(MyTable.class)).isEmpty();
+	}
+
 	@Test public void failOnSelectMore() {
 		that(() -> {
 			factory.sql("select * from my_table").single(MyTable.class);
@@ -115,4 +129,16 @@ public class TestFactory extends Base {
 			factory.sql("select * from my_table").optional(MyTable.class);
 		}).thrown(SqlException.class);
 	}
+
+	@Test public void selectConcurrently() {
+		var concurrent = Regresql.factory(codecs, connections,
+			new SqlExecutor(ForkJoinPool.commonPool(), 1));
+
+		List<Supplier<MyTable>> queries = List.of(
+			() -> concurrent.sql("select * from my_table where a = 1").single(MyTable.class),
+			() -> concurrent.sql("select * from my_table where a = 3").single(MyTable.class));
+
+		that(concurrent.concurrently(queries).stream().map(MyTable::b)).isOf("X", "Z");
+		that(factory.concurrently(queries).stream().map(MyTable::b)).isOf("X", "Z");
+	}
 }
@@ -0,0 +1,131 @@
+package io.immutables.regres.test;
+
+import io.immutables.codec.Registry;
+import io.immutables.codec.record.RecordsFactory;
+import io.immutables.regres.ConnectionProvider;
+import io.immutables.regres.JdbcCodecs;
+import io.immutables.regres.JdbcMedium;
+import io.immutables.regres.Regresql;
+import io.immutables.regres.ReplicatedProvider;
+import io.immutables.regres.StatementCache;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestReplicatedProvider {
+	private static final Registry codecs = new Registry.Builder()
+		.add(new RecordsFactory())
+		.add(JdbcCodecs.Instance, JdbcMedium.Jdbc)
+		.build();
+
+	private final StubDatabase primary = new StubDatabase("primary");
+	private final StubDatabase replica = new StubDatabase("replica");
+
+	@Test public void readsFromReplica() throws SQLException {
+		var provider = ReplicatedProvider.builder(primary).replica(replica).build();
+		var c = provider.forRead().get();
+		that(c.toString()).is("replica");
+		provider.forRead().recycle(c);
+		that(replica.recycled).is(1);
+		that(provider.get().toString()).is("primary");
+		that(provider.replicaReads()).is(1L);
+	}
+
+	@Test public void weightedReplicas() throws SQLException {
+		var other = new StubDatabase("other");
+		var provider = ReplicatedProvider.builder(primary)
+			.replica(replica, 3)
+			.replica(other, 1)
+			.build();
+		for (int i = 0; i < 400; i++) {
+			var c = provider.forRead().get();
+			provider.recycle(c);
+		}
+		that(replica.recycled + other.recycled).is(400);
+		that(replica.recycled > other.recycled).is(true);
+	}
+
+	@Test public void fallbackToPrimary() throws SQLException {
+		replica.down = true;
+		var provider = ReplicatedProvider.builder(primary).replica(replica).build();
+		that(provider.forRead().get().toString()).is("primary");
+		that(provider.fallbacks()).is(1L);
+
+		var strict = ReplicatedProvider.builder(primary).replica(replica)
+			.fallbackToPrimary(false)
+			.build();
+		that(() -> strict.forRead().get()).thrown(SQLException.class);
+	}
+
+	@Test public void stickyAfterWrite() throws SQLException {
+		var provider = ReplicatedProvider.builder(primary).replica(replica)
+			.stickyAfterWrite(Duration.ofMinutes(1))
+			.build();
+		that(provider.forRead().get().toString()).is("replica");
+		provider.get();
+		that(provider.forRead().get().toString()).is("primary");
+		that(provider.primaryReads()).is(1L);
+	}
+
+	@Test public void unwrapWrapped() {
+		var replicated = ReplicatedProvider.builder(primary).replica(replica).build();
+		var cache = replicated.withStatementCache(4);
+		that(cache.unwrap(ReplicatedProvider.class)).same(replicated);
+
+		var cachedPrimary = primary.withStatementCache(4);
+		var withCache = ReplicatedProvider.builder(cachedPrimary).replica(replica).build();
+		that(withCache.unwrap(StatementCache.class)).same(cachedPrimary);
+		that(withCache.forRead().unwrap(StatementCache.class)).same(cachedPrimary);
+	}
+
+	@Test public void readonlyTransaction() {
+		var provider = ReplicatedProvider.builder(primary).replica(replica).build();
+		var factory = Regresql.factory(codecs, provider);
+		that(factory.readonly(() -> connectionOf(factory))).is("replica");
+		that(factory.transaction(() -> connectionOf(factory))).is("primary");
+	}
+
+	private static String connectionOf(io.immutables.regres.SqlFactory factory) {
+		try (var handle = factory.handle()) {
+			return handle.connection().toString();
+		} catch (SQLException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/** Stub database giving connections which only keep session state. */
+	static final class StubDatabase implements ConnectionProvider {
+		final String name;
+		boolean down;
+		int recycled;
+
+		StubDatabase(String name) {
+			this.name = name;
+		}
+
+		@Override public Connection get() throws SQLException {
+			if (down) throw new SQLException(name + " is down");
+			var state = new boolean[]{true, false}; // autoCommit, readOnly
+			return (Connection) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getAutoCommit" -> state[0];
+					case "setAutoCommit" -> state[0] = (boolean) args[0];
+					case "isReadOnly" -> state[1];
+					case "setReadOnly" -> state[1] = (boolean) args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "equals" -> proxy == args[0];
+					case "toString" -> name;
+					default -> null;
+				});
+		}
+
+		@Override public void recycle(Connection c) {
+			recycled++;
+		}
+	}
+}
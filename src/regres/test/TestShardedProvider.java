@@ -0,0 +1,172 @@
+package io.immutables.regres.test;
+
+import io.immutables.codec.Registry;
+import io.immutables.codec.record.RecordsFactory;
+import io.immutables.regres.ConnectionPool;
+import io.immutables.regres.ConnectionProvider;
+import io.immutables.regres.JdbcCodecs;
+import io.immutables.regres.JdbcMedium;
+import io.immutables.regres.Regresql;
+import io.immutables.regres.ShardedProvider;
+import io.immutables.regres.ShardedProvider.ShardFunction;
+import io.immutables.regres.SqlException;
+import io.immutables.regres.test.Shards.Item;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestShardedProvider {
+	private static final Registry codecs = new Registry.Builder()
+		.add(new RecordsFactory())
+		.add(JdbcCodecs.Instance, JdbcMedium.Jdbc)
+		.build();
+
+	private final StubShard even = new StubShard(new Item(2, "b"), new Item(4, "d"));
+	private final StubShard odd = new StubShard(new Item(1, "a"), new Item(3, "c"));
+
+	private Shards shards(ShardFunction function) {
+		var provider = ShardedProvider.builder()
+			.add(even)
+			.add(odd)
+			.function(function)
+			.build();
+		return Regresql.create(Shards.class, codecs, provider);
+	}
+
+	@Test public void routeByKey() {
+		var shards = shards(ShardFunction.hash());
+		that(shards.itemsOf(10)).isOf(new Item(2, "b"), new Item(4, "d"));
+		that(shards.itemsOf(7)).isOf(new Item(1, "a"), new Item(3, "c"));
+		that(even.executed).is(1);
+		that(odd.executed).is(1);
+	}
+
+	@Test public void routeByRange() {
+		var shards = shards(ShardFunction.ranges(List.of(100)));
+		that(shards.itemsOf(99)).isOf(new Item(2, "b"), new Item(4, "d"));
+		that(shards.itemsOf(100)).isOf(new Item(1, "a"), new Item(3, "c"));
+	}
+
+	@Test public void scatterGather() {
+		var shards = shards(ShardFunction.hash());
+		that(shards.allItems().stream().map(Item::id)).isOf(2, 4, 1, 3);
+		that(shards.allItemsById().stream().map(Item::id)).isOf(1, 2, 3, 4);
+		that(shards.deleteAll()).is(4);
+		that(even.executed).is(3);
+		that(odd.executed).is(3);
+	}
+
+	@Test public void cachedStatementsAcrossCalls() throws SQLException {
+		var cache = ConnectionPool.builder(even).maxSize(1).build().withStatementCache(4);
+		var shards = Regresql.create(Shards.class, codecs, cache);
+		that(shards.allItems()).hasSize(2);
+		that(shards.allItems()).hasSize(2);
+		that(even.executed).is(1);
+		that(cache.misses()).is(1L);
+		that(cache.hits()).is(1L);
+	}
+
+	@Test public void cachedOutsideSharded() {
+		var cache = ShardedProvider.builder().add(even).add(odd).build().withStatementCache(4);
+		var shards = Regresql.create(Shards.class, codecs, cache);
+		that(shards.itemsOf(10)).isOf(new Item(2, "b"), new Item(4, "d"));
+		that(shards.allItems()).hasSize(4);
+		that(cache.misses()).is(3L);
+	}
+
+	@SuppressWarnings("try")
+	@Test public void heldShardConnection() throws SQLException {
+		var provider = ShardedProvider.builder().add(even).add(odd).build();
+		var shards = Regresql.create(Shards.class, codecs, provider);
+		try (var handle = provider.forKey(10).handle()) {
+			that(shards.itemsOf(12)).hasSize(2);
+			that(() -> shards.itemsOf(7)).thrown(SqlException.class);
+			that(shards::allItems).thrown(SqlException.class);
+		}
+		that(even.executed).is(1);
+		that(odd.executed).is(0);
+	}
+
+	@Test public void noShardSelected() {
+		var provider = ShardedProvider.builder().add(even).build();
+		that(provider::get).thrown(SQLException.class);
+		that(provider.forKey("any")).same(even);
+	}
+
+	/** Shard having stub connections, which return the same rows for any query. */
+	static final class StubShard implements ConnectionProvider {
+		final List<Item> items;
+		volatile int executed;
+
+		StubShard(Item... items) {
+			this.items = List.of(items);
+		}
+
+		@Override public Connection get() {
+			return stub(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+				case "prepareStatement" -> statement((String) args[0]);
+				case "getAutoCommit", "isValid" -> true;
+				case "isReadOnly", "isClosed" -> false;
+				case "hashCode" -> System.identityHashCode(proxy);
+				case "equals" -> proxy == args[0];
+				default -> null;
+			});
+		}
+
+		private synchronized PreparedStatement statement(String sql) {
+			executed++;
+			boolean update = sql.startsWith("delete");
+			var results = new ResultSet[1];
+			var state = new int[]{0}; // 0 - current result, 1 - no more results
+			var closed = new boolean[1];
+			return stub(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+				case "execute" -> {
+					state[0] = 0;
+					results[0] = update ? null : results();
+					yield !update;
+				}
+				case "isClosed" -> closed[0];
+				case "close" -> closed[0] = true;
+				case "getResultSet" -> state[0] == 0 ? results[0] : null;
+				case "getUpdateCount", "getLargeUpdateCount" -> update && state[0] == 0 ? items.size() : -1;
+				case "getMoreResults" -> {
+					state[0] = 1;
+					yield false;
+				}
+				default -> null;
+			});
+		}
+
+		private ResultSet results() {
+			var at = new int[]{-1};
+			var meta = stub(ResultSetMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+				case "getColumnCount" -> 2;
+				case "getColumnLabel", "getColumnName" -> (int) args[0] == 1 ? "id" : "name";
+				case "getColumnType" -> (int) args[0] == 1 ? Types.INTEGER : Types.VARCHAR;
+				default -> null;
+			});
+			return stub(ResultSet.class, (proxy, method, args) -> switch (method.getName()) {
+				case "getMetaData" -> meta;
+				case "next" -> ++at[0] < items.size();
+				case "getInt" -> items.get(at[0]).id();
+				case "getString" -> items.get(at[0]).name();
+				case "getObject" -> (int) args[0] == 1 ? items.get(at[0]).id() : items.get(at[0]).name();
+				case "wasNull" -> false;
+				default -> null;
+			});
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(
+			TestShardedProvider.class.getClassLoader(), new Class<?>[]{type}, handler);
+	}
+}
@@ -0,0 +1,56 @@
+package io.immutables.regres.test;
+
+import io.immutables.codec.Registry;
+import io.immutables.codec.record.RecordsFactory;
+import io.immutables.regres.ConnectionProvider;
+import io.immutables.regres.JdbcCodecs;
+import io.immutables.regres.JdbcMedium;
+import io.immutables.regres.Regresql;
+import io.immutables.regres.WrongDeclaration;
+import java.sql.SQLException;
+import java.util.List;
+import org.junit.Test;
+import static io.immutables.that.Assert.that;
+
+public class TestStartup {
+	private static final Registry codecs = new Registry.Builder()
+		.add(new RecordsFactory())
+		.add(JdbcCodecs.Instance, JdbcMedium.Jdbc)
+		.build();
+
+	private static final ConnectionProvider noDatabase = () -> {
+		throw new SQLException("No database");
+	};
+
+	@Test(expected = WrongDeclaration.class)
+	public void eagerFailsOnCreate() {
+		Regresql.create(Startup.class, codecs, noDatabase);
+	}
+
+	@Test public void lazyFailsOnInvocation() {
+		var startup = Regresql.createLazy(Startup.class, codecs, noDatabase, null, null);
+		try {
+			startup.touchReplica();
+			throw new AssertionError("wrong declaration expected");
+		} catch (WrongDeclaration e) {
+			that(e.getMessage()).contains("@Read");
+		}
+	}
+
+	@Test public void createAll() {
+		var accessors = Regresql.createAll(
+			List.of(Shards.class), codecs, noDatabase, null, null);
+		that(accessors.keySet()).hasOnly(Shards.class);
+		that(accessors.get(Shards.class)).instanceOf(Shards.class);
+	}
+
+	@Test public void createAllReportsAll() {
+		try {
+			Regresql.createAll(
+				List.of(Shards.class, Startup.class), codecs, noDatabase, null, null);
+			throw new AssertionError("wrong declaration expected");
+		} catch (WrongDeclaration e) {
+			that(e.getMessage()).contains(Startup.class.getCanonicalName() + ": @Read");
+		}
+	}
+}
@@ -1,3 +1,4 @@
+// @processor io.immutables.regres.processor
 open module io.immutables.regres.test {
 	requires io.immutables.meta;
 	requires io.immutables.regres;